@@ -0,0 +1,66 @@
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Generates the datasets benchmarks run on, in three distributions:
+ * sorted (uniform values in ascending order), random (uniform values)
+ * and skewed (Pareto distributed values, most of them small and repeated, a few very large).
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the values of a dataset.
+     * @param size number of values
+     * @param distribution sorted, random or skewed
+     * @param seed seed of the values
+     * @return values
+     */
+    static int[] values(int size, String distribution, long seed) {
+        Random random = new Random(seed);
+        int[] values = new int[size];
+        switch (distribution) {
+            case "sorted":
+                for (int i = 0; i < size; i++) {
+                    values[i] = random.nextInt(2_000_000) - 1_000_000;
+                }
+                Arrays.sort(values);
+                break;
+            case "random":
+                for (int i = 0; i < size; i++) {
+                    values[i] = random.nextInt(2_000_000) - 1_000_000;
+                }
+                break;
+            case "skewed":
+                // alpha 1.16 gives the 80/20 rule
+                for (int i = 0; i < size; i++) {
+                    values[i] = (int) Math.min(Integer.MAX_VALUE, Math.pow(1 - random.nextDouble(), -1 / 1.16));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        return values;
+    }
+
+    /**
+     * Returns a dataset as the user would type it, comma separated.
+     * @param size number of values
+     * @param distribution sorted, random or skewed
+     * @param seed seed of the values
+     * @return input
+     */
+    static String input(int size, String distribution, long seed) {
+        int[] values = values(size, distribution, seed);
+        StringBuilder builder = new StringBuilder(size * 10);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+}
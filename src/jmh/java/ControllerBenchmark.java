@@ -0,0 +1,88 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark of whole controller calls, as the window makes them, through controllers from ControllerFactory.
+ * The uncached benchmarks alternate between two inputs of the same size and distribution,
+ * so neither the dataset cache nor the result cache, which keeps one result here, can answer.
+ * The cached benchmarks repeat one input, so they measure a result cache hit,
+ * which still compares the whole input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ControllerBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000", "100000000"})
+    private int size;
+
+    @Param({"sorted", "random", "skewed"})
+    private String distribution;
+
+    private String[] inputs;
+    private String cachedInput;
+    private int next;
+    private MeanController meanController;
+    private SDController sdController;
+    private MedianController medianController;
+    private SampleSizeController sampleSizeController;
+    private SummaryController summaryController;
+    private MeanController cachedMeanController;
+
+    @Setup
+    public void setUp() {
+        inputs = new String[] {
+                BenchmarkData.input(size, distribution, 42), BenchmarkData.input(size, distribution, 43)};
+        // an equal copy, so a hit cannot be found by reference
+        cachedInput = new String(inputs[0]);
+
+        ControllerFactory controllerFactory = new ControllerFactory(new ResultCache(1, 0));
+        meanController = controllerFactory.createMeanController();
+        sdController = controllerFactory.createSDController();
+        medianController = controllerFactory.createMedianController();
+        sampleSizeController = controllerFactory.createSampleSizeController();
+        summaryController = controllerFactory.createSummaryController();
+        cachedMeanController = new ControllerFactory().createMeanController();
+        cachedMeanController.calculateMean(inputs[0]);
+    }
+
+    private String nextInput() {
+        next ^= 1;
+        return inputs[next];
+    }
+
+    @Benchmark
+    public MeanViewModel mean() {
+        return meanController.calculateMean(nextInput());
+    }
+
+    @Benchmark
+    public SDViewModel sd() {
+        return sdController.calculateSD(nextInput());
+    }
+
+    @Benchmark
+    public MedianViewModel median() {
+        return medianController.calculateMedian(nextInput());
+    }
+
+    @Benchmark
+    public SampleSizeViewModel sampleSize() {
+        return sampleSizeController.calculateSampleSize(nextInput());
+    }
+
+    @Benchmark
+    public SummaryViewModel summary() {
+        return summaryController.calculateSummary(nextInput());
+    }
+
+    @Benchmark
+    public MeanViewModel meanCached() {
+        return cachedMeanController.calculateMean(cachedInput);
+    }
+}
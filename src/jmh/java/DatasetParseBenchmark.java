@@ -0,0 +1,61 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark comparing the String.split based parser with NumberParser
+ * through Dataset.getNumberList.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatasetParseBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(random.nextInt(2_000_000) - 1_000_000);
+        }
+        input = builder.toString();
+    }
+
+    /**
+     * The parser Dataset used before NumberParser, kept here as the baseline.
+     */
+    @Benchmark
+    public int[] splitParse() {
+        String[] numberStrings = input.split(",");
+        int[] numbers = new int[numberStrings.length];
+        for (int i = 0; i < numberStrings.length; i++) {
+            numbers[i] = Integer.parseInt(numberStrings[i].trim());
+        }
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    @Benchmark
+    public int[] getNumberList() {
+        return new Dataset(input).getNumberList();
+    }
+
+    @Benchmark
+    public int[] parseInts() {
+        return NumberParser.parseInts(input);
+    }
+}
@@ -0,0 +1,79 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark of parsing key,value rows and grouping them by key with GroupBy, sequentially and in parallel,
+ * against grouping boxed values in a HashMap of lists and calculating each list as its own dataset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupByBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int rows;
+
+    @Param({"10", "1000", "100000"})
+    private int keys;
+
+    private String input;
+    private KeyedColumns columns;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(rows * 16);
+        for (int i = 0; i < rows; i++) {
+            text.append("sensor").append(random.nextInt(keys)).append(',').append(random.nextInt(1_000_000)).append('\n');
+        }
+        input = text.toString();
+        columns = KeyedColumns.parse(input);
+    }
+
+    @Benchmark
+    public KeyedColumns parse() {
+        return KeyedColumns.parse(input);
+    }
+
+    @Benchmark
+    public GroupBy sequential() {
+        return GroupBy.of(columns, null);
+    }
+
+    @Benchmark
+    public GroupBy parallel() {
+        return GroupBy.of(columns, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Splitting the rows by key and calculating each group alone, as scripts calling the calculator per group do,
+     * kept here as the baseline.
+     */
+    @Benchmark
+    public double boxedMap() {
+        Map<String, List<Integer>> groups = new HashMap<>();
+        String[] keyNames = columns.keys();
+        int[] codes = columns.codes();
+        int[] values = columns.column(0);
+        for (int i = 0; i < codes.length; i++) {
+            groups.computeIfAbsent(keyNames[codes[i]], key -> new ArrayList<>()).add(values[i]);
+        }
+        double total = 0;
+        for (List<Integer> group : groups.values()) {
+            ParsedDataset dataset = new ParsedDataset(group.stream().mapToInt(Integer::intValue).toArray());
+            total += dataset.statistics().getStandardDeviation() + dataset.median();
+        }
+        return total;
+    }
+}
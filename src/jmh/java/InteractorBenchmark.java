@@ -0,0 +1,79 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark of parsing and of each interactor, from 10 to 100 million values in every distribution.
+ * The input benchmarks parse and calculate, as a new interactor has an empty dataset cache.
+ * The dataset benchmarks calculate on values which are already parsed,
+ * in a new ParsedDataset each time so no statistic is reused between invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class InteractorBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000", "100000000"})
+    private int size;
+
+    @Param({"sorted", "random", "skewed"})
+    private String distribution;
+
+    private String input;
+    private int[] values;
+
+    @Setup
+    public void setUp() {
+        input = BenchmarkData.input(size, distribution, 42);
+        values = new Dataset(input).getNumberList();
+    }
+
+    @Benchmark
+    public int[] getNumberList() {
+        return new Dataset(input).getNumberList();
+    }
+
+    @Benchmark
+    public MeanViewModel meanInput() {
+        return new MeanInteractor(new MeanPresenter()).calculateMean(input);
+    }
+
+    @Benchmark
+    public SDViewModel sdInput() {
+        return new SDInteractor(new SDPresenter()).calculateSD(input);
+    }
+
+    @Benchmark
+    public MedianViewModel medianInput() {
+        return new MedianInteractor(new MedianPresenter()).calculateMedian(input);
+    }
+
+    @Benchmark
+    public SampleSizeViewModel sampleSizeInput() {
+        return new SampleSizeInteractor(new SampleSizePresenter()).calculateSampleSize(input);
+    }
+
+    @Benchmark
+    public MeanViewModel meanDataset() {
+        return new MeanInteractor(new MeanPresenter()).calculateMean(new ParsedDataset(values));
+    }
+
+    @Benchmark
+    public SDViewModel sdDataset() {
+        return new SDInteractor(new SDPresenter()).calculateSD(new ParsedDataset(values));
+    }
+
+    @Benchmark
+    public MedianViewModel medianDataset() {
+        return new MedianInteractor(new MedianPresenter()).calculateMedian(new ParsedDataset(values));
+    }
+
+    @Benchmark
+    public SampleSizeViewModel sampleSizeDataset() {
+        return new SampleSizeInteractor(new SampleSizePresenter()).calculateSampleSize(new ParsedDataset(values));
+    }
+}
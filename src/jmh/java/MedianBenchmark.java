@@ -0,0 +1,46 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark comparing the median found by a full sort with the median found by Selection.
+ * Both benchmarks copy the data first, so the copy cost is the same on both sides.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MedianBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    private int size;
+
+    private int[] data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public double sortMedian() {
+        int[] sorted = data.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : ((long) sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+    }
+
+    @Benchmark
+    public double selectMedian() {
+        return Selection.median(data.clone());
+    }
+}
@@ -0,0 +1,57 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark showing how ParallelNumberParser scales with the number of worker threads.
+ * The sequential parser is measured as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelParseBenchmark {
+
+    @Param({"50000000"})
+    private int size;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int parallelism;
+
+    private String input;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(random.nextInt());
+        }
+        input = builder.toString();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] sequential() {
+        return NumberParser.parseRange(input, 0, NumberParser.valuesLength(input));
+    }
+
+    @Benchmark
+    public int[] parallel() {
+        return ParallelNumberParser.parseInts(input, pool);
+    }
+}
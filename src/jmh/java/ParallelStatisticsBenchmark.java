@@ -0,0 +1,53 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark showing how ParallelStatistics scales with the number of worker threads.
+ * The sequential kernel is measured as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParallelStatisticsBenchmark {
+
+    @Param({"100000000"})
+    private int size;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int parallelism;
+
+    private int[] data;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt();
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public StatisticsAccumulator sequential() {
+        return StatisticsAccumulator.of(data);
+    }
+
+    @Benchmark
+    public StatisticsAccumulator parallel() {
+        return ParallelStatistics.of(data, pool);
+    }
+}
@@ -0,0 +1,60 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark of RangeIndex queries over random index ranges of one large list,
+ * against accumulating and selecting a copy of each range.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RangeQueryBenchmark {
+
+    @Param({"1000000", "100000000"})
+    private int size;
+
+    private int[] data;
+    private RangeIndex index;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() {
+        Random values = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = values.nextInt();
+        }
+        index = RangeIndex.of(data);
+    }
+
+    @Benchmark
+    public double statistics() {
+        int from = random.nextInt(size - 1);
+        int to = from + 1 + random.nextInt(size - from - 1);
+        return index.statistics(from, to).getStandardDeviation();
+    }
+
+    @Benchmark
+    public double median() {
+        int from = random.nextInt(size - 1);
+        int to = from + 1 + random.nextInt(size - from - 1);
+        return index.median(from, to);
+    }
+
+    /**
+     * Copying and selecting the range, as a new Dataset of the range would, kept here as the baseline.
+     */
+    @Benchmark
+    public double copyAndSelect() {
+        int from = random.nextInt(size - 1);
+        int to = from + 1 + random.nextInt(size - from - 1);
+        return Selection.median(java.util.Arrays.copyOfRange(data, from, to));
+    }
+}
@@ -0,0 +1,58 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark measuring how many events per second SlidingWindowStatistics takes,
+ * with and without reading mean, standard deviation and median after every event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SlidingWindowBenchmark {
+    private static final int EVENTS = 1 << 20;
+
+    @Param({"100", "10000", "1000000"})
+    private int windowSize;
+
+    private int[] events;
+    private SlidingWindowStatistics window;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        events = new int[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = random.nextInt(1_000_000);
+        }
+        window = SlidingWindowStatistics.ofCount(windowSize);
+        for (int i = 0; i < windowSize; i++) {
+            window.add(0, events[i % EVENTS]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int add() {
+        for (int event : events) {
+            window.add(0, event);
+        }
+        return window.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public double addAndQuery() {
+        double result = 0;
+        for (int event : events) {
+            window.add(0, event);
+            result += window.mean() + window.standardDeviation() + window.median();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark comparing the statistics kernel of StatisticsAccumulator with the scalar loops it replaced,
+ * on inputs which fit in L1 (16 KB), in L2 (256 KB) and only in memory (64 MB).
+ * Results are per value, so the sizes can be compared directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatisticsKernelBenchmark {
+    private static final int BLOCK_SIZE = 4096;
+
+    @Param({"4096", "65536", "16777216"})
+    private int size;
+
+    private int[] data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public StatisticsAccumulator kernel() {
+        return StatisticsAccumulator.of(data, 0, data.length);
+    }
+
+    /**
+     * The block loops StatisticsAccumulator used before, kept here as the baseline.
+     */
+    @Benchmark
+    public StatisticsAccumulator scalar() {
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        for (int blockStart = 0; blockStart < data.length; blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, data.length);
+            long blockSum = 0;
+            int blockMin = Integer.MAX_VALUE;
+            int blockMax = Integer.MIN_VALUE;
+            for (int i = blockStart; i < blockEnd; i++) {
+                int value = data[i];
+                blockSum += value;
+                blockMin = Math.min(blockMin, value);
+                blockMax = Math.max(blockMax, value);
+            }
+            int blockCount = blockEnd - blockStart;
+            double blockMean = (double) blockSum / blockCount;
+            double blockM2 = 0;
+            for (int i = blockStart; i < blockEnd; i++) {
+                double diff = data[i] - blockMean;
+                blockM2 += diff * diff;
+            }
+            result.combine(StatisticsAccumulator.restore(blockCount, blockSum, blockM2, blockMin, blockMax));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Load test for StatisticsHttpServer. Client threads post batches of datasets and the latency
+ * of every request after the warmup is recorded, then p50, p99, p99.9, max and throughput are printed.
+ *
+ * By default every client sends its next request as soon as the last one is answered, a closed loop.
+ * It shows the most throughput the server has, but its latencies suffer from coordinated omission:
+ * while the server stalls, clients stop sending, so the requests which would have waited are never
+ * measured and the high percentiles look better than users would see them. With --rate R the
+ * clients send R requests per second in total on a fixed schedule, an open loop, and latency is
+ * measured from when a request was due rather than from when it was sent, so a stall counts
+ * against every request scheduled during it. The rate should be below the closed loop throughput.
+ *
+ * Runs against a server started in this JVM, or against a running one given by --url.
+ * Options: --url URL, --endpoint /statistics, --clients 64, --batch 16, --values 1000,
+ * --rate 0 (requests per second, 0 for a closed loop), --warmup 5 and --duration 20 (seconds).
+ * Set -Dsun.net.httpserver.nodelay=true for the server in this JVM, as ./gradlew loadTest does.
+ */
+public class StatisticsLoadTest {
+    public static void main(String[] args) throws Exception {
+        String url = option(args, "--url", null);
+        String endpoint = option(args, "--endpoint", "/statistics");
+        int clients = Integer.parseInt(option(args, "--clients", "64"));
+        int batch = Integer.parseInt(option(args, "--batch", "16"));
+        int values = Integer.parseInt(option(args, "--values", "1000"));
+        double rate = Double.parseDouble(option(args, "--rate", "0"));
+        long warmupNanos = Duration.ofSeconds(Long.parseLong(option(args, "--warmup", "5"))).toNanos();
+        long durationNanos = Duration.ofSeconds(Long.parseLong(option(args, "--duration", "20"))).toNanos();
+
+        StatisticsHttpServer server = null;
+        if (url == null) {
+            server = new StatisticsHttpServer(new ControllerFactory());
+            url = "http://localhost:" + server.start(0);
+        }
+        URI uri = URI.create(url + endpoint);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // every client posts its own bodies so the dataset cache cannot answer for free
+        String[][] bodies = new String[clients][];
+        Random random = new Random(42);
+        for (int c = 0; c < clients; c++) {
+            bodies[c] = new String[8];
+            for (int b = 0; b < bodies[c].length; b++) {
+                StringBuilder body = new StringBuilder();
+                for (int d = 0; d < batch; d++) {
+                    for (int v = 0; v < values; v++) {
+                        body.append(v == 0 ? "" : ", ").append(random.nextInt(1_000_000));
+                    }
+                    body.append('\n');
+                }
+                bodies[c][b] = body.toString();
+            }
+        }
+
+        long start = System.nanoTime();
+        // in an open loop every client sends every intervalNanos, and the clients are spread over the interval
+        long intervalNanos = rate > 0 ? (long) (clients * 1e9 / rate) : 0;
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int id = c;
+            Thread thread = new Thread(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                try {
+                    for (int i = 0; ; i++) {
+                        long sent = System.nanoTime();
+                        if (intervalNanos > 0) {
+                            long due = start + i * intervalNanos + id * intervalNanos / clients;
+                            while (sent < due) {
+                                LockSupport.parkNanos(due - sent);
+                                sent = System.nanoTime();
+                            }
+                            sent = due;
+                        }
+                        if (sent >= end) {
+                            break;
+                        }
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .POST(HttpRequest.BodyPublishers.ofString(bodies[id][i % bodies[id].length]))
+                                .build();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        long received = System.nanoTime();
+                        if (response.statusCode() != 200 || response.body().contains("\"error\"")) {
+                            errors.incrementAndGet();
+                        }
+                        if (sent >= measureFrom) {
+                            if (count == recorded.length) {
+                                recorded = Arrays.copyOf(recorded, count * 2);
+                            }
+                            recorded[count++] = received - sent;
+                        }
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                    e.printStackTrace();
+                } finally {
+                    latencies[id] = recorded;
+                    counts[id] = count;
+                    done.countDown();
+                }
+            }, "client-" + c);
+            thread.start();
+        }
+        done.await();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        for (int c = 0, offset = 0; c < clients; offset += counts[c], c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+        }
+        Arrays.sort(all);
+        double seconds = durationNanos / 1e9;
+        System.out.printf("%s, %d clients, %d datasets of %d values per request, %s%n", uri, clients, batch, values,
+                rate > 0 ? "open loop at " + rate + " requests/s" : "closed loop");
+        System.out.printf("requests: %d, errors: %d%n", total, errors.get());
+        System.out.printf("throughput: %.1f requests/s, %.1f datasets/s%n", total / seconds, total * batch / seconds);
+        if (total > 0) {
+            System.out.printf("latency ms: p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                    percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e6);
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
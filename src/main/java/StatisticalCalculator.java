@@ -1,24 +1,126 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import static java.lang.Math.round;
-import static java.lang.Math.sqrt;
 
 
 /**
  * A class for executing statistical calculator.
+ * Without arguments, or with --gui, the Swing window is opened.
+ * Otherwise the calculator runs headless on the given files, see CommandLineRunner.
  */
 public class StatisticalCalculator {
     public static void main(String[] args) {
+        if (args.length == 0 || (args.length == 1 && args[0].equals("--gui"))) {
+            startGui();
+            return;
+        }
+        if (args[0].equals("--serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : StatisticsHttpServer.DEFAULT_PORT;
+            // the JDK server reads the property once, when the first server is created, see StatisticsHttpServer.start
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            try {
+                StatisticsHttpServer server = new StatisticsHttpServer(new ControllerFactory());
+                System.err.println("Listening on port " + server.start(port));
+            } catch (IOException e) {
+                System.err.println("Cannot listen on port " + port + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        PrintStream out = new PrintStream(new java.io.BufferedOutputStream(System.out, 1 << 16), false);
+        CommandLineRunner runner = new CommandLineRunner(new ControllerFactory().createSummaryController());
+        System.exit(runner.run(args, System.in, out, System.err));
+    }
 
+    /**
+     * A private helper function to open the window. AWT is only loaded when this is called.
+     */
+    private static void startGui() {
         ControllerFactory controllerFactory = new ControllerFactory();
         MeanController meanController = controllerFactory.createMeanController();
         SDController sdController = controllerFactory.createSDController();
         MedianController medianController = controllerFactory.createMedianController();
         SampleSizeController sampleSizeController = controllerFactory.createSampleSizeController();
+        QuantileController quantileController = controllerFactory.createQuantileController();
+        WindowController windowController = controllerFactory.createWindowController();
+        SummaryController summaryController = controllerFactory.createSummaryController();
+        FrequencyController frequencyController = controllerFactory.createFrequencyController();
+        RangeController rangeController = controllerFactory.createRangeController();
+        BootstrapController bootstrapController = controllerFactory.createBootstrapController();
+        GroupController groupController = controllerFactory.createGroupController();
 
         SwingUtilities.invokeLater(() -> {
-            new CalculatorView(meanController, sdController, medianController, sampleSizeController);
+            new CalculatorView(meanController, sdController, medianController, sampleSizeController,
+                    quantileController, windowController, summaryController, frequencyController, rangeController,
+                    bootstrapController, groupController);
         });
     }
 }
@@ -41,262 +143,8405 @@ class Dataset {
         return toList(this.input);
     }
 
+    /**
+     * Parse user's input once into an immutable dataset which every statistic can share.
+     * @return a parsed dataset in input order
+     */
+    public ParsedDataset parse() {
+        return new ParsedDataset(NumberParser.parseInts(this.input));
+    }
+
+    /**
+     * Parse user's input into a dataset of the narrowest type which holds every value:
+     * integers, 64-bit integers or floating-point numbers.
+     * @return a parsed dataset in input order
+     */
+    public DatasetSource parseNumbers() {
+        return NumberParser.parseNumbers(this.input);
+    }
+
+    /**
+     * Parse user's input as rows of a key followed by integers, kept by column.
+     * @return keyed columns in input order
+     */
+    public KeyedColumns parseKeyed() {
+        return KeyedColumns.parse(this.input);
+    }
+
     /**
      * A private helper function to convert the type of user's input
      * @param input user's input which is a comma separated integer
-     * @return a list of integers
+     * @return a list of integers in input order
      */
     private int[] toList(String input) {
-        String[] numberStrings = input.split(",");
-        int[] numbers = new int[numberStrings.length];
-        for (int i = 0; i < numberStrings.length; i++) {
-            numbers[i] = Integer.parseInt(numberStrings[i].trim());
-        }
-        Arrays.sort(numbers);
-        return numbers;
+        return NumberParser.parseInts(input);
     }
 
 }
 
 /**
- * This class is a controller which receives user input
- * and handles calculateMean method through MeanInputBoundary.
+ * This interface is an abstraction of where the values of a dataset come from,
+ * so that interactors can calculate statistics of a String, a file or a stream alike.
  */
-class MeanController {
-    private final MeanInputBoundary inputBoundary;
+interface DatasetSource {
+    /**
+     * Returns the number of values.
+     * @return sample size
+     */
+    long size();
 
-    public MeanController(MeanInputBoundary inputBoundary) {
-        this.inputBoundary = inputBoundary;
-    }
+    /**
+     * Returns count, sum, mean, variance, min and max of the values.
+     * @return statistics of the values
+     */
+    StatisticsAccumulator statistics();
 
-    public MeanViewModel calculateMean(String input) {
-        return inputBoundary.calculateMean(input);
-    }
-}
+    /**
+     * Returns the median of the values.
+     * @return median
+     */
+    double median();
 
-/**
- * This class is a controller which receives user input
- * and handles calculateSD method through SDInputBoundary.
- */
-class SDController {
-    private final SDInputBoundary inputBoundary;
+    /**
+     * Returns the p-quantile of the values, interpolating linearly between the two closest ranks.
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    double quantile(double p);
 
-    public SDController(SDInputBoundary inputBoundary) {
-        this.inputBoundary = inputBoundary;
+    /**
+     * Returns the median followed by the p-quantile for every p, the same numbers as median() and quantile(p).
+     * Datasets which select on their values find all the ranks needed in one selection; the others,
+     * by default, answer each one on its own.
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    default double[] medianAndQuantiles(double[] probabilities) {
+        double[] result = new double[probabilities.length + 1];
+        result[0] = median();
+        for (int i = 0; i < probabilities.length; i++) {
+            result[i + 1] = quantile(probabilities[i]);
+        }
+        return result;
     }
 
-    public SDViewModel calculateSD(String input) {
-        return inputBoundary.calculateSD(input);
-    }
+    /**
+     * Returns a quantile sketch of the values, which answers approximate quantiles.
+     * @return quantile sketch
+     */
+    QuantileSketch quantileSketch();
 }
 
 /**
- * This class is a controller which receives user input
- * and handles calculateMedian method through MedianInputBoundary.
+ * An immutable dataset which has already been parsed from user's input.
+ * Values are kept in input order. Order statistics are found by selection
+ * on a private working copy, which is never fully sorted.
  */
-class MedianController {
-    private final MedianInputBoundary inputBoundary;
+class ParsedDataset implements DatasetSource {
+    private final int[] values;
+    private int[] selectionValues;
+    private volatile StatisticsAccumulator statistics;
+    private volatile QuantileSketch quantileSketch;
+    private RangeIndex rangeIndex;
 
-    public MedianController(MedianInputBoundary inputBoundary) {
-        this.inputBoundary = inputBoundary;
+    public ParsedDataset(int[] values) {
+        this.values = values;
     }
 
-    public MedianViewModel calculateMedian(String input) {
-        return inputBoundary.calculateMedian(input);
+    @Override
+    public long size() {
+        return this.values.length;
     }
-}
 
-/**
- * This class is a controller which receives user input
- * and handles calculateSampleSize method through SampleSizeInputBoundary.
- */
-class SampleSizeController {
-    private final SampleSizeInputBoundary inputBoundary;
+    /**
+     * Returns the values in input order. The array is shared and must not be modified.
+     * @return list of integers
+     */
+    public int[] values() {
+        return this.values;
+    }
 
-    public SampleSizeController(SampleSizeInputBoundary inputBoundary) {
-        this.inputBoundary = inputBoundary;
+    /**
+     * Returns an index of the values for statistics of index ranges, built on the first call only.
+     * @return range index
+     */
+    public synchronized RangeIndex rangeIndex() {
+        if (this.rangeIndex == null) {
+            this.rangeIndex = RangeIndex.of(this.values);
+        }
+        return this.rangeIndex;
     }
 
-    public SampleSizeViewModel calculateSampleSize(String input) {
-        return inputBoundary.calculateSampleSize(input);
+    /**
+     * Returns count, sum, mean, variance, min and max, computed in one pass on the first call only.
+     * The accumulator is shared and must not be modified.
+     * @return statistics of the values
+     */
+    @Override
+    public StatisticsAccumulator statistics() {
+        StatisticsAccumulator result = this.statistics;
+        if (result == null) {
+            result = ParallelStatistics.of(this.values);
+            this.statistics = result;
+        }
+        return result;
     }
-}
 
+    /**
+     * Returns the median. In case of even size, the mean of two numbers in the middle is returned.
+     * @return median
+     */
+    @Override
+    public synchronized double median() {
+        if (!Metrics.ENABLED) {
+            return Selection.median(selectionValues());
+        }
+        long start = System.nanoTime();
+        double median = Selection.median(selectionValues());
+        Metrics.SELECT.recordSize(this.values.length);
+        Metrics.SELECT.recordLatency(start);
+        return median;
+    }
 
-/**
- * This interface is an abstraction layer between MeanController and MeanInteractor.
- */
-interface MeanInputBoundary {
-    MeanViewModel calculateMean(String input);
-}
+    /**
+     * Returns a quantile sketch of the values, built on the first call only.
+     * The sketch is shared and must not be modified.
+     * @return quantile sketch
+     */
+    @Override
+    public QuantileSketch quantileSketch() {
+        QuantileSketch result = this.quantileSketch;
+        if (result == null) {
+            result = ParallelStatistics.sketch(this.values, QuantileSketch.DEFAULT_K);
+            this.quantileSketch = result;
+        }
+        return result;
+    }
 
-/**
- * This interface is an abstraction layer between SDController and SDInteractor.
- */
-interface SDInputBoundary {
-    SDViewModel calculateSD(String input);
-}
+    /**
+     * Returns the p-quantile, interpolating linearly between the two closest ranks.
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    @Override
+    public synchronized double quantile(double p) {
+        if (!Metrics.ENABLED) {
+            return Selection.quantile(selectionValues(), p);
+        }
+        long start = System.nanoTime();
+        double quantile = Selection.quantile(selectionValues(), p);
+        Metrics.SELECT.recordSize(this.values.length);
+        Metrics.SELECT.recordLatency(start);
+        return quantile;
+    }
 
-/**
- * This interface is an abstraction layer between MedianController and MedianInteractor.
- */
-interface MedianInputBoundary {
-    MedianViewModel calculateMedian(String input);
-}
+    /**
+     * Returns the median and the p-quantiles, with all their ranks found by one selection.
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    @Override
+    public synchronized double[] medianAndQuantiles(double[] probabilities) {
+        if (!Metrics.ENABLED) {
+            return Selection.medianAndQuantiles(selectionValues(), probabilities);
+        }
+        long start = System.nanoTime();
+        double[] result = Selection.medianAndQuantiles(selectionValues(), probabilities);
+        Metrics.SELECT.recordSize(this.values.length);
+        Metrics.SELECT.recordLatency(start);
+        return result;
+    }
 
-/**
- * This interface is an abstraction layer between SampleSizeController and SampleSizeInteractor.
- */
-interface SampleSizeInputBoundary {
-    SampleSizeViewModel calculateSampleSize(String input);
+    /**
+     * A private helper function to copy the values on the first order statistic query only.
+     * Selection reorders the copy, so the values in input order are left as they are.
+     */
+    private int[] selectionValues() {
+        if (this.selectionValues == null) {
+            this.selectionValues = this.values.clone();
+        }
+        return this.selectionValues;
+    }
 }
 
 /**
- * This class is an interactor for handle calculating mean use case.
+ * An immutable dataset of 64-bit integers, for inputs with values out of the range of int.
+ * Values are kept in input order and never boxed. The sum is exact, see StatisticsAccumulator.of(long[]).
  */
-class MeanInteractor implements MeanInputBoundary {
-    private final MeanOutputBoundary outputBoundary;
+class LongDataset implements DatasetSource {
+    private final long[] values;
+    private long[] selectionValues;
+    private volatile StatisticsAccumulator statistics;
+    private volatile QuantileSketch quantileSketch;
 
-    public MeanInteractor(MeanOutputBoundary outputBoundary) {
-        this.outputBoundary = outputBoundary;
+    public LongDataset(long[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return this.values.length;
     }
 
     /**
-     * Calculates the mean of given input and returns the result
-     * by encapsulating in MeanViewModel through MeanOutputBoundary.
-     *
-     * @param input user's input
-     * @return a MeanViewModel object
+     * Returns the values in input order. The array is shared and must not be modified.
+     * @return list of 64-bit integers
      */
+    public long[] values() {
+        return this.values;
+    }
+
     @Override
-    public MeanViewModel calculateMean(String input) {
-        Dataset dataset = new Dataset(input);
-        int[] data = dataset.getNumberList();
+    public StatisticsAccumulator statistics() {
+        StatisticsAccumulator result = this.statistics;
+        if (result == null) {
+            result = StatisticsAccumulator.of(this.values);
+            this.statistics = result;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized double median() {
+        return Selection.median(selectionValues());
+    }
+
+    @Override
+    public synchronized double quantile(double p) {
+        return Selection.quantile(selectionValues(), p);
+    }
+
+    @Override
+    public synchronized double[] medianAndQuantiles(double[] probabilities) {
+        return Selection.medianAndQuantiles(selectionValues(), probabilities);
+    }
 
-        int sum = 0;
-        for (int num : data) {
-            sum += num;
+    @Override
+    public QuantileSketch quantileSketch() {
+        QuantileSketch result = this.quantileSketch;
+        if (result == null) {
+            result = new QuantileSketch();
+            for (long value : this.values) {
+                result.accept(value);
+            }
+            this.quantileSketch = result;
         }
+        return result;
+    }
 
-        double mean = (double) sum / data.length;
-        double roundedMean = round(mean * 100.0) / 100.0;
-        return this.outputBoundary.promptMean(roundedMean);
+    private long[] selectionValues() {
+        if (this.selectionValues == null) {
+            this.selectionValues = this.values.clone();
+        }
+        return this.selectionValues;
     }
 }
 
 /**
- * This class is an interactor for handle calculating standard deviation use case.
+ * An immutable dataset of floating-point numbers, for inputs with fractions or exponents.
+ * Values are kept in input order and never boxed. Sums are compensated, and order statistics
+ * are selected on a working copy of sort keys, which order as the numbers do.
  */
-class SDInteractor implements SDInputBoundary {
-    private final SDOutputBoundary outputBoundary;
+class DoubleDataset implements DatasetSource {
+    private final double[] values;
+    private long[] selectionKeys;
+    private volatile StatisticsAccumulator statistics;
+    private volatile QuantileSketch quantileSketch;
 
-    public SDInteractor(SDOutputBoundary outputBoundary) {
-        this.outputBoundary = outputBoundary;
+    public DoubleDataset(double[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return this.values.length;
     }
 
     /**
-     * Calculates the standard deviation of given input and returns the result
-     * by encapsulating in SDViewModel through SDOutputBoundary.
-     *
-     * @param input user's input
-     * @return a SDViewModel object
+     * Returns the values in input order. The array is shared and must not be modified.
+     * @return list of numbers
      */
-    @Override
-    public SDViewModel calculateSD(String input) {
-        Dataset dataset = new Dataset(input);
-        int[] data = dataset.getNumberList();
-        int n = data.length;
+    public double[] values() {
+        return this.values;
+    }
 
-        int sum = 0;
-        for (int num : data) {
-            sum += num;
+    @Override
+    public StatisticsAccumulator statistics() {
+        StatisticsAccumulator result = this.statistics;
+        if (result == null) {
+            result = StatisticsAccumulator.of(this.values, 0, this.values.length);
+            this.statistics = result;
         }
+        return result;
+    }
 
-        double mean = (double) sum / n;
+    @Override
+    public synchronized double median() {
+        return Selection.medianOfSortKeys(selectionKeys());
+    }
 
-        double sumOfSquaredDifferences = 0;
-        for (int num : data) {
-            double diff = num - mean;
-            sumOfSquaredDifferences += diff * diff;
-        }
+    @Override
+    public synchronized double quantile(double p) {
+        return Selection.quantileOfSortKeys(selectionKeys(), p);
+    }
 
-        double variance = sumOfSquaredDifferences / (n - 1);
-        double roundedSD = round(sqrt(variance) * 100.0) / 100.0;
+    @Override
+    public synchronized double[] medianAndQuantiles(double[] probabilities) {
+        return Selection.medianAndQuantilesOfSortKeys(selectionKeys(), probabilities);
+    }
 
-        return this.outputBoundary.promptSD(roundedSD);
+    @Override
+    public QuantileSketch quantileSketch() {
+        QuantileSketch result = this.quantileSketch;
+        if (result == null) {
+            result = new QuantileSketch();
+            for (double value : this.values) {
+                result.accept(value);
+            }
+            this.quantileSketch = result;
+        }
+        return result;
+    }
+
+    private long[] selectionKeys() {
+        if (this.selectionKeys == null) {
+            long[] keys = new long[this.values.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = Selection.sortKey(this.values[i]);
+            }
+            this.selectionKeys = keys;
+        }
+        return this.selectionKeys;
     }
 }
 
 /**
- * This class is an interactor for handle calculating median use case.
+ * This class accumulates count, sum, mean, variance, min and max in a single pass.
+ * Mean and the sum of squared differences (M2) are updated with Welford's method,
+ * and the sum is Kahan-Neumaier compensated, so large inputs neither overflow nor lose precision.
+ * Two accumulators can be combined, which lets partial results of chunks be merged.
  */
-class MedianInteractor implements MedianInputBoundary {
-    private final MedianOutputBoundary outputBoundary;
+class StatisticsAccumulator {
+    // at most 2^15, so that the sums of the 16-bit halves of a block cannot overflow int
+    private static final int BLOCK_SIZE = 4096;
 
-    public MedianInteractor(MedianOutputBoundary outputBoundary) {
-        this.outputBoundary = outputBoundary;
-    }
+    private long count;
+    private double sum;
+    private double sumCompensation;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
 
     /**
-     * Calculates the median of given input and returns the result
-     * by encapsulating in MedianViewModel through MedianOutputBoundary.
-     *
-     * @param input user's input
-     * @return a MedianViewModel object
+     * Accumulates all values of the list in one pass.
+     * @param data list of integers
+     * @return an accumulator which holds the statistics of the list
      */
-    @Override
-    public MedianViewModel calculateMedian(String input) {
+    public static StatisticsAccumulator of(int[] data) {
+        return of(data, 0, data.length);
+    }
 
-        Dataset dataset = new Dataset(input);
-        int[] data = dataset.getNumberList();
-        int n = data.length;
-        double median;
+    /**
+     * Accumulates the values from index from (inclusive) to index to (exclusive).
+     * Values are read in blocks small enough to stay in cache: the exact mean of a block
+     * comes from a long sum, its M2 from a second pass over the cached block,
+     * and blocks are combined with the parallel variance formula.
+     * The loops are shaped for the JIT: the sum is kept as two int sums of the high and low 16 bits,
+     * which cannot overflow in a block and which the JIT turns into SIMD additions, min and max are found
+     * in a loop of their own with branches that are rarely taken, and M2 is split over four independent sums
+     * so additions do not wait for each other.
+     * @param data list of integers
+     * @param from first index
+     * @param to index after the last one
+     * @return an accumulator which holds the statistics of the range
+     */
+    public static StatisticsAccumulator of(int[] data, int from, int to) {
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        StatisticsAccumulator block = new StatisticsAccumulator();
+        CalculationProgress progress = CalculationProgress.current();
+        for (int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+            if (progress != null) {
+                progress.report("Calculating", blockStart - from, to - from);
+            }
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, to);
+            int highSum = 0;
+            int lowSum = 0;
+            for (int i = blockStart; i < blockEnd; i++) {
+                int value = data[i];
+                highSum += value >> 16;
+                lowSum += value & 0xFFFF;
+            }
+            long blockSum = ((long) highSum << 16) + lowSum;
+            int blockMin = Integer.MAX_VALUE;
+            int blockMax = Integer.MIN_VALUE;
+            for (int i = blockStart; i < blockEnd; i++) {
+                int value = data[i];
+                if (value < blockMin) {
+                    blockMin = value;
+                }
+                if (value > blockMax) {
+                    blockMax = value;
+                }
+            }
+            int blockCount = blockEnd - blockStart;
+            double blockMean = (double) blockSum / blockCount;
+            double m2a = 0;
+            double m2b = 0;
+            double m2c = 0;
+            double m2d = 0;
+            int i = blockStart;
+            for (; i + 3 < blockEnd; i += 4) {
+                double diffA = data[i] - blockMean;
+                double diffB = data[i + 1] - blockMean;
+                double diffC = data[i + 2] - blockMean;
+                double diffD = data[i + 3] - blockMean;
+                m2a += diffA * diffA;
+                m2b += diffB * diffB;
+                m2c += diffC * diffC;
+                m2d += diffD * diffD;
+            }
+            for (; i < blockEnd; i++) {
+                double diff = data[i] - blockMean;
+                m2a += diff * diff;
+            }
+            double blockM2 = (m2a + m2b) + (m2c + m2d);
+            block.set(blockCount, blockSum, blockMean, blockM2, blockMin, blockMax);
+            result.combine(block);
+        }
+        return result;
+    }
 
-        if (n % 2 == 1) {
-            median = data[n / 2];
-        } else {
-            int middleIndex1 = n / 2 - 1;
-            int middleIndex2 = n / 2;
-            median = (data[middleIndex1] + data[middleIndex2]) / 2.0;
+    /**
+     * Accumulates the values from index from (inclusive) to index to (exclusive)
+     * in cache-sized blocks, the same way as the int version.
+     * @param data list of numbers
+     * @param from first index
+     * @param to index after the last one
+     * @return an accumulator which holds the statistics of the range
+     */
+    public static StatisticsAccumulator of(double[] data, int from, int to) {
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        StatisticsAccumulator block = new StatisticsAccumulator();
+        for (int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, to);
+            // values of very different magnitude lose digits in a plain sum, so it is compensated
+            double blockSum = 0;
+            double compensation = 0;
+            double blockMin = Double.POSITIVE_INFINITY;
+            double blockMax = Double.NEGATIVE_INFINITY;
+            // once the sum overflows it stays infinite, and compensating it would turn it into NaN
+            for (int i = blockStart; i < blockEnd; i++) {
+                double value = data[i];
+                double total = blockSum + value;
+                if (Double.isFinite(total)) {
+                    if (Math.abs(blockSum) >= Math.abs(value)) {
+                        compensation += (blockSum - total) + value;
+                    } else {
+                        compensation += (value - total) + blockSum;
+                    }
+                }
+                blockSum = total;
+                blockMin = Math.min(blockMin, value);
+                blockMax = Math.max(blockMax, value);
+            }
+            blockSum += compensation;
+            int blockCount = blockEnd - blockStart;
+            double blockMean = blockSum / blockCount;
+            double blockM2 = 0;
+            for (int i = blockStart; i < blockEnd; i++) {
+                double diff = data[i] - blockMean;
+                blockM2 += diff * diff;
+            }
+            block.set(blockCount, blockSum, blockMean, blockM2, blockMin, blockMax);
+            result.combine(block);
         }
+        return result;
+    }
 
-        return this.outputBoundary.promptMedian(median);
+    /**
+     * Accumulates all values of the list. 64-bit integers can overflow any long sum and lose digits as doubles,
+     * so the sum is kept exactly in 128 bits, and the differences from the mean are taken from
+     * a long near the mean, which is exact while the values are less than 2^63 apart.
+     * @param data list of 64-bit integers
+     * @return an accumulator which holds the statistics of the list
+     */
+    public static StatisticsAccumulator of(long[] data) {
+        return of(data, 0, data.length);
     }
-}
 
-/**
- * This class is an interactor for handle calculating sample size use case.
- */
-class SampleSizeInteractor implements SampleSizeInputBoundary {
-    private final SampleSizeOutputBoundary outputBoundary;
+    /**
+     * Accumulates the 64-bit integers from index from (inclusive) to index to (exclusive), the same way as of(long[]).
+     * @param data list of 64-bit integers
+     * @param from first index
+     * @param to index after the last one
+     * @return an accumulator which holds the statistics of the range
+     */
+    public static StatisticsAccumulator of(long[] data, int from, int to) {
+        int n = to - from;
+        if (n == 0) {
+            return new StatisticsAccumulator();
+        }
+        CalculationProgress progress = CalculationProgress.current();
+        long sumHigh = 0;
+        long sumLow = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (progress != null && (i & (BLOCK_SIZE - 1)) == 0) {
+                progress.report("Calculating", i, 2L * n);
+            }
+            long value = data[from + i];
+            long low = sumLow + value;
+            sumHigh += (value >> 63) + (Long.compareUnsigned(low, sumLow) < 0 ? 1 : 0);
+            sumLow = low;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double sum = toDouble(sumHigh, sumLow);
 
-    public SampleSizeInteractor(SampleSizeOutputBoundary outputBoundary) {
-        this.outputBoundary = outputBoundary;
+        // the mean is center + offset, where the offset is exact as (sum - n * center) / n
+        long center = (long) (sum / n);
+        long restLow = sumLow - n * center;
+        long restHigh = sumHigh - Math.multiplyHigh(n, center) - (Long.compareUnsigned(sumLow, n * center) < 0 ? 1 : 0);
+        double offset = (restHigh == restLow >> 63) ? (double) restLow / n : (sum - (double) n * center) / n;
+        double m2 = 0;
+        for (int i = 0; i < n; i++) {
+            if (progress != null && (i & (BLOCK_SIZE - 1)) == 0) {
+                progress.report("Calculating", n + i, 2L * n);
+            }
+            long value = data[from + i];
+            long difference = value - center;
+            double diff = ((value ^ center) & (value ^ difference)) < 0
+                    ? (double) value - (center + offset)
+                    : difference - offset;
+            m2 += diff * diff;
+        }
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        result.set(n, sum, center + offset, m2, min, max);
+        return result;
     }
 
     /**
-     * Calculates the sample size of given input and returns the result
-     * by encapsulating in SampleSizeViewModel through SampleSizeOutputBoundary.
-     *
-     * @param input user's input
-     * @return a SampleSizeViewModel object
+     * Rounds a statistic to two decimals for display. Math.round stops at the range of long,
+     * and doubles of magnitude 1e15 or more have no hundredths left to round,
+     * so those values, infinities and NaN are returned as they are.
+     * @param value a statistic
+     * @return value rounded to two decimals
      */
-    @Override
-    public SampleSizeViewModel calculateSampleSize(String input) {
-        Dataset dataset = new Dataset(input);
-        int[] data = dataset.getNumberList();
-        int n = data.length;
+    static double roundToHundredths(double value) {
+        if (!(Math.abs(value) < 1e15)) {
+            return value;
+        }
+        return round(value * 100.0) / 100.0;
+    }
 
-        return this.outputBoundary.promptSampleSize(n);
+    /**
+     * A private helper function to round a 128-bit integer, given as its high and low 64 bits, to a double.
+     */
+    static double toDouble(long high, long low) {
+        return high * 0x1p64 + (double) (low >>> 1) * 2 + (low & 1);
     }
-}
 
-/**
- * This interface is an abstraction layer between MeanInteractor and MeanPresenter.
- */
-interface MeanOutputBoundary {
-    MeanViewModel promptMean(double mean);
-}
+    /**
+     * Creates an accumulator from moments which were computed before, for example stored in a file.
+     * @param count number of values
+     * @param sum sum of the values
+     * @param m2 sum of squared differences from the mean
+     * @param min smallest value
+     * @param max largest value
+     * @return an accumulator which holds the given statistics
+     */
+    public static StatisticsAccumulator restore(long count, double sum, double m2, double min, double max) {
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        if (count > 0) {
+            result.set(count, sum, sum / count, m2, min, max);
+        }
+        return result;
+    }
+
+    /**
+     * Adds one value.
+     * @param value a value
+     */
+    public void accept(double value) {
+        count++;
+        addToSum(value);
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Merges the values of another accumulator into this one.
+     * @param other another accumulator
+     */
+    public void combine(StatisticsAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            set(other.count, other.sum, other.mean, other.m2, other.min, other.max);
+            sumCompensation = other.sumCompensation;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        // two infinite means have no known difference, and M2 of such blocks is infinite already
+        m2 += other.m2 + (Double.isNaN(delta) ? 0 : delta * delta * ((double) count * other.count / total));
+        addToSum(other.sum);
+        addToSum(other.sumCompensation);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        count = total;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getSum() {
+        return this.sum + this.sumCompensation;
+    }
+
+    public double getMean() {
+        return getSum() / this.count;
+    }
+
+    /**
+     * Returns the sum of squared differences from the mean (M2).
+     * @return M2
+     */
+    public double getM2() {
+        return this.m2;
+    }
+
+    /**
+     * Returns the sample variance, which divides M2 by n - 1. The variance of one value is 0.
+     * @return sample variance
+     */
+    public double getVariance() {
+        return this.count == 1 ? 0 : this.m2 / (this.count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation.
+     * @return sample standard deviation
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    private void set(long count, double sum, double mean, double m2, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.sumCompensation = 0;
+        this.mean = mean;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * A private helper function for Kahan-Neumaier compensated summation.
+     */
+    private void addToSum(double value) {
+        double total = sum + value;
+        if (!Double.isFinite(total)) {
+            sum = total;
+            return;
+        }
+        if (Math.abs(sum) >= Math.abs(value)) {
+            sumCompensation += (sum - total) + value;
+        } else {
+            sumCompensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+}
+
+/**
+ * This class computes StatisticsAccumulator and QuantileSketch over large lists on a ForkJoinPool.
+ * The list is split into chunks, each chunk is accumulated on its own
+ * and partial results are combined with the parallel variance formula or merged as sketches.
+ * Chunks are always combined in the same order, so results do not depend on scheduling.
+ */
+class ParallelStatistics {
+    /**
+     * Lists smaller than this are accumulated on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 18;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private ParallelStatistics() {
+    }
+
+    /**
+     * Accumulates the list in parallel on the common pool if it is large enough, and sequentially otherwise.
+     * @param data list of integers
+     * @return an accumulator which holds the statistics of the list
+     */
+    public static StatisticsAccumulator of(int[] data) {
+        if (data.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return StatisticsAccumulator.of(data);
+        }
+        return of(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Accumulates the list in parallel on the given pool.
+     * @param data list of integers
+     * @param pool pool which runs the chunks
+     * @return an accumulator which holds the statistics of the list
+     */
+    public static StatisticsAccumulator of(int[] data, ForkJoinPool pool) {
+        return pool.invoke(new StatisticsTask(data, 0, data.length, CalculationProgress.current(), new AtomicLong()));
+    }
+
+    /**
+     * Builds a quantile sketch of the list, in parallel on the common pool if it is large enough.
+     * @param data list of integers
+     * @param k accuracy parameter of the sketch
+     * @return a quantile sketch of the list
+     */
+    public static QuantileSketch sketch(int[] data, int k) {
+        if (data.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return QuantileSketch.of(data, 0, data.length, k);
+        }
+        return sketch(data, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a quantile sketch of the list in parallel on the given pool.
+     * @param data list of integers
+     * @param k accuracy parameter of the sketch
+     * @param pool pool which runs the chunks
+     * @return a quantile sketch of the list
+     */
+    public static QuantileSketch sketch(int[] data, int k, ForkJoinPool pool) {
+        return pool.invoke(new SketchTask(data, 0, data.length, k));
+    }
+
+    /**
+     * A task which accumulates a range. The progress of the calling thread, if any,
+     * is passed down so that workers report finished chunks and stop when it is cancelled.
+     */
+    private static final class StatisticsTask extends RecursiveTask<StatisticsAccumulator> {
+        private final int[] data;
+        private final int from;
+        private final int to;
+        private final CalculationProgress progress;
+        private final AtomicLong done;
+
+        private StatisticsTask(int[] data, int from, int to, CalculationProgress progress, AtomicLong done) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+            this.done = done;
+        }
+
+        @Override
+        protected StatisticsAccumulator compute() {
+            if (to - from <= CHUNK_SIZE) {
+                StatisticsAccumulator result = StatisticsAccumulator.of(data, from, to);
+                if (progress != null) {
+                    progress.report("Calculating", done.addAndGet(to - from), data.length);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(data, from, middle, progress, done);
+            left.fork();
+            StatisticsAccumulator right = new StatisticsTask(data, middle, to, progress, done).compute();
+            StatisticsAccumulator result = left.join();
+            result.combine(right);
+            return result;
+        }
+    }
+
+    private static final class SketchTask extends RecursiveTask<QuantileSketch> {
+        private final int[] data;
+        private final int from;
+        private final int to;
+        private final int k;
+
+        private SketchTask(int[] data, int from, int to, int k) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        @Override
+        protected QuantileSketch compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return QuantileSketch.of(data, from, to, k);
+            }
+            int middle = (from + to) >>> 1;
+            SketchTask left = new SketchTask(data, from, middle, k);
+            left.fork();
+            QuantileSketch right = new SketchTask(data, middle, to, k).compute();
+            QuantileSketch result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+}
+
+/**
+ * This class finds order statistics of an int array in expected linear time without sorting it.
+ * It uses quickselect and falls back to median of medians pivots when partitioning goes badly,
+ * so the worst case is linear too. All methods reorder the given array.
+ * Large ranges check for cancellation before every partition, see CalculationProgress.checkpoint.
+ */
+class Selection {
+    private static final int INSERTION_SORT_SIZE = 16;
+    // ranges at least this large check for cancellation before they are partitioned
+    private static final int CHECKPOINT_SIZE = 1 << 16;
+
+    private Selection() {
+    }
+
+    /**
+     * Returns the k-th smallest value (k starts from 0) and moves it to index k.
+     * Afterwards no value left of k is larger and no value right of k is smaller.
+     * @param data list of integers
+     * @param k rank of the value
+     * @return k-th smallest value
+     */
+    public static int select(int[] data, int k) {
+        if (k < 0 || k >= data.length) {
+            throw new IllegalArgumentException("Rank " + k + " is out of range for size " + data.length);
+        }
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(data.length));
+        return select(data, 0, data.length - 1, k, depthLimit);
+    }
+
+    /**
+     * Returns the median. In case of even size, the mean of two numbers in the middle is returned.
+     * @param data list of integers
+     * @return median
+     */
+    public static double median(int[] data) {
+        int n = data.length;
+        int upper = select(data, n / 2);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        return ((long) maxBefore(data, n / 2) + upper) / 2.0;
+    }
+
+    /**
+     * Returns the median of the values from index from to index to, excluded, and reorders only that range.
+     * @param data list of integers
+     * @param from first index
+     * @param to index after the last one, larger than from
+     * @return median of the range
+     */
+    public static double median(int[] data, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            throw new IllegalArgumentException("Range from " + from + " to " + to + " is empty");
+        }
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(n));
+        int upper = select(data, from, to - 1, from + n / 2, depthLimit);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        int lower = data[from];
+        for (int i = from + 1; i < from + n / 2; i++) {
+            lower = Math.max(lower, data[i]);
+        }
+        return ((long) lower + upper) / 2.0;
+    }
+
+    /**
+     * Returns the p-quantile, interpolating linearly between the two closest ranks.
+     * @param data list of integers
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    public static double quantile(int[] data, double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        double rank = (data.length - 1) * p;
+        int lowerRank = (int) rank;
+        int lower = select(data, lowerRank);
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return lower;
+        }
+        return lower + fraction * ((double) minAfter(data, lowerRank) - lower);
+    }
+
+    /**
+     * Returns the median followed by the p-quantile for every p, the same numbers as median and quantile,
+     * with all the ranks they need found by one call of selectAll.
+     * @param data list of integers
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    public static double[] medianAndQuantiles(int[] data, double[] probabilities) {
+        selectAll(data, ranksOf(data.length, probabilities));
+        int n = data.length;
+        double[] result = new double[probabilities.length + 1];
+        result[0] = n % 2 == 1 ? data[n / 2] : ((long) data[n / 2 - 1] + data[n / 2]) / 2.0;
+        for (int i = 0; i < probabilities.length; i++) {
+            double rank = (n - 1) * probabilities[i];
+            int lowerRank = (int) rank;
+            double fraction = rank - lowerRank;
+            int lower = data[lowerRank];
+            result[i + 1] = fraction == 0 ? lower : lower + fraction * ((double) data[lowerRank + 1] - lower);
+        }
+        return result;
+    }
+
+    /**
+     * Moves the values of all the given ranks to their indices, the same as the 64-bit version.
+     * @param data list of integers
+     * @param ranks ranks in ascending order
+     */
+    public static void selectAll(int[] data, int[] ranks) {
+        checkRanks(data.length, ranks);
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(data.length));
+        selectAll(data, 0, data.length - 1, ranks, 0, ranks.length, depthLimit);
+    }
+
+    /**
+     * Returns the ranks which the median and the p-quantiles of n values need, in ascending order without repeats.
+     * @param n number of values
+     * @param probabilities probabilities between 0 and 1
+     * @return ranks
+     */
+    static int[] ranksOf(long n, double[] probabilities) {
+        if (n == 0) {
+            throw new IllegalArgumentException("Rank 0 is out of range for size 0");
+        }
+        long[] ranks = new long[2 * probabilities.length + 2];
+        ranks[0] = (n - 1) / 2;
+        ranks[1] = n / 2;
+        for (int i = 0; i < probabilities.length; i++) {
+            double p = probabilities[i];
+            if (!(p >= 0 && p <= 1)) {
+                throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+            }
+            long lowerRank = (long) ((n - 1) * p);
+            ranks[2 * i + 2] = lowerRank;
+            ranks[2 * i + 3] = Math.min(lowerRank + 1, n - 1);
+        }
+        return Arrays.stream(ranks).sorted().distinct().mapToInt(Math::toIntExact).toArray();
+    }
+
+    /**
+     * Returns the k-th smallest value (k starts from 0) and moves it to index k, the same as the int version.
+     * @param data list of 64-bit integers
+     * @param k rank of the value
+     * @return k-th smallest value
+     */
+    public static long select(long[] data, int k) {
+        if (k < 0 || k >= data.length) {
+            throw new IllegalArgumentException("Rank " + k + " is out of range for size " + data.length);
+        }
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(data.length));
+        return select(data, 0, data.length - 1, k, depthLimit);
+    }
+
+    /**
+     * Returns the median. In case of even size, the mean of two numbers in the middle is returned,
+     * halved before adding so that it cannot overflow.
+     * @param data list of 64-bit integers
+     * @return median
+     */
+    public static double median(long[] data) {
+        int n = data.length;
+        long upper = select(data, n / 2);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        return middle(maxBefore(data, n / 2), upper);
+    }
+
+    /**
+     * Returns the p-quantile, interpolating linearly between the two closest ranks.
+     * @param data list of 64-bit integers
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    public static double quantile(long[] data, double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        double rank = (data.length - 1) * p;
+        int lowerRank = (int) rank;
+        long lower = select(data, lowerRank);
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return lower;
+        }
+        return interpolate(lower, minAfter(data, lowerRank), fraction);
+    }
+
+    /**
+     * Returns the median followed by the p-quantile for every p, the same numbers as median and quantile,
+     * with all the ranks they need found by one call of selectAll.
+     * @param data list of 64-bit integers
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    public static double[] medianAndQuantiles(long[] data, double[] probabilities) {
+        selectAll(data, ranksOf(data.length, probabilities));
+        int n = data.length;
+        double[] result = new double[probabilities.length + 1];
+        result[0] = n % 2 == 1 ? data[n / 2] : middle(data[n / 2 - 1], data[n / 2]);
+        for (int i = 0; i < probabilities.length; i++) {
+            double rank = (n - 1) * probabilities[i];
+            int lowerRank = (int) rank;
+            double fraction = rank - lowerRank;
+            result[i + 1] = fraction == 0 ? data[lowerRank] : interpolate(data[lowerRank], data[lowerRank + 1], fraction);
+        }
+        return result;
+    }
+
+    /**
+     * A private helper function to find the mean of two 64-bit integers, halved before adding so that it cannot overflow.
+     */
+    private static double middle(long lower, long upper) {
+        return (double) ((lower >> 1) + (upper >> 1) + (lower & upper & 1)) + ((lower ^ upper) & 1) * 0.5;
+    }
+
+    private static double interpolate(long lower, long upper, double fraction) {
+        // the difference is exact as an unsigned 64-bit integer even when it overflows long
+        double difference = (double) (upper - lower);
+        if (difference < 0) {
+            difference += 0x1p64;
+        }
+        return lower + fraction * difference;
+    }
+
+    /**
+     * Moves the values of all the given ranks to their indices, as select does for one rank, in one pass.
+     * A partition is only continued on the sides which still hold a given rank, so the partitions
+     * above the point where the ranks part are shared, and close ranks cost little more than one.
+     * @param data list of 64-bit integers
+     * @param ranks ranks in ascending order
+     */
+    public static void selectAll(long[] data, int[] ranks) {
+        checkRanks(data.length, ranks);
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(data.length));
+        selectAll(data, 0, data.length - 1, ranks, 0, ranks.length, depthLimit);
+    }
+
+    private static void checkRanks(int size, int[] ranks) {
+        for (int i = 0; i < ranks.length; i++) {
+            if (ranks[i] < 0 || ranks[i] >= size || (i > 0 && ranks[i] < ranks[i - 1])) {
+                throw new IllegalArgumentException("Rank " + ranks[i] + " is out of range or order for size " + size);
+            }
+        }
+    }
+
+    private static long select(long[] data, int lo, int hi, int k, int depthLimit) {
+        selectAll(data, lo, hi, new int[] {k}, 0, 1, depthLimit);
+        return data[k];
+    }
+
+    /**
+     * A private helper function to select ranks[first] to ranks[last - 1], which all lie in [lo, hi].
+     * The side holding the smaller ranks is recursed into and the other one is continued in the loop.
+     */
+    private static void selectAll(long[] data, int lo, int hi, int[] ranks, int first, int last, int depthLimit) {
+        while (first < last && hi - lo >= INSERTION_SORT_SIZE) {
+            if (hi - lo >= CHECKPOINT_SIZE) {
+                CalculationProgress.checkpoint("Selecting", data.length - (hi - lo + 1), data.length);
+            }
+            long pivot;
+            if (depthLimit > 0) {
+                depthLimit--;
+                pivot = medianOfThree(data[lo], data[lo + (hi - lo) / 2], data[hi]);
+            } else {
+                pivot = medianOfMedians(data, lo, hi);
+            }
+
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                long value = data[i];
+                if (value < pivot) {
+                    data[i++] = data[lt];
+                    data[lt++] = value;
+                } else if (value > pivot) {
+                    data[i] = data[gt];
+                    data[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+
+            int below = first;
+            while (below < last && ranks[below] < lt) {
+                below++;
+            }
+            if (first < below) {
+                selectAll(data, lo, lt - 1, ranks, first, below, depthLimit);
+            }
+            first = below;
+            while (first < last && ranks[first] <= gt) {
+                first++;
+            }
+            lo = gt + 1;
+        }
+        if (first < last) {
+            insertionSort(data, lo, hi);
+        }
+    }
+
+    private static long medianOfMedians(long[] data, int lo, int hi) {
+        int medians = lo;
+        for (int groupStart = lo; groupStart <= hi; groupStart += 5) {
+            int groupEnd = Math.min(groupStart + 4, hi);
+            insertionSort(data, groupStart, groupEnd);
+            long temp = data[medians];
+            data[medians++] = data[groupStart + (groupEnd - groupStart) / 2];
+            data[groupStart + (groupEnd - groupStart) / 2] = temp;
+        }
+        return select(data, lo, medians - 1, lo + (medians - 1 - lo) / 2, 0);
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        if (a < b) {
+            return b < c ? b : Math.max(a, c);
+        }
+        return a < c ? a : Math.max(b, c);
+    }
+
+    private static void insertionSort(long[] data, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            long value = data[i];
+            int j = i - 1;
+            while (j >= lo && data[j] > value) {
+                data[j + 1] = data[j];
+                j--;
+            }
+            data[j + 1] = value;
+        }
+    }
+
+    private static long maxBefore(long[] data, int k) {
+        long max = data[0];
+        for (int i = 1; i < k; i++) {
+            max = Math.max(max, data[i]);
+        }
+        return max;
+    }
+
+    private static long minAfter(long[] data, int k) {
+        long min = data[k + 1];
+        for (int i = k + 2; i < data.length; i++) {
+            min = Math.min(min, data[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns a key whose order as a long is the order of the doubles, so doubles can be selected as longs.
+     * @param value a number which is not NaN
+     * @return sort key
+     */
+    static long sortKey(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+    }
+
+    static double fromSortKey(long key) {
+        return Double.longBitsToDouble(key < 0 ? key ^ Long.MAX_VALUE : key);
+    }
+
+    /**
+     * Returns the median of the doubles whose sort keys are given.
+     * @param keys sort keys of the values
+     * @return median
+     */
+    public static double medianOfSortKeys(long[] keys) {
+        int n = keys.length;
+        double upper = fromSortKey(select(keys, n / 2));
+        if (n % 2 == 1) {
+            return upper;
+        }
+        return fromSortKey(maxBefore(keys, n / 2)) / 2 + upper / 2;
+    }
+
+    /**
+     * Returns the p-quantile of the doubles whose sort keys are given,
+     * interpolating linearly between the two closest ranks.
+     * @param keys sort keys of the values
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    public static double quantileOfSortKeys(long[] keys, double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        double rank = (keys.length - 1) * p;
+        int lowerRank = (int) rank;
+        double lower = fromSortKey(select(keys, lowerRank));
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return lower;
+        }
+        return lower + fraction * (fromSortKey(minAfter(keys, lowerRank)) - lower);
+    }
+
+    /**
+     * Returns the median followed by the p-quantile for every p of the doubles whose sort keys are given,
+     * the same numbers as medianOfSortKeys and quantileOfSortKeys, with all the ranks found by one selection.
+     * @param keys sort keys of the values
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    public static double[] medianAndQuantilesOfSortKeys(long[] keys, double[] probabilities) {
+        selectAll(keys, ranksOf(keys.length, probabilities));
+        int n = keys.length;
+        double[] result = new double[probabilities.length + 1];
+        double upper = fromSortKey(keys[n / 2]);
+        result[0] = n % 2 == 1 ? upper : fromSortKey(keys[n / 2 - 1]) / 2 + upper / 2;
+        for (int i = 0; i < probabilities.length; i++) {
+            double rank = (n - 1) * probabilities[i];
+            int lowerRank = (int) rank;
+            double fraction = rank - lowerRank;
+            double lower = fromSortKey(keys[lowerRank]);
+            result[i + 1] = fraction == 0 ? lower : lower + fraction * (fromSortKey(keys[lowerRank + 1]) - lower);
+        }
+        return result;
+    }
+
+    private static int select(int[] data, int lo, int hi, int k, int depthLimit) {
+        selectAll(data, lo, hi, new int[] {k}, 0, 1, depthLimit);
+        return data[k];
+    }
+
+    /**
+     * A private helper function to select ranks[first] to ranks[last - 1], which all lie in [lo, hi].
+     * The side holding the smaller ranks is recursed into and the other one is continued in the loop.
+     */
+    private static void selectAll(int[] data, int lo, int hi, int[] ranks, int first, int last, int depthLimit) {
+        while (first < last && hi - lo >= INSERTION_SORT_SIZE) {
+            if (hi - lo >= CHECKPOINT_SIZE) {
+                CalculationProgress.checkpoint("Selecting", data.length - (hi - lo + 1), data.length);
+            }
+            int pivot;
+            if (depthLimit > 0) {
+                depthLimit--;
+                pivot = medianOfThree(data[lo], data[lo + (hi - lo) / 2], data[hi]);
+            } else {
+                pivot = medianOfMedians(data, lo, hi);
+            }
+
+            // three-way partition: [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi] > pivot
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                int value = data[i];
+                if (value < pivot) {
+                    data[i++] = data[lt];
+                    data[lt++] = value;
+                } else if (value > pivot) {
+                    data[i] = data[gt];
+                    data[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+
+            int below = first;
+            while (below < last && ranks[below] < lt) {
+                below++;
+            }
+            if (first < below) {
+                selectAll(data, lo, lt - 1, ranks, first, below, depthLimit);
+            }
+            first = below;
+            while (first < last && ranks[first] <= gt) {
+                first++;
+            }
+            lo = gt + 1;
+        }
+        if (first < last) {
+            insertionSort(data, lo, hi);
+        }
+    }
+
+    /**
+     * A private helper function to find a pivot which is guaranteed to split the range well.
+     * Medians of groups of five are moved to the front of the range and their median is selected.
+     */
+    private static int medianOfMedians(int[] data, int lo, int hi) {
+        int medians = lo;
+        for (int groupStart = lo; groupStart <= hi; groupStart += 5) {
+            int groupEnd = Math.min(groupStart + 4, hi);
+            insertionSort(data, groupStart, groupEnd);
+            swap(data, medians++, groupStart + (groupEnd - groupStart) / 2);
+        }
+        return select(data, lo, medians - 1, lo + (medians - 1 - lo) / 2, 0);
+    }
+
+    private static int medianOfThree(int a, int b, int c) {
+        if (a < b) {
+            return b < c ? b : Math.max(a, c);
+        }
+        return a < c ? a : Math.max(b, c);
+    }
+
+    private static void insertionSort(int[] data, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            int value = data[i];
+            int j = i - 1;
+            while (j >= lo && data[j] > value) {
+                data[j + 1] = data[j];
+                j--;
+            }
+            data[j + 1] = value;
+        }
+    }
+
+    private static void swap(int[] data, int i, int j) {
+        int temp = data[i];
+        data[i] = data[j];
+        data[j] = temp;
+    }
+
+    /**
+     * A private helper function to find the largest value left of a selected rank.
+     */
+    private static int maxBefore(int[] data, int k) {
+        int max = data[0];
+        for (int i = 1; i < k; i++) {
+            max = Math.max(max, data[i]);
+        }
+        return max;
+    }
+
+    /**
+     * A private helper function to find the smallest value right of a selected rank.
+     */
+    private static int minAfter(int[] data, int k) {
+        int min = data[k + 1];
+        for (int i = k + 2; i < data.length; i++) {
+            min = Math.min(min, data[i]);
+        }
+        return min;
+    }
+}
+
+/**
+ * A dataset which is read from a file or a stream without keeping its values in memory.
+ * One pass over the bytes feeds StatisticsAccumulator for mean, standard deviation and count,
+ * and QuantileSketch for the median, so memory use does not grow with the size of the data.
+ * The median is approximate once the data is larger than the sketch.
+ */
+class StreamingDataset implements DatasetSource {
+    private static final int BLOCK_SIZE = 4096;
+
+    private final Path path;
+    private ReadableByteChannel channel;
+    private StatisticsAccumulator statistics;
+    private QuantileSketch sketch;
+    private RuntimeException failure;
+
+    private StreamingDataset(Path path, ReadableByteChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a dataset which reads the file when a statistic is first asked for.
+     * @param path file which has numbers separated by commas or line breaks
+     * @return a streaming dataset
+     */
+    public static StreamingDataset of(Path path) {
+        return new StreamingDataset(path, null);
+    }
+
+    /**
+     * Creates a dataset which reads the channel once. The caller closes the channel.
+     * @param channel channel which has numbers separated by commas or line breaks
+     * @return a streaming dataset
+     */
+    public static StreamingDataset of(ReadableByteChannel channel) {
+        return new StreamingDataset(null, channel);
+    }
+
+    /**
+     * Creates a dataset which reads the stream once. The caller closes the stream.
+     * @param in stream which has numbers separated by commas or line breaks
+     * @return a streaming dataset
+     */
+    public static StreamingDataset of(InputStream in) {
+        return of(Channels.newChannel(in));
+    }
+
+    @Override
+    public long size() {
+        return statistics().getCount();
+    }
+
+    @Override
+    public synchronized StatisticsAccumulator statistics() {
+        read();
+        return this.statistics;
+    }
+
+    @Override
+    public synchronized double median() {
+        read();
+        return this.sketch.quantile(0.5);
+    }
+
+    @Override
+    public synchronized QuantileSketch quantileSketch() {
+        read();
+        return this.sketch;
+    }
+
+    /**
+     * Returns an approximate p-quantile from the sketch.
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    @Override
+    public synchronized double quantile(double p) {
+        read();
+        return this.sketch.quantile(p);
+    }
+
+    /**
+     * A private helper function to read all values on the first query only.
+     * Values are parsed into a reused block, and each block is accumulated by the block kernel.
+     * Only a channel opened here is closed. A failure is kept and thrown again by later queries,
+     * since the values cannot be read a second time.
+     */
+    private void read() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        if (this.statistics != null) {
+            return;
+        }
+        StatisticsAccumulator result = new StatisticsAccumulator();
+        QuantileSketch quantiles = new QuantileSketch();
+        try (ReadableByteChannel opened = this.path != null ? FileChannel.open(this.path) : null) {
+            StreamingNumberParser parser = new StreamingNumberParser(opened != null ? opened : this.channel);
+            int[] block = new int[BLOCK_SIZE];
+            int count;
+            try {
+                while ((count = parser.read(block)) > 0) {
+                    result.combine(StatisticsAccumulator.of(block, 0, count));
+                    for (int i = 0; i < count; i++) {
+                        quantiles.accept(block[i]);
+                    }
+                }
+            } catch (NumberTypeException e) {
+                // a value is wider than int, so it and the rest are read as 64-bit integers or floating-point numbers
+                long[] longs = new long[BLOCK_SIZE];
+                double[] doubles = new double[BLOCK_SIZE];
+                while ((count = parser.read(longs, doubles)) > 0) {
+                    if (parser.isFloatingPoint()) {
+                        result.combine(StatisticsAccumulator.of(doubles, 0, count));
+                        for (int i = 0; i < count; i++) {
+                            quantiles.accept(doubles[i]);
+                        }
+                    } else {
+                        result.combine(StatisticsAccumulator.of(longs, 0, count));
+                        for (int i = 0; i < count; i++) {
+                            quantiles.accept(longs[i]);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            this.failure = new UncheckedIOException(e);
+            this.channel = null;
+            throw this.failure;
+        } catch (RuntimeException e) {
+            this.failure = e;
+            this.channel = null;
+            throw e;
+        }
+        this.statistics = result;
+        this.sketch = quantiles;
+        this.channel = null;
+    }
+}
+
+/**
+ * A parser which reads numbers straight from the bytes of a channel through one reused buffer.
+ * Values are separated by commas or line breaks, whitespace around a value is ignored
+ * and empty values, such as blank lines, are skipped.
+ * Integers are read by read(int[]). When a value does not fit, a NumberTypeException is thrown
+ * before anything of it is consumed, and the rest of the input, that value included,
+ * can be read as 64-bit integers or floating-point numbers by read(long[], double[]).
+ */
+class StreamingNumberParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private int position;
+    private int limit;
+    private long bufferOffset;
+    private boolean endOfInput;
+
+    // state of the value being parsed, which may continue in the next buffer
+    private boolean negative;
+    private boolean hasSign;
+    private boolean hasDigits;
+    private boolean afterValue;
+    private int value;
+    private long valueOffset;
+
+    // state of the wider values read by read(long[], double[]): a value is accumulated as a long
+    // until it has a fraction, an exponent or too many digits, and then it is kept as text
+    private long longValue;
+    private StringBuilder text;
+    private int prefixLength;
+    private long textOffset;
+    private double doubleValue;
+    private boolean floatingPoint;
+    private boolean pendingFloatingPoint;
+
+    public StreamingNumberParser(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Reads the next values into the block.
+     * @param block array to fill
+     * @return number of values read, which is 0 at the end of the input
+     * @throws IOException if the channel cannot be read
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public int read(int[] block) throws IOException {
+        int count = 0;
+        while (count < block.length) {
+            if (this.position == this.limit) {
+                if (this.endOfInput || !fill()) {
+                    if (this.hasDigits || this.hasSign) {
+                        block[count++] = finishValue(this.bufferOffset + this.limit);
+                    }
+                    return count;
+                }
+            }
+            byte b = this.bytes[this.position];
+            if (b == ',' || b == '\n') {
+                if (this.hasDigits || this.hasSign) {
+                    block[count++] = finishValue(this.bufferOffset + this.position);
+                }
+            } else if ((b & 0xFF) <= ' ') {
+                // bytes are signed, so non-ASCII bytes must not be taken for whitespace
+                this.afterValue = this.hasDigits || this.hasSign;
+            } else if (b >= '0' && b <= '9' && !this.afterValue) {
+                if (!this.hasDigits && !this.hasSign) {
+                    this.valueOffset = this.bufferOffset + this.position;
+                }
+                int limitValue = this.negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+                int digit = b - '0';
+                if (this.value < limitValue / 10 || this.value * 10 < limitValue + digit) {
+                    // the values before this one are returned first, and the next call throws
+                    if (count > 0) {
+                        return count;
+                    }
+                    this.longValue = this.value;
+                    throw new NumberTypeException("Integer out of range", this.valueOffset, false);
+                }
+                this.value = this.value * 10 - digit;
+                this.hasDigits = true;
+            } else if ((b == '-' || b == '+') && !this.hasDigits && !this.hasSign) {
+                this.valueOffset = this.bufferOffset + this.position;
+                this.negative = b == '-';
+                this.hasSign = true;
+            } else if (!this.afterValue && (b == '.' || ((b == 'e' || b == 'E') && this.hasDigits))) {
+                if (count > 0) {
+                    return count;
+                }
+                this.longValue = this.value;
+                throw new NumberTypeException("Invalid integer", this.bufferOffset + this.position, true);
+            } else {
+                throw new DatasetFormatException("Invalid integer", this.bufferOffset + this.position);
+            }
+            this.position++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next values, which may be wider than int, into one of the blocks.
+     * Values are read into longs as 64-bit integers until a value has a fraction or an exponent, or is out of
+     * the range of long. From then on isFloatingPoint() is true and every value is read into doubles.
+     * A block is never mixed: the first floating-point value starts a block of its own.
+     * @param longs array to fill with 64-bit integers
+     * @param doubles array to fill with floating-point numbers, as long as longs
+     * @return number of values read, which is 0 at the end of the input
+     * @throws IOException if the channel cannot be read
+     * @throws DatasetFormatException if a value is not a valid number
+     */
+    public int read(long[] longs, double[] doubles) throws IOException {
+        int count = 0;
+        if (this.pendingFloatingPoint) {
+            this.pendingFloatingPoint = false;
+            this.floatingPoint = true;
+            doubles[count++] = this.doubleValue;
+        }
+        while (count < longs.length) {
+            if (this.position == this.limit) {
+                if (this.endOfInput || !fill()) {
+                    if (this.hasDigits || this.hasSign || this.text != null) {
+                        boolean isDouble = finishNumber(this.bufferOffset + this.limit);
+                        if (store(longs, doubles, count, isDouble)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            }
+            byte b = this.bytes[this.position];
+            if (b == ',' || b == '\n') {
+                if (this.hasDigits || this.hasSign || this.text != null) {
+                    boolean isDouble = finishNumber(this.bufferOffset + this.position);
+                    if (!store(longs, doubles, count, isDouble)) {
+                        this.position++;
+                        return count;
+                    }
+                    count++;
+                }
+            } else if ((b & 0xFF) <= ' ') {
+                this.afterValue = this.hasDigits || this.hasSign || this.text != null;
+            } else if (this.afterValue) {
+                throw new DatasetFormatException("Invalid number", this.bufferOffset + this.position);
+            } else if (this.text != null) {
+                if ((b < '0' || b > '9') && b != '.' && b != 'e' && b != 'E' && b != '-' && b != '+') {
+                    throw new DatasetFormatException("Invalid number", this.bufferOffset + this.position);
+                }
+                this.text.append((char) b);
+            } else if (b >= '0' && b <= '9') {
+                if (!this.hasDigits && !this.hasSign) {
+                    this.valueOffset = this.bufferOffset + this.position;
+                }
+                long limitValue = this.negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+                int digit = b - '0';
+                if (this.longValue < limitValue / 10 || this.longValue * 10 < limitValue + digit) {
+                    startText();
+                    this.text.append((char) b);
+                } else {
+                    this.longValue = this.longValue * 10 - digit;
+                }
+                this.hasDigits = true;
+            } else if ((b == '-' || b == '+') && !this.hasDigits && !this.hasSign) {
+                this.valueOffset = this.bufferOffset + this.position;
+                this.negative = b == '-';
+                this.hasSign = true;
+            } else if (b == '.' || ((b == 'e' || b == 'E') && this.hasDigits)) {
+                if (!this.hasDigits && !this.hasSign) {
+                    this.valueOffset = this.bufferOffset + this.position;
+                }
+                startText();
+                this.text.append((char) b);
+            } else {
+                throw new DatasetFormatException("Invalid number", this.bufferOffset + this.position);
+            }
+            this.position++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether read(long[], double[]) has started to read floating-point numbers.
+     * @return true if the last block was read into doubles
+     */
+    public boolean isFloatingPoint() {
+        return this.floatingPoint;
+    }
+
+    /**
+     * Reads every remaining value into the narrowest type which holds all of them,
+     * the same way as NumberParser.parseNumbers.
+     * @return a dataset of integers, 64-bit integers or floating-point numbers in input order
+     * @throws IOException if the channel cannot be read
+     * @throws DatasetFormatException if a value is not a valid number
+     */
+    public DatasetSource readNumbers() throws IOException {
+        if (!Metrics.ENABLED) {
+            return readNarrowest();
+        }
+        long start = System.nanoTime();
+        try {
+            DatasetSource dataset = readNarrowest();
+            Metrics.PARSE_STREAM.recordSize(dataset.size());
+            return dataset;
+        } catch (IOException | RuntimeException e) {
+            Metrics.PARSE_STREAM.recordError();
+            throw e;
+        } finally {
+            Metrics.PARSE_STREAM.recordBytes(this.bufferOffset + this.limit);
+            Metrics.PARSE_STREAM.recordLatency(start);
+        }
+    }
+
+    private DatasetSource readNarrowest() throws IOException {
+        int[] ints = new int[1024];
+        int[] block = new int[4096];
+        int size = 0;
+        int count;
+        try {
+            while ((count = read(block)) > 0) {
+                if (size + count > ints.length) {
+                    ints = Arrays.copyOf(ints, Math.max(ints.length * 2, size + count));
+                }
+                System.arraycopy(block, 0, ints, size, count);
+                size += count;
+            }
+            return new ParsedDataset(Arrays.copyOf(ints, size));
+        } catch (NumberTypeException e) {
+            // the rest of the input is read as wider values below
+        }
+        long[] longs = new long[Math.max(ints.length, 1024)];
+        for (int i = 0; i < size; i++) {
+            longs[i] = ints[i];
+        }
+        double[] doubles = null;
+        long[] longBlock = new long[block.length];
+        double[] doubleBlock = new double[block.length];
+        while ((count = read(longBlock, doubleBlock)) > 0) {
+            if (this.floatingPoint && doubles == null) {
+                doubles = new double[longs.length];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = longs[i];
+                }
+                longs = null;
+            }
+            if (doubles != null) {
+                if (size + count > doubles.length) {
+                    doubles = Arrays.copyOf(doubles, Math.max(doubles.length * 2, size + count));
+                }
+                System.arraycopy(doubleBlock, 0, doubles, size, count);
+            } else {
+                if (size + count > longs.length) {
+                    longs = Arrays.copyOf(longs, Math.max(longs.length * 2, size + count));
+                }
+                System.arraycopy(longBlock, 0, longs, size, count);
+            }
+            size += count;
+        }
+        if (doubles != null) {
+            return new DoubleDataset(Arrays.copyOf(doubles, size));
+        }
+        return new LongDataset(Arrays.copyOf(longs, size));
+    }
+
+    /**
+     * Reads every remaining value.
+     * @return values in input order
+     * @throws IOException if the channel cannot be read
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public int[] readAll() throws IOException {
+        if (!Metrics.ENABLED) {
+            return readValues();
+        }
+        long start = System.nanoTime();
+        try {
+            int[] values = readValues();
+            Metrics.PARSE_STREAM.recordSize(values.length);
+            return values;
+        } catch (IOException | RuntimeException e) {
+            Metrics.PARSE_STREAM.recordError();
+            throw e;
+        } finally {
+            Metrics.PARSE_STREAM.recordBytes(this.bufferOffset + this.limit);
+            Metrics.PARSE_STREAM.recordLatency(start);
+        }
+    }
+
+    private int[] readValues() throws IOException {
+        int[] values = new int[1024];
+        int[] block = new int[4096];
+        int size = 0;
+        int count;
+        while ((count = read(block)) > 0) {
+            if (size + count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+            }
+            System.arraycopy(block, 0, values, size, count);
+            size += count;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * A private helper function to read the next bytes into the buffer.
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        this.bufferOffset += this.limit;
+        this.buffer.clear();
+        int read;
+        do {
+            read = this.channel.read(this.buffer);
+        } while (read == 0);
+        this.position = 0;
+        this.limit = Math.max(read, 0);
+        this.endOfInput = read < 0;
+        return read > 0;
+    }
+
+    /**
+     * A private helper function to keep the value read so far as text, once it cannot be a 64-bit integer.
+     * The digits read so far are written without their leading zeros, which does not change the number.
+     */
+    private void startText() {
+        if (this.text == null) {
+            this.text = new StringBuilder(32);
+        }
+        this.text.setLength(0);
+        if (this.negative) {
+            this.text.append('-');
+        }
+        if (this.hasDigits) {
+            // the value is accumulated negatively, and the unsigned string also holds Long.MIN_VALUE
+            this.text.append(Long.toUnsignedString(-this.longValue));
+        }
+        this.prefixLength = this.text.length();
+        this.textOffset = this.bufferOffset + this.position;
+    }
+
+    /**
+     * A private helper function to finish a value read by read(long[], double[]).
+     * @return true if the value is floating-point, which is then in doubleValue, and false if it is in longValue
+     */
+    private boolean finishNumber(long offset) {
+        boolean isDouble = this.text != null;
+        if (isDouble) {
+            try {
+                this.doubleValue = NumberParser.parseDouble(this.text, 0, this.text.length());
+            } catch (DatasetFormatException e) {
+                // offsets in the text are moved to offsets in the input
+                String message = e.getMessage().substring(0, e.getMessage().lastIndexOf(" at offset "));
+                long position = e.getOffset();
+                throw new DatasetFormatException(message, position < this.prefixLength
+                        ? this.valueOffset : this.textOffset + position - this.prefixLength);
+            }
+            this.text = null;
+        } else if (!this.hasDigits) {
+            throw new DatasetFormatException("Invalid number", offset);
+        } else if (!this.negative) {
+            this.longValue = -this.longValue;
+        }
+        this.negative = false;
+        this.hasSign = false;
+        this.hasDigits = false;
+        this.afterValue = false;
+        return isDouble;
+    }
+
+    /**
+     * A private helper function to store the finished value in the block of its type.
+     * @return false if the value is the first floating-point value and the block already has 64-bit integers,
+     *         in which case the value is kept for the next block
+     */
+    private boolean store(long[] longs, double[] doubles, int count, boolean isDouble) {
+        long integer = this.longValue;
+        this.longValue = 0;
+        if (!isDouble) {
+            if (this.floatingPoint) {
+                doubles[count] = integer;
+            } else {
+                longs[count] = integer;
+            }
+            return true;
+        }
+        if (!this.floatingPoint) {
+            if (count > 0) {
+                this.pendingFloatingPoint = true;
+                return false;
+            }
+            this.floatingPoint = true;
+        }
+        doubles[count] = this.doubleValue;
+        return true;
+    }
+
+    private int finishValue(long offset) {
+        if (!this.hasDigits) {
+            throw new DatasetFormatException("Invalid integer", offset);
+        }
+        int result = this.negative ? this.value : -this.value;
+        this.negative = false;
+        this.hasSign = false;
+        this.hasDigits = false;
+        this.afterValue = false;
+        this.value = 0;
+        return result;
+    }
+}
+
+/**
+ * This class defines a compact binary column format and converts text into it.
+ * A file starts with a 64 byte header followed by little-endian int64 or float64 values:
+ * magic "SCOL", version (int16), value type (int8), flags (int8), count (int64),
+ * and, when the moments flag is set, sum, M2, min and max (float64 each).
+ */
+class ColumnFile {
+    static final int MAGIC = 0x4C4F4353;
+    static final short VERSION = 1;
+    static final byte TYPE_INT64 = 1;
+    static final byte TYPE_FLOAT64 = 2;
+    static final byte FLAG_MOMENTS = 1;
+    static final int HEADER_SIZE = 64;
+    private static final int BLOCK_SIZE = 4096;
+
+    private ColumnFile() {
+    }
+
+    /**
+     * Writes a parsed dataset as int64 values.
+     * @param path file to write
+     * @param dataset parsed dataset
+     * @param storeMoments whether to store count, sum, M2, min and max in the header
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, ParsedDataset dataset, boolean storeMoments) throws IOException {
+        int[] values = dataset.values();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_SIZE);
+            for (int blockStart = 0; blockStart < values.length; blockStart += BLOCK_SIZE) {
+                int blockEnd = Math.min(blockStart + BLOCK_SIZE, values.length);
+                buffer.clear();
+                for (int i = blockStart; i < blockEnd; i++) {
+                    buffer.putLong(values[i]);
+                }
+                writeFully(channel, buffer.flip());
+            }
+            writeHeader(channel, TYPE_INT64, storeMoments ? dataset.statistics() : null, values.length);
+        }
+    }
+
+    /**
+     * Writes a dataset of floating-point numbers as float64 values.
+     * @param path file to write
+     * @param dataset dataset of numbers
+     * @param storeMoments whether to store count, sum, M2, min and max in the header
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, DoubleDataset dataset, boolean storeMoments) throws IOException {
+        double[] values = dataset.values();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_SIZE);
+            for (int blockStart = 0; blockStart < values.length; blockStart += BLOCK_SIZE) {
+                int blockEnd = Math.min(blockStart + BLOCK_SIZE, values.length);
+                buffer.clear();
+                for (int i = blockStart; i < blockEnd; i++) {
+                    buffer.putDouble(values[i]);
+                }
+                writeFully(channel, buffer.flip());
+            }
+            writeHeader(channel, TYPE_FLOAT64, storeMoments ? dataset.statistics() : null, values.length);
+        }
+    }
+
+    /**
+     * Converts a text file, which has numbers separated by commas or line breaks,
+     * into int64 values without holding the values in memory. When a number has a fraction or is
+     * out of the range of long, the values written so far are rewritten in place and the file holds float64 values.
+     * @param textFile file to read
+     * @param columnFile file to write
+     * @param storeMoments whether to store count, sum, M2, min and max in the header
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void convert(Path textFile, Path columnFile, boolean storeMoments) throws IOException {
+        try (FileChannel in = FileChannel.open(textFile);
+             FileChannel out = FileChannel.open(columnFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            StreamingNumberParser parser = new StreamingNumberParser(in);
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            StatisticsAccumulator statistics = new StatisticsAccumulator();
+            int[] block = new int[BLOCK_SIZE];
+            byte type = TYPE_INT64;
+            long count = 0;
+            int read;
+            out.position(HEADER_SIZE);
+            try {
+                while ((read = parser.read(block)) > 0) {
+                    buffer.clear();
+                    for (int i = 0; i < read; i++) {
+                        buffer.putLong(block[i]);
+                    }
+                    writeFully(out, buffer.flip());
+                    if (storeMoments) {
+                        statistics.combine(StatisticsAccumulator.of(block, 0, read));
+                    }
+                    count += read;
+                }
+            } catch (NumberTypeException e) {
+                // a value is wider than int, so it and the rest are read as 64-bit integers or floating-point numbers
+                long[] longs = new long[BLOCK_SIZE];
+                double[] doubles = new double[BLOCK_SIZE];
+                while ((read = parser.read(longs, doubles)) > 0) {
+                    if (parser.isFloatingPoint() && type == TYPE_INT64) {
+                        rewriteAsFloat64(out, count);
+                        type = TYPE_FLOAT64;
+                    }
+                    buffer.clear();
+                    for (int i = 0; i < read; i++) {
+                        if (type == TYPE_FLOAT64) {
+                            buffer.putDouble(doubles[i]);
+                        } else {
+                            buffer.putLong(longs[i]);
+                        }
+                    }
+                    writeFully(out, buffer.flip());
+                    if (storeMoments) {
+                        statistics.combine(type == TYPE_FLOAT64
+                                ? StatisticsAccumulator.of(doubles, 0, read)
+                                : StatisticsAccumulator.of(longs, 0, read));
+                    }
+                    count += read;
+                }
+            }
+            writeHeader(out, type, storeMoments ? statistics : null, count);
+        }
+    }
+
+    /**
+     * A private helper function to rewrite the first count int64 values of the file as float64 values.
+     * Positional reads and writes are used, so the position of the channel stays after the last value.
+     */
+    private static void rewriteAsFloat64(FileChannel channel, long count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long blockStart = 0; blockStart < count; blockStart += BLOCK_SIZE) {
+            long position = HEADER_SIZE + blockStart * Long.BYTES;
+            buffer.clear().limit((int) Math.min(BLOCK_SIZE, count - blockStart) * Long.BYTES);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Column file is truncated");
+                }
+            }
+            for (int i = 0; i < buffer.limit(); i += Long.BYTES) {
+                buffer.putDouble(i, buffer.getLong(i));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, byte type, StatisticsAccumulator moments, long count)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).put(type).put(moments != null ? FLAG_MOMENTS : 0).putLong(count);
+        if (moments != null) {
+            header.putDouble(moments.getSum()).putDouble(moments.getM2())
+                    .putDouble(moments.getMin()).putDouble(moments.getMax());
+        }
+        header.clear();
+        channel.position(0);
+        writeFully(channel, header);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
+
+/**
+ * A dataset which reads a column file through memory mapping, so values are never parsed
+ * or copied onto the heap. Stored moments are used when the file has them.
+ * The median is found exactly by radix selection, which scans the mapped values until the values
+ * left around the wanted ranks are few, and then copies only those onto the heap to select them.
+ */
+class MappedDataset implements DatasetSource {
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_VALUES = 1L << SEGMENT_SHIFT;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int RADIX_BITS = 16;
+    // 8 MB of keys at most are copied out for selection in memory
+    private static final int CANDIDATE_LIMIT = 1 << 20;
+
+    private final MappedByteBuffer[] segments;
+    private final byte type;
+    private final long count;
+    private StatisticsAccumulator statistics;
+    private QuantileSketch quantileSketch;
+
+    private MappedDataset(MappedByteBuffer[] segments, byte type, long count, StatisticsAccumulator statistics) {
+        this.segments = segments;
+        this.type = type;
+        this.count = count;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Maps a column file. The mapping stays valid after this method returns.
+     * @param path column file
+     * @return a mapped dataset
+     * @throws IOException if the file cannot be read or is not a column file
+     */
+    public static MappedDataset open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            ByteBuffer header = ByteBuffer.allocate(ColumnFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < ColumnFile.HEADER_SIZE || header.getInt() != ColumnFile.MAGIC) {
+                throw new IOException("Not a column file: " + path);
+            }
+            short version = header.getShort();
+            byte type = header.get();
+            byte flags = header.get();
+            long count = header.getLong();
+            if (version != ColumnFile.VERSION || (type != ColumnFile.TYPE_INT64 && type != ColumnFile.TYPE_FLOAT64)) {
+                throw new IOException("Unsupported column file version " + version + " or type " + type);
+            }
+            if (channel.size() < ColumnFile.HEADER_SIZE + count * Long.BYTES) {
+                throw new IOException("Column file is truncated: " + path);
+            }
+            StatisticsAccumulator moments = null;
+            if ((flags & ColumnFile.FLAG_MOMENTS) != 0) {
+                moments = StatisticsAccumulator.restore(count, header.getDouble(), header.getDouble(),
+                        header.getDouble(), header.getDouble());
+            }
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((count + SEGMENT_VALUES - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = i * SEGMENT_VALUES;
+                long length = Math.min(SEGMENT_VALUES, count - first) * Long.BYTES;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, ColumnFile.HEADER_SIZE + first * Long.BYTES, length);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedDataset(segments, type, count, moments);
+        }
+    }
+
+    @Override
+    public long size() {
+        return this.count;
+    }
+
+    @Override
+    public synchronized StatisticsAccumulator statistics() {
+        if (this.statistics == null) {
+            StatisticsAccumulator result = new StatisticsAccumulator();
+            double[] block = new double[BLOCK_SIZE];
+            for (long blockStart = 0; blockStart < this.count; blockStart += BLOCK_SIZE) {
+                int blockCount = (int) Math.min(BLOCK_SIZE, this.count - blockStart);
+                for (int i = 0; i < blockCount; i++) {
+                    block[i] = valueOf(key(blockStart + i));
+                }
+                result.combine(StatisticsAccumulator.of(block, 0, blockCount));
+            }
+            this.statistics = result;
+        }
+        return this.statistics;
+    }
+
+    @Override
+    public double median() {
+        if (this.count == 0) {
+            throw new IllegalArgumentException("Rank 0 is out of range for size 0");
+        }
+        if (this.count % 2 == 1) {
+            return valueOf(selectKeys(new long[] {this.count / 2})[0]);
+        }
+        long[] keys = selectKeys(new long[] {this.count / 2 - 1, this.count / 2});
+        return (valueOf(keys[0]) + valueOf(keys[1])) / 2.0;
+    }
+
+    @Override
+    public double quantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        if (this.count == 0) {
+            throw new IllegalArgumentException("Rank 0 is out of range for size 0");
+        }
+        double rank = (this.count - 1) * p;
+        long lowerRank = (long) rank;
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return valueOf(selectKeys(new long[] {lowerRank})[0]);
+        }
+        long[] keys = selectKeys(new long[] {lowerRank, lowerRank + 1});
+        double lower = valueOf(keys[0]);
+        return lower + fraction * (valueOf(keys[1]) - lower);
+    }
+
+    /**
+     * Returns the median and the p-quantiles, with all their ranks found by the same scans of the mapping.
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    @Override
+    public double[] medianAndQuantiles(double[] probabilities) {
+        long[] ranks = Arrays.stream(Selection.ranksOf(this.count, probabilities)).asLongStream().toArray();
+        long[] keys = selectKeys(ranks);
+        double[] result = new double[probabilities.length + 1];
+        double upper = valueOf(keys[Arrays.binarySearch(ranks, this.count / 2)]);
+        result[0] = this.count % 2 == 1 ? upper
+                : (valueOf(keys[Arrays.binarySearch(ranks, this.count / 2 - 1)]) + upper) / 2.0;
+        for (int i = 0; i < probabilities.length; i++) {
+            double rank = (this.count - 1) * probabilities[i];
+            long lowerRank = (long) rank;
+            double fraction = rank - lowerRank;
+            double lower = valueOf(keys[Arrays.binarySearch(ranks, lowerRank)]);
+            result[i + 1] = fraction == 0 ? lower
+                    : lower + fraction * (valueOf(keys[Arrays.binarySearch(ranks, lowerRank + 1)]) - lower);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized QuantileSketch quantileSketch() {
+        if (this.quantileSketch == null) {
+            QuantileSketch result = new QuantileSketch();
+            for (long i = 0; i < this.count; i++) {
+                result.accept(valueOf(key(i)));
+            }
+            this.quantileSketch = result;
+        }
+        return this.quantileSketch;
+    }
+
+    /**
+     * A private helper function to find the sort keys of the given ranks by radix selection.
+     * One scan finds the smallest and the largest key, whose leading bits in common every key has.
+     * Each further scan counts the next 16 bits of the keys which have the bits found so far for some rank.
+     * As soon as the keys left for all ranks are at most CANDIDATE_LIMIT, one more scan copies them out
+     * and they are selected in memory, so any number of ranks usually takes three or four scans in total.
+     * @param ranks ranks in ascending order
+     * @return sort keys of the ranks
+     */
+    private long[] selectKeys(long[] ranks) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long i = 0; i < this.count; i++) {
+            long value = key(i) ^ Long.MIN_VALUE;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int known = Long.numberOfLeadingZeros(min ^ max);
+        long[] prefixes = new long[ranks.length];
+        Arrays.fill(prefixes, (min ^ Long.MIN_VALUE) & highBits(known));
+        long[] rest = ranks.clone();
+        while (known < Long.SIZE) {
+            int bits = Math.min(RADIX_BITS, Long.SIZE - known);
+            int shift = Long.SIZE - known - bits;
+            long prefixMask = highBits(known);
+            long[] distinct = distinct(prefixes);
+            long[][] counts = new long[distinct.length][1 << bits];
+            for (long i = 0; i < this.count; i++) {
+                long key = key(i);
+                int prefix = indexOf(distinct, key & prefixMask);
+                if (prefix >= 0) {
+                    counts[prefix][(int) (key >>> shift) & ((1 << bits) - 1)]++;
+                }
+            }
+            long candidates = 0;
+            for (int r = 0; r < ranks.length; r++) {
+                long[] bucketCounts = counts[indexOf(distinct, prefixes[r])];
+                int bucket = 0;
+                while (rest[r] >= bucketCounts[bucket]) {
+                    rest[r] -= bucketCounts[bucket++];
+                }
+                prefixes[r] |= (long) bucket << shift;
+                if (r == 0 || prefixes[r] != prefixes[r - 1]) {
+                    candidates += bucketCounts[bucket];
+                }
+            }
+            known += bits;
+            if (known < Long.SIZE && candidates <= CANDIDATE_LIMIT) {
+                return selectCandidates(prefixes, rest, highBits(known), (int) candidates);
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * A private helper function to copy out the keys which have one of the prefixes of the ranks and
+     * select the ranks among them. Keys with a smaller prefix come before the keys with a larger one,
+     * so the rank of a key among the copies is the number of copies with smaller prefixes plus its rest.
+     */
+    private long[] selectCandidates(long[] prefixes, long[] rest, long prefixMask, int candidates) {
+        long[] distinct = distinct(prefixes);
+        int[] prefixCounts = new int[distinct.length];
+        long[] values = new long[candidates];
+        int filled = 0;
+        for (long i = 0; i < this.count; i++) {
+            long key = key(i);
+            int prefix = indexOf(distinct, key & prefixMask);
+            if (prefix >= 0) {
+                prefixCounts[prefix]++;
+                // flipping the sign bit makes the signed order of the copies the unsigned order of the keys
+                values[filled++] = key ^ Long.MIN_VALUE;
+            }
+        }
+        int[] ranks = new int[prefixes.length];
+        for (int r = 0; r < ranks.length; r++) {
+            int prefix = indexOf(distinct, prefixes[r]);
+            ranks[r] = (int) rest[r];
+            for (int j = 0; j < prefix; j++) {
+                ranks[r] += prefixCounts[j];
+            }
+        }
+        Selection.selectAll(values, ranks);
+        long[] keys = new long[ranks.length];
+        for (int r = 0; r < ranks.length; r++) {
+            keys[r] = values[ranks[r]] ^ Long.MIN_VALUE;
+        }
+        return keys;
+    }
+
+    private static long highBits(int bits) {
+        return bits == 0 ? 0 : -1L << (Long.SIZE - bits);
+    }
+
+    /**
+     * A private helper function to drop repeated prefixes, which are next to each other since ranks ascend.
+     */
+    private static long[] distinct(long[] prefixes) {
+        int size = 0;
+        long[] result = new long[prefixes.length];
+        for (int r = 0; r < prefixes.length; r++) {
+            if (r == 0 || prefixes[r] != prefixes[r - 1]) {
+                result[size++] = prefixes[r];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int indexOf(long[] prefixes, long prefix) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (prefixes[i] == prefix) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A private helper function to read a value as a key whose unsigned order is the order of the values.
+     */
+    private long key(long index) {
+        long bits = this.segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & (SEGMENT_VALUES - 1)) * Long.BYTES);
+        if (this.type == ColumnFile.TYPE_INT64) {
+            return bits ^ Long.MIN_VALUE;
+        }
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    private double valueOf(long key) {
+        if (this.type == ColumnFile.TYPE_INT64) {
+            return key ^ Long.MIN_VALUE;
+        }
+        return Double.longBitsToDouble(key < 0 ? key ^ Long.MIN_VALUE : ~key);
+    }
+}
+
+/**
+ * A dataset which keeps its values in direct memory outside the heap, so the heap and
+ * garbage collection pauses stay small however large the dataset is. Values are parsed
+ * straight from a channel into fixed size segments and their moments are accumulated while loading.
+ * The median and quantiles are exact, found by radix selection over the stored values.
+ * The memory is freed by close() rather than by the garbage collector, unless the JDK has no
+ * sun.misc.Unsafe, see isReleaseDeterministic(), and a closed dataset cannot be calculated on. Direct memory is limited by -XX:MaxDirectMemorySize, which is the
+ * maximum heap size unless it is set.
+ */
+class OffHeapDataset implements DatasetSource, AutoCloseable {
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_VALUES = 1 << SEGMENT_SHIFT;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int RADIX_BITS = 16;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        // sun.misc.Unsafe.invokeCleaner frees a direct buffer at once, which the public API cannot do before Java 22
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // memory is left to the garbage collector, which is said once since it changes when memory comes back
+            unsafe = null;
+            invokeCleaner = null;
+            System.err.println("Off-heap datasets are freed by the garbage collector, not by close(): " + e);
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Returns whether close() frees the direct memory at once. When sun.misc.Unsafe.invokeCleaner
+     * is not available, closed datasets are freed by the garbage collector whenever it collects them.
+     * @return true if memory is freed by close()
+     */
+    public static boolean isReleaseDeterministic() {
+        return INVOKE_CLEANER != null;
+    }
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final StatisticsAccumulator statistics = new StatisticsAccumulator();
+    private long count;
+    private QuantileSketch quantileSketch;
+    private boolean closed;
+
+    private OffHeapDataset() {
+    }
+
+    /**
+     * Reads the channel into direct memory. The caller closes the channel.
+     * @param channel channel which has integers separated by commas or line breaks
+     * @return an off-heap dataset, which the caller closes
+     * @throws IOException if the channel cannot be read
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public static OffHeapDataset of(ReadableByteChannel channel) throws IOException {
+        OffHeapDataset dataset = new OffHeapDataset();
+        try {
+            StreamingNumberParser parser = new StreamingNumberParser(channel);
+            int[] block = new int[BLOCK_SIZE];
+            int blockCount;
+            while ((blockCount = parser.read(block)) > 0) {
+                dataset.append(block, 0, blockCount);
+            }
+            return dataset;
+        } catch (IOException | RuntimeException | Error e) {
+            dataset.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the file into direct memory.
+     * @param path file which has integers separated by commas or line breaks
+     * @return an off-heap dataset, which the caller closes
+     * @throws IOException if the file cannot be read
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public static OffHeapDataset of(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return of(channel);
+        }
+    }
+
+    /**
+     * Copies the values into direct memory.
+     * @param values integers
+     * @return an off-heap dataset, which the caller closes
+     */
+    public static OffHeapDataset of(int[] values) {
+        OffHeapDataset dataset = new OffHeapDataset();
+        try {
+            for (int from = 0; from < values.length; from += BLOCK_SIZE) {
+                dataset.append(values, from, Math.min(from + BLOCK_SIZE, values.length));
+            }
+            return dataset;
+        } catch (RuntimeException | Error e) {
+            dataset.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A private helper function to store one block of values and accumulate its moments.
+     */
+    private void append(int[] values, int from, int to) {
+        this.statistics.combine(StatisticsAccumulator.of(values, from, to));
+        while (from < to) {
+            int offset = (int) (this.count & (SEGMENT_VALUES - 1));
+            if (offset == 0) {
+                this.segments.add(ByteBuffer.allocateDirect(SEGMENT_VALUES * Integer.BYTES).order(ByteOrder.nativeOrder()));
+            }
+            int length = Math.min(to - from, SEGMENT_VALUES - offset);
+            ByteBuffer segment = this.segments.get(this.segments.size() - 1).duplicate().order(ByteOrder.nativeOrder());
+            segment.position(offset * Integer.BYTES);
+            segment.asIntBuffer().put(values, from, length);
+            from += length;
+            this.count += length;
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        ensureOpen();
+        return this.count;
+    }
+
+    @Override
+    public synchronized StatisticsAccumulator statistics() {
+        ensureOpen();
+        return this.statistics;
+    }
+
+    @Override
+    public synchronized double median() {
+        ensureOpen();
+        if (this.count == 0) {
+            throw new IllegalArgumentException("Rank 0 is out of range for size 0");
+        }
+        int upper = select(this.count / 2);
+        if (this.count % 2 == 1) {
+            return upper;
+        }
+        return ((long) select(this.count / 2 - 1) + upper) / 2.0;
+    }
+
+    @Override
+    public synchronized double quantile(double p) {
+        ensureOpen();
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        if (this.count == 0) {
+            throw new IllegalArgumentException("Rank 0 is out of range for size 0");
+        }
+        double rank = (this.count - 1) * p;
+        long lowerRank = (long) rank;
+        double lower = select(lowerRank);
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return lower;
+        }
+        return lower + fraction * (select(lowerRank + 1) - lower);
+    }
+
+    /**
+     * Returns the median and the p-quantiles, with all their ranks found by the same two radix passes.
+     * @param probabilities probabilities between 0 and 1
+     * @return the median, then the quantiles in the order of the probabilities
+     */
+    @Override
+    public synchronized double[] medianAndQuantiles(double[] probabilities) {
+        ensureOpen();
+        long[] ranks = Arrays.stream(Selection.ranksOf(this.count, probabilities)).asLongStream().toArray();
+        int[] values = selectAll(ranks);
+        double[] result = new double[probabilities.length + 1];
+        int upper = values[Arrays.binarySearch(ranks, this.count / 2)];
+        result[0] = this.count % 2 == 1 ? upper
+                : ((long) values[Arrays.binarySearch(ranks, this.count / 2 - 1)] + upper) / 2.0;
+        for (int i = 0; i < probabilities.length; i++) {
+            double rank = (this.count - 1) * probabilities[i];
+            long lowerRank = (long) rank;
+            double fraction = rank - lowerRank;
+            double lower = values[Arrays.binarySearch(ranks, lowerRank)];
+            result[i + 1] = fraction == 0 ? lower
+                    : lower + fraction * (values[Arrays.binarySearch(ranks, lowerRank + 1)] - lower);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized QuantileSketch quantileSketch() {
+        ensureOpen();
+        if (this.quantileSketch == null) {
+            QuantileSketch result = new QuantileSketch();
+            for (int s = 0; s < this.segments.size(); s++) {
+                ByteBuffer segment = this.segments.get(s);
+                for (int i = 0, length = segmentLength(s); i < length; i++) {
+                    result.accept(segment.getInt(i * Integer.BYTES));
+                }
+            }
+            this.quantileSketch = result;
+        }
+        return this.quantileSketch;
+    }
+
+    /**
+     * Frees the direct memory at once, if isReleaseDeterministic() is true. Otherwise the segments
+     * are only dropped, and their memory comes back when the garbage collector collects them, so
+     * many large datasets in a row can run out of direct memory first. Closing again does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        for (ByteBuffer segment : this.segments) {
+            free(segment);
+        }
+        this.segments.clear();
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Dataset is closed");
+        }
+    }
+
+    private static void free(ByteBuffer segment) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, segment);
+        } catch (ReflectiveOperationException e) {
+            // invokeCleaner was found and only rejects buffers which are not direct, which segments always are
+            throw new IllegalStateException("Cannot free off-heap memory", e);
+        }
+    }
+
+    private int select(long k) {
+        return selectAll(new long[] {k})[0];
+    }
+
+    /**
+     * A private helper function to find the values of the given ranks by radix selection. The first pass
+     * counts the high 16 bits of every key, the second the low 16 bits of the keys in the buckets chosen
+     * for the ranks, so any number of ranks takes two passes.
+     * @param ranks ranks in ascending order
+     * @return values of the ranks
+     */
+    private int[] selectAll(long[] ranks) {
+        long[] counts = new long[1 << RADIX_BITS];
+        for (int s = 0; s < this.segments.size(); s++) {
+            ByteBuffer segment = this.segments.get(s);
+            for (int i = 0, length = segmentLength(s); i < length; i++) {
+                counts[(segment.getInt(i * Integer.BYTES) ^ Integer.MIN_VALUE) >>> RADIX_BITS]++;
+            }
+        }
+        int[] highs = new int[ranks.length];
+        long[] rest = ranks.clone();
+        int[] slots = new int[1 << RADIX_BITS];
+        Arrays.fill(slots, -1);
+        int buckets = 0;
+        for (int r = 0; r < ranks.length; r++) {
+            int high = 0;
+            while (rest[r] >= counts[high]) {
+                rest[r] -= counts[high++];
+            }
+            highs[r] = high;
+            if (slots[high] < 0) {
+                slots[high] = buckets++;
+            }
+        }
+        long[][] lowCounts = new long[buckets][1 << RADIX_BITS];
+        for (int s = 0; s < this.segments.size(); s++) {
+            ByteBuffer segment = this.segments.get(s);
+            for (int i = 0, length = segmentLength(s); i < length; i++) {
+                int key = segment.getInt(i * Integer.BYTES) ^ Integer.MIN_VALUE;
+                int slot = slots[key >>> RADIX_BITS];
+                if (slot >= 0) {
+                    lowCounts[slot][key & ((1 << RADIX_BITS) - 1)]++;
+                }
+            }
+        }
+        int[] values = new int[ranks.length];
+        for (int r = 0; r < ranks.length; r++) {
+            long[] bucketCounts = lowCounts[slots[highs[r]]];
+            int low = 0;
+            while (rest[r] >= bucketCounts[low]) {
+                rest[r] -= bucketCounts[low++];
+            }
+            values[r] = (highs[r] << RADIX_BITS | low) ^ Integer.MIN_VALUE;
+        }
+        return values;
+    }
+
+    private int segmentLength(int segment) {
+        return (int) Math.min(SEGMENT_VALUES, this.count - ((long) segment << SEGMENT_SHIFT));
+    }
+}
+
+/**
+ * A quantile sketch which keeps a bounded number of values (KLL sketch).
+ * Values are kept in levels, where a value on level h stands for 2^h input values.
+ * When a level is full it is sorted and every other value moves up one level,
+ * so memory grows only with the logarithm of the input size.
+ * A larger k gives a more accurate answer for more memory; the rank error stays around 2 / k.
+ */
+class QuantileSketch {
+    static final int DEFAULT_K = 200;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private final SplittableRandom random;
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k accuracy parameter, the capacity of the top level
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.random = new SplittableRandom(k);
+        this.levels[0] = new double[k];
+    }
+
+    /**
+     * Builds a sketch of the values from index from (inclusive) to index to (exclusive).
+     * @param data list of integers
+     * @param from first index
+     * @param to index after the last one
+     * @param k accuracy parameter
+     * @return a quantile sketch of the range
+     */
+    public static QuantileSketch of(int[] data, int from, int to, int k) {
+        QuantileSketch result = new QuantileSketch(k);
+        for (int i = from; i < to; i++) {
+            result.accept(data[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Adds one value.
+     * @param value a value
+     */
+    public void accept(double value) {
+        if (this.levelSizes[0] == this.levels[0].length) {
+            this.levels[0] = Arrays.copyOf(this.levels[0], this.levels[0].length * 2);
+        }
+        this.levels[0][this.levelSizes[0]++] = value;
+        this.count++;
+        if (this.levelSizes[0] >= capacity(0)) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges the values of another sketch into this one, for example a sketch of another chunk.
+     * The result has the accuracy of this sketch.
+     * @param other another sketch
+     */
+    public void merge(QuantileSketch other) {
+        if (other.levels.length > this.levels.length) {
+            int oldLength = this.levels.length;
+            this.levels = Arrays.copyOf(this.levels, other.levels.length);
+            this.levelSizes = Arrays.copyOf(this.levelSizes, other.levels.length);
+            for (int level = oldLength; level < this.levels.length; level++) {
+                this.levels[level] = new double[this.k];
+            }
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            int size = this.levelSizes[level];
+            int otherSize = other.levelSizes[level];
+            if (size + otherSize > this.levels[level].length) {
+                this.levels[level] = Arrays.copyOf(this.levels[level], size + otherSize);
+            }
+            System.arraycopy(other.levels[level], 0, this.levels[level], size, otherSize);
+            this.levelSizes[level] = size + otherSize;
+        }
+        this.count += other.count;
+        compress();
+    }
+
+    public int getK() {
+        return this.k;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the p-quantile, interpolating linearly between the two closest ranks
+     * like Selection.quantile. It is exact while nothing has been compacted.
+     * @param p probability between 0 and 1
+     * @return quantile
+     */
+    public double quantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        if (this.count == 0) {
+            return Double.NaN;
+        }
+        int total = 0;
+        for (int size : this.levelSizes) {
+            total += size;
+        }
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        sortedItems(values, weights);
+
+        double rank = (this.count - 1) * p;
+        long lowerRank = (long) rank;
+        double fraction = rank - lowerRank;
+        long cumulative = 0;
+        for (int i = 0; i < total; i++) {
+            cumulative += weights[i];
+            if (cumulative > lowerRank) {
+                if (fraction == 0 || cumulative > lowerRank + 1 || i == total - 1) {
+                    return values[i];
+                }
+                return values[i] + fraction * (values[i + 1] - values[i]);
+            }
+        }
+        return values[total - 1];
+    }
+
+    /**
+     * Returns how many values a level can hold before it is compacted.
+     * The top level holds k values and each level below holds two thirds of the one above.
+     */
+    private int capacity(int level) {
+        int depth = this.levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(this.k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void compress() {
+        for (int level = 0; level < this.levels.length; level++) {
+            if (this.levelSizes[level] < capacity(level)) {
+                continue;
+            }
+            if (level + 1 == this.levels.length) {
+                this.levels = Arrays.copyOf(this.levels, level + 2);
+                this.levelSizes = Arrays.copyOf(this.levelSizes, level + 2);
+                this.levels[level + 1] = new double[this.k];
+            }
+            double[] items = this.levels[level];
+            int size = this.levelSizes[level];
+            Arrays.sort(items, 0, size);
+
+            // an odd value out stays on this level, every other value of the rest moves up
+            int compacted = size & ~1;
+            int offset = this.random.nextBoolean() ? 1 : 0;
+            double[] next = this.levels[level + 1];
+            int nextSize = this.levelSizes[level + 1];
+            if (nextSize + compacted / 2 > next.length) {
+                next = Arrays.copyOf(next, Math.max(next.length * 2, nextSize + compacted / 2));
+                this.levels[level + 1] = next;
+            }
+            for (int i = offset; i < compacted; i += 2) {
+                next[nextSize++] = items[i];
+            }
+            this.levelSizes[level + 1] = nextSize;
+            if (compacted < size) {
+                items[0] = items[size - 1];
+            }
+            this.levelSizes[level] = size - compacted;
+        }
+    }
+
+    /**
+     * A private helper function to list every kept value with its weight in ascending order.
+     * Levels are sorted as copies, so queries never modify the sketch and a shared sketch
+     * can be queried by several threads at once.
+     */
+    private void sortedItems(double[] values, long[] weights) {
+        int[] positions = new int[this.levels.length];
+        double[][] sorted = new double[this.levels.length][];
+        for (int level = 0; level < this.levels.length; level++) {
+            sorted[level] = Arrays.copyOf(this.levels[level], this.levelSizes[level]);
+            Arrays.sort(sorted[level]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            int smallestLevel = -1;
+            for (int level = 0; level < sorted.length; level++) {
+                if (positions[level] < sorted[level].length
+                        && (smallestLevel < 0
+                        || sorted[level][positions[level]] < sorted[smallestLevel][positions[smallestLevel]])) {
+                    smallestLevel = level;
+                }
+            }
+            values[i] = sorted[smallestLevel][positions[smallestLevel]++];
+            weights[i] = 1L << smallestLevel;
+        }
+    }
+}
+
+/**
+ * Exact running moments of a changing set of integers: the count, the sum and the sum of squares in 128 bits.
+ * Adding or removing a value is an exact integer update, so no rounding error builds up however many values
+ * arrive and leave, and the mean and M2 are derived from the sums when they are asked for.
+ */
+class IntMoments {
+    private long count;
+    private long sum;
+    private long squaresHigh;
+    private long squaresLow;
+
+    /**
+     * Adds one value.
+     * @param value a value
+     */
+    public void add(int value) {
+        long square = (long) value * value;
+        long low = this.squaresLow + square;
+        this.squaresHigh += Long.compareUnsigned(low, square) < 0 ? 1 : 0;
+        this.squaresLow = low;
+        this.sum += value;
+        this.count++;
+    }
+
+    /**
+     * Removes one value which was added before.
+     * @param value a value which was added before
+     */
+    public void remove(int value) {
+        long square = (long) value * value;
+        this.squaresHigh -= Long.compareUnsigned(this.squaresLow, square) < 0 ? 1 : 0;
+        this.squaresLow -= square;
+        this.sum -= value;
+        this.count--;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMean() {
+        return (double) this.sum / this.count;
+    }
+
+    /**
+     * Returns the sum of squared differences from the mean (M2).
+     * @return M2
+     */
+    public double getM2() {
+        return this.count == 0 ? 0 : m2(this.count, this.sum, this.squaresHigh, this.squaresLow);
+    }
+
+    /**
+     * Returns the sample standard deviation. The standard deviation of one value is 0.
+     * @return sample standard deviation
+     */
+    public double getStandardDeviation() {
+        return this.count == 1 ? 0 : Math.sqrt(getM2() / (this.count - 1));
+    }
+
+    /**
+     * Returns an accumulator which holds these moments and the given min and max.
+     * @param min smallest value
+     * @param max largest value
+     * @return statistics of the values
+     */
+    public StatisticsAccumulator toAccumulator(double min, double max) {
+        return StatisticsAccumulator.restore(this.count, this.sum, getM2(), min, max);
+    }
+
+    /**
+     * Returns M2 of integers from their count, sum and 128-bit sum of squares.
+     * n * M2 = n * sum of squares - sum * sum is calculated exactly in 128 bits and divided once.
+     * @param n number of values, at least 1
+     * @param sum sum of the values
+     * @param squaresHigh high 64 bits of the sum of squares
+     * @param squaresLow low 64 bits of the sum of squares
+     * @return M2
+     */
+    static double m2(long n, long sum, long squaresHigh, long squaresLow) {
+        long productLow = n * squaresLow;
+        long productHigh = Math.multiplyHigh(n, squaresLow) + (squaresLow >> 63 & n) + n * squaresHigh;
+        long sumSquareLow = sum * sum;
+        long sumSquareHigh = Math.multiplyHigh(sum, sum);
+        long m2Low = productLow - sumSquareLow;
+        long m2High = productHigh - sumSquareHigh - (Long.compareUnsigned(productLow, sumSquareLow) < 0 ? 1 : 0);
+        return StatisticsAccumulator.toDouble(m2High, m2Low) / n;
+    }
+}
+
+/**
+ * A mutable dataset for live data where values arrive or leave one at a time.
+ * Exact moments are updated in O(1) per value and values are kept in an order statistic tree,
+ * so the median, min and max are found in O(log n) without parsing or sorting again.
+ */
+class IncrementalDataset implements DatasetSource {
+    private final IntMoments moments = new IntMoments();
+    private final IntOrderStatisticTree tree = new IntOrderStatisticTree();
+
+    /**
+     * Adds one value.
+     * @param value a value
+     */
+    public synchronized void add(int value) {
+        this.moments.add(value);
+        this.tree.add(value);
+    }
+
+    /**
+     * Adds all values of the list.
+     * @param values list of integers
+     */
+    public synchronized void addAll(int[] values) {
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * Removes one occurrence of the value.
+     * @param value a value
+     * @return false if the dataset did not have the value
+     */
+    public synchronized boolean remove(int value) {
+        if (!this.tree.remove(value)) {
+            return false;
+        }
+        this.moments.remove(value);
+        return true;
+    }
+
+    @Override
+    public synchronized long size() {
+        return this.tree.size();
+    }
+
+    /**
+     * Returns a snapshot of the current statistics, which later updates do not change.
+     * @return statistics of the values
+     */
+    @Override
+    public synchronized StatisticsAccumulator statistics() {
+        if (this.tree.size() == 0) {
+            return new StatisticsAccumulator();
+        }
+        return this.moments.toAccumulator(this.tree.min(), this.tree.max());
+    }
+
+    @Override
+    public synchronized double median() {
+        int n = this.tree.size();
+        if (n == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+        int upper = this.tree.select(n / 2);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        return ((long) this.tree.select(n / 2 - 1) + upper) / 2.0;
+    }
+
+    @Override
+    public synchronized double quantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + p);
+        }
+        if (this.tree.size() == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+        double rank = (this.tree.size() - 1) * p;
+        int lowerRank = (int) rank;
+        int lower = this.tree.select(lowerRank);
+        double fraction = rank - lowerRank;
+        if (fraction == 0) {
+            return lower;
+        }
+        return lower + fraction * ((double) this.tree.select(lowerRank + 1) - lower);
+    }
+
+    /**
+     * Returns a quantile sketch of the current values, built by one walk over the tree in ascending order.
+     * @return quantile sketch
+     */
+    @Override
+    public synchronized QuantileSketch quantileSketch() {
+        QuantileSketch sketch = new QuantileSketch();
+        this.tree.forEach(sketch::accept);
+        return sketch;
+    }
+}
+
+/**
+ * Typed input which is edited in place, such as the text field of the window, kept in step with an IncrementalDataset.
+ * An edit only reads the values it touches: the values of the old text around it are removed from the dataset
+ * and the values of the new text are added, so editing does not parse the whole input again.
+ * Edits are recorded by the thread which edits, by copying the text around them, and applied by the next query,
+ * so a large paste is parsed on the thread which calculates rather than on the event dispatch thread.
+ * The dataset answers only while every value is an int. Otherwise, for example while a value is half typed
+ * or has a fraction, dataset() returns null and the text is calculated as usual, which also reports the error.
+ */
+class IncrementalInput {
+    private static final long NOT_AN_INT = Long.MAX_VALUE;
+
+    // only used by the thread which edits
+    private final StringBuilder text = new StringBuilder();
+    private final Queue<Edit> edits = new ConcurrentLinkedQueue<>();
+
+    // guarded by this, and up to date with the edits which were applied
+    private IncrementalDataset dataset = new IncrementalDataset();
+    private int otherValues;
+    private int emptyValues;
+    private int trailingEmptyValues;
+
+    /**
+     * Records text which was inserted.
+     * @param offset offset of the inserted text
+     * @param inserted inserted text
+     */
+    public void insert(int offset, CharSequence inserted) {
+        replace(offset, offset, inserted);
+    }
+
+    /**
+     * Records text which was removed.
+     * @param offset offset of the removed text
+     * @param length length of the removed text
+     */
+    public void remove(int offset, int length) {
+        replace(offset, offset + length, "");
+    }
+
+    /**
+     * Applies the edits so far and returns the dataset of the text, if every value of the text is an int.
+     * The dataset is changed by later edits and must only be queried until the text is edited again.
+     * @return the live dataset, or null if the text is empty or has a value which is not an int
+     */
+    public synchronized IncrementalDataset dataset() {
+        Edit edit;
+        while ((edit = this.edits.poll()) != null) {
+            if (edit.removed == null) {
+                this.dataset = new IncrementalDataset();
+                this.otherValues = 0;
+                this.emptyValues = 0;
+            } else {
+                update(edit.removed, -1);
+            }
+            update(edit.added, 1);
+            this.trailingEmptyValues = edit.trailingEmptyValues;
+        }
+        // empty values are dropped at the end of the input only, as the parser does
+        if (this.otherValues > 0 || this.emptyValues != this.trailingEmptyValues || this.dataset.size() == 0) {
+            return null;
+        }
+        return this.dataset;
+    }
+
+    /**
+     * A private helper function to record the values around the replaced text before and after the edit.
+     * The text between the commas before and after the edit is copied; when that is the whole text
+     * the dataset is started again instead of removing every value.
+     */
+    private void replace(int from, int to, CharSequence replacement) {
+        int spanStart = this.text.lastIndexOf(",", from - 1) + 1;
+        int spanEnd = this.text.indexOf(",", to);
+        if (spanEnd < 0) {
+            spanEnd = this.text.length();
+        }
+        String removed = spanStart == 0 && spanEnd == this.text.length() ? null : this.text.substring(spanStart, spanEnd);
+        this.text.replace(from, to, replacement.toString());
+        String added = this.text.substring(spanStart, spanEnd + replacement.length() - (to - from));
+        int trailing = this.text.length() - NumberParser.valuesLength(this.text);
+        this.edits.add(new Edit(removed, added, trailing));
+    }
+
+    /**
+     * A private helper function to add (sign 1) or remove (sign -1) the comma separated values of a piece of text.
+     */
+    private void update(String values, int sign) {
+        int start = 0;
+        while (true) {
+            int end = values.indexOf(',', start);
+            if (end < 0) {
+                end = values.length();
+            }
+            if (start == end) {
+                this.emptyValues += sign;
+            } else {
+                long value = parseInt(values, start, end);
+                if (value == NOT_AN_INT) {
+                    this.otherValues += sign;
+                } else if (sign > 0) {
+                    this.dataset.add((int) value);
+                } else {
+                    this.dataset.remove((int) value);
+                }
+            }
+            if (end == values.length()) {
+                return;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * A private helper function to parse one value by the rules of NumberParser.parseInt without throwing,
+     * since values which are not ints are expected while typing.
+     * @return the value, or NOT_AN_INT
+     */
+    private static long parseInt(String values, int from, int to) {
+        int pos = from;
+        while (pos < to && values.charAt(pos) <= ' ') {
+            pos++;
+        }
+        boolean negative = false;
+        if (pos < to && (values.charAt(pos) == '-' || values.charAt(pos) == '+')) {
+            negative = values.charAt(pos) == '-';
+            pos++;
+        }
+        int digitsStart = pos;
+        long value = 0;
+        while (pos < to && values.charAt(pos) >= '0' && values.charAt(pos) <= '9') {
+            value = value * 10 + (values.charAt(pos) - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_AN_INT;
+            }
+            pos++;
+        }
+        int digitsEnd = pos;
+        while (pos < to && values.charAt(pos) <= ' ') {
+            pos++;
+        }
+        if (digitsEnd == digitsStart || pos < to) {
+            return NOT_AN_INT;
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+    }
+
+    private static final class Edit {
+        // null when the edit replaced the whole text
+        final String removed;
+        final String added;
+        final int trailingEmptyValues;
+
+        Edit(String removed, String added, int trailingEmptyValues) {
+            this.removed = removed;
+            this.added = added;
+            this.trailingEmptyValues = trailingEmptyValues;
+        }
+    }
+}
+
+/**
+ * Statistics over a sliding window of a time-ordered stream: either the last N values
+ * or the values of the last T milliseconds. Values are kept in a primitive ring buffer.
+ * A value entering or leaving the window updates exact moments in O(1) and an order statistic tree
+ * in O(log N), so the window is never re-sorted and no rounding error builds up as it slides.
+ */
+class SlidingWindowStatistics {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxSize;
+    private final long duration;
+    private final IntMoments moments = new IntMoments();
+    private final IntOrderStatisticTree tree = new IntOrderStatisticTree();
+    private int[] values;
+    private long[] timestamps;
+    private int head;
+    private int size;
+
+    private SlidingWindowStatistics(int maxSize, long duration, int capacity) {
+        this.maxSize = maxSize;
+        this.duration = duration;
+        this.values = new int[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    /**
+     * Creates a window of the last values.
+     * @param windowSize number of values in the window
+     * @return a sliding window
+     */
+    public static SlidingWindowStatistics ofCount(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        return new SlidingWindowStatistics(windowSize, Long.MAX_VALUE, windowSize);
+    }
+
+    /**
+     * Creates a window of the values of the last milliseconds.
+     * @param durationMillis length of the window in milliseconds
+     * @return a sliding window
+     */
+    public static SlidingWindowStatistics ofDuration(long durationMillis) {
+        if (durationMillis < 1) {
+            throw new IllegalArgumentException("Window duration must be positive: " + durationMillis);
+        }
+        return new SlidingWindowStatistics(Integer.MAX_VALUE, durationMillis, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a value which arrives now.
+     * @param value a value
+     */
+    public void add(int value) {
+        add(System.currentTimeMillis(), value);
+    }
+
+    /**
+     * Adds a value with its time, evicting values which have left the window.
+     * Timestamps must not decrease.
+     * @param timestampMillis time of the value in milliseconds
+     * @param value a value
+     */
+    public void add(long timestampMillis, int value) {
+        evictBefore(timestampMillis);
+        if (this.size == this.maxSize) {
+            evictOldest();
+        }
+        if (this.size == this.values.length) {
+            grow();
+        }
+        int tail = (this.head + this.size) % this.values.length;
+        this.values[tail] = value;
+        this.timestamps[tail] = timestampMillis;
+        this.size++;
+        this.moments.add(value);
+        this.tree.add(value);
+    }
+
+    /**
+     * Evicts values which are older than the window at the given time.
+     * @param timestampMillis current time in milliseconds
+     */
+    public void evictBefore(long timestampMillis) {
+        if (this.duration == Long.MAX_VALUE) {
+            return;
+        }
+        while (this.size > 0 && this.timestamps[this.head] <= timestampMillis - this.duration) {
+            evictOldest();
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public double mean() {
+        return this.moments.getMean();
+    }
+
+    public double standardDeviation() {
+        return this.moments.getStandardDeviation();
+    }
+
+    /**
+     * Returns the median of the window. In case of even size, the mean of two numbers in the middle is returned.
+     * @return median
+     */
+    public double median() {
+        int upper = this.tree.select(this.size / 2);
+        if (this.size % 2 == 1) {
+            return upper;
+        }
+        return ((long) this.tree.select(this.size / 2 - 1) + upper) / 2.0;
+    }
+
+    private void evictOldest() {
+        int value = this.values[this.head];
+        this.moments.remove(value);
+        this.tree.remove(value);
+        this.head = (this.head + 1) % this.values.length;
+        this.size--;
+    }
+
+    private void grow() {
+        int capacity = this.values.length * 2;
+        int[] newValues = new int[capacity];
+        long[] newTimestamps = new long[capacity];
+        for (int i = 0; i < this.size; i++) {
+            newValues[i] = this.values[(this.head + i) % this.values.length];
+            newTimestamps[i] = this.timestamps[(this.head + i) % this.values.length];
+        }
+        this.values = newValues;
+        this.timestamps = newTimestamps;
+        this.head = 0;
+    }
+}
+
+/**
+ * An order statistic tree of integers (a treap) whose nodes live in primitive arrays.
+ * Equal values share a node with a count. Adding, removing and finding the k-th smallest value
+ * take O(log n) expected time.
+ */
+class IntOrderStatisticTree {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // node 0 is the empty tree
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int root;
+    private int nodeCount = 1;
+    private int freeList;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    public int size() {
+        return this.sizes[this.root];
+    }
+
+    public void add(int value) {
+        this.root = add(this.root, value);
+    }
+
+    /**
+     * Removes one occurrence of the value.
+     * @param value a value
+     * @return false if the tree did not have the value
+     */
+    public boolean remove(int value) {
+        int before = size();
+        this.root = remove(this.root, value);
+        return size() < before;
+    }
+
+    /**
+     * Returns the k-th smallest value (k starts from 0).
+     * @param k rank of the value
+     * @return k-th smallest value
+     */
+    public int select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IllegalArgumentException("Rank " + k + " is out of range for size " + size());
+        }
+        int node = this.root;
+        while (true) {
+            int leftSize = this.sizes[this.left[node]];
+            if (k < leftSize) {
+                node = this.left[node];
+            } else if (k < leftSize + this.counts[node]) {
+                return this.keys[node];
+            } else {
+                k -= leftSize + this.counts[node];
+                node = this.right[node];
+            }
+        }
+    }
+
+    public int min() {
+        return select(0);
+    }
+
+    /**
+     * Passes every value to the action in ascending order, each as many times as it occurs.
+     * The tree is walked in order with a stack of its own, so this takes O(n) time.
+     * @param action action which receives the values
+     */
+    public void forEach(IntConsumer action) {
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = this.root;
+        while (node != 0 || depth > 0) {
+            while (node != 0) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = this.left[node];
+            }
+            node = stack[--depth];
+            for (int i = 0; i < this.counts[node]; i++) {
+                action.accept(this.keys[node]);
+            }
+            node = this.right[node];
+        }
+    }
+
+    public int max() {
+        return select(size() - 1);
+    }
+
+    private int add(int node, int value) {
+        if (node == 0) {
+            return newNode(value);
+        }
+        if (value == this.keys[node]) {
+            this.counts[node]++;
+        } else if (value < this.keys[node]) {
+            // newNode may grow the arrays, so the child is stored only after the call returns
+            int child = add(this.left[node], value);
+            this.left[node] = child;
+            if (this.priorities[this.left[node]] > this.priorities[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            int child = add(this.right[node], value);
+            this.right[node] = child;
+            if (this.priorities[this.right[node]] > this.priorities[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private int remove(int node, int value) {
+        if (node == 0) {
+            return 0;
+        }
+        if (value < this.keys[node]) {
+            this.left[node] = remove(this.left[node], value);
+        } else if (value > this.keys[node]) {
+            this.right[node] = remove(this.right[node], value);
+        } else if (this.counts[node] > 1) {
+            this.counts[node]--;
+        } else {
+            return removeNode(node);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * A private helper function to rotate a node down until it has at most one child and unlink it.
+     */
+    private int removeNode(int node) {
+        int result;
+        if (this.left[node] == 0) {
+            result = this.right[node];
+        } else if (this.right[node] == 0) {
+            result = this.left[node];
+        } else if (this.priorities[this.left[node]] > this.priorities[this.right[node]]) {
+            result = rotateRight(node);
+            this.right[result] = removeNode(node);
+            update(result);
+            return result;
+        } else {
+            result = rotateLeft(node);
+            this.left[result] = removeNode(node);
+            update(result);
+            return result;
+        }
+        this.left[node] = this.freeList;
+        this.freeList = node;
+        return result;
+    }
+
+    private int rotateRight(int node) {
+        int child = this.left[node];
+        this.left[node] = this.right[child];
+        this.right[child] = node;
+        update(node);
+        update(child);
+        return child;
+    }
+
+    private int rotateLeft(int node) {
+        int child = this.right[node];
+        this.right[node] = this.left[child];
+        this.left[child] = node;
+        update(node);
+        update(child);
+        return child;
+    }
+
+    private void update(int node) {
+        this.sizes[node] = this.sizes[this.left[node]] + this.counts[node] + this.sizes[this.right[node]];
+    }
+
+    private int newNode(int value) {
+        int node;
+        if (this.freeList != 0) {
+            node = this.freeList;
+            this.freeList = this.left[node];
+        } else {
+            if (this.nodeCount == this.keys.length) {
+                int capacity = this.keys.length * 2;
+                this.keys = Arrays.copyOf(this.keys, capacity);
+                this.counts = Arrays.copyOf(this.counts, capacity);
+                this.sizes = Arrays.copyOf(this.sizes, capacity);
+                this.priorities = Arrays.copyOf(this.priorities, capacity);
+                this.left = Arrays.copyOf(this.left, capacity);
+                this.right = Arrays.copyOf(this.right, capacity);
+            }
+            node = this.nodeCount++;
+        }
+        this.keys[node] = value;
+        this.counts[node] = 1;
+        this.sizes[node] = 1;
+        this.priorities[node] = this.random.nextInt();
+        this.left[node] = 0;
+        this.right[node] = 0;
+        return node;
+    }
+}
+
+/**
+ * A hash map from int to count with open addressing and linear probing, which never boxes.
+ * A slot is empty while its count is 0, so every int can be a key.
+ */
+class IntCountMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    public IntCountMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        this.keys = new int[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Adds to the count of a key.
+     * @param key value which occurred
+     * @param count number of times it occurred, at least 1
+     */
+    public void add(int key, int count) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.counts[slot] != 0) {
+            if (this.keys[slot] == key) {
+                this.counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.counts[slot] = count;
+        if (++this.size * 2 > this.keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Returns the count of a key.
+     * @param key value
+     * @return number of times it occurred, 0 if never
+     */
+    public int get(int key) {
+        int mask = this.keys.length - 1;
+        for (int slot = hash(key) & mask; this.counts[slot] != 0; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return this.counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds every count of the other map to this map.
+     * @param other map to add
+     */
+    public void addAll(IntCountMap other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.counts[slot] != 0) {
+                add(other.keys[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    int capacity() {
+        return this.keys.length;
+    }
+
+    int keyAt(int slot) {
+        return this.keys[slot];
+    }
+
+    int countAt(int slot) {
+        return this.counts[slot];
+    }
+
+    private void grow() {
+        int[] oldKeys = this.keys;
+        int[] oldCounts = this.counts;
+        this.keys = new int[oldKeys.length * 2];
+        this.counts = new int[oldKeys.length * 2];
+        this.size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldCounts[slot] != 0) {
+                add(oldKeys[slot], oldCounts[slot]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        // Fibonacci hashing spreads runs of consecutive keys across the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
+
+/**
+ * Counts how often each integer of a list occurs. When the values span a small range the counts
+ * are kept in a dense array indexed by value - min, otherwise in an IntCountMap.
+ * Large lists are counted in parallel chunks, each into its own table, and the tables are merged.
+ */
+class FrequencyTable {
+    /**
+     * Ranges up to this size, or up to the number of values if that is larger, are counted in a dense array.
+     */
+    static final int DENSE_RANGE = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final int min;
+    private final int[] dense;
+    private final IntCountMap sparse;
+    private int[] sortedValues;
+    private int[] sortedCounts;
+
+    private FrequencyTable(int min, int[] dense, IntCountMap sparse) {
+        this.min = min;
+        this.dense = dense;
+        this.sparse = sparse;
+    }
+
+    /**
+     * Counts the list, in parallel on the common pool if it is large enough.
+     * @param values list of integers
+     * @param min smallest value of the list
+     * @param max largest value of the list
+     * @return a frequency table of the list
+     */
+    public static FrequencyTable of(int[] values, int min, int max) {
+        if (values.length < ParallelStatistics.PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return of(values, 0, values.length, min, max);
+        }
+        return of(values, min, max, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the list in parallel on the given pool.
+     * @param values list of integers
+     * @param min smallest value of the list
+     * @param max largest value of the list
+     * @param pool pool which counts the chunks
+     * @return a frequency table of the list
+     */
+    public static FrequencyTable of(int[] values, int min, int max, ForkJoinPool pool) {
+        return pool.invoke(new CountTask(values, 0, values.length, min, max));
+    }
+
+    /**
+     * Counts a range of the list on the calling thread.
+     */
+    static FrequencyTable of(int[] values, int from, int to, int min, int max) {
+        long range = (long) max - min + 1;
+        if (range <= Math.max(DENSE_RANGE, to - from)) {
+            int[] dense = new int[(int) Math.max(range, 0)];
+            for (int i = from; i < to; i++) {
+                dense[values[i] - min]++;
+            }
+            return new FrequencyTable(min, dense, null);
+        }
+        IntCountMap sparse = new IntCountMap(to - from);
+        for (int i = from; i < to; i++) {
+            sparse.add(values[i], 1);
+        }
+        return new FrequencyTable(min, null, sparse);
+    }
+
+    /**
+     * Adds the counts of another table of the same list to this table.
+     * @param other table of another range of the list
+     */
+    void merge(FrequencyTable other) {
+        if (this.dense != null && other.dense != null && this.min == other.min) {
+            for (int i = 0; i < other.dense.length; i++) {
+                this.dense[i] += other.dense[i];
+            }
+        } else if (this.dense != null) {
+            other.forEach((value, count) -> this.dense[value - this.min] += count);
+        } else {
+            other.forEach(this.sparse::add);
+        }
+    }
+
+    /**
+     * Returns the number of times the value occurs.
+     * @param value integer
+     * @return count, 0 if the value does not occur
+     */
+    public int count(int value) {
+        if (this.dense == null) {
+            return this.sparse.get(value);
+        }
+        long index = (long) value - this.min;
+        return index >= 0 && index < this.dense.length ? this.dense[(int) index] : 0;
+    }
+
+    /**
+     * Returns the distinct values in ascending order. The array is shared and must not be modified.
+     * @return distinct values
+     */
+    public synchronized int[] sortedValues() {
+        sort();
+        return this.sortedValues;
+    }
+
+    /**
+     * Returns the count of each of sortedValues(). The array is shared and must not be modified.
+     * @return counts
+     */
+    public synchronized int[] sortedCounts() {
+        sort();
+        return this.sortedCounts;
+    }
+
+    /**
+     * Returns the number of distinct values.
+     * @return distinct count
+     */
+    public int distinctCount() {
+        if (this.dense == null) {
+            return this.sparse.size();
+        }
+        int distinct = 0;
+        for (int count : this.dense) {
+            if (count != 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Returns the values which occur most often, in ascending order.
+     * @return modes, empty if the list is empty
+     */
+    public int[] modes() {
+        int highest = modeCount();
+        int[] found = new int[1];
+        forEach((value, count) -> {
+            if (count == highest) {
+                found[0]++;
+            }
+        });
+        int[] modes = new int[found[0]];
+        found[0] = 0;
+        forEach((value, count) -> {
+            if (count == highest) {
+                modes[found[0]++] = value;
+            }
+        });
+        Arrays.sort(modes);
+        return modes;
+    }
+
+    /**
+     * Returns how often the modes occur.
+     * @return highest count, 0 if the list is empty
+     */
+    public int modeCount() {
+        int[] highest = new int[1];
+        forEach((value, count) -> highest[0] = Math.max(highest[0], count));
+        return highest[0];
+    }
+
+    /**
+     * Counts the values in bins of equal width.
+     * @param firstBin smallest value of the first bin
+     * @param width number of integers in each bin
+     * @param bins number of bins, which together hold every value
+     * @return count of each bin
+     */
+    public long[] histogram(long firstBin, long width, int bins) {
+        long[] counts = new long[bins];
+        forEach((value, count) -> counts[(int) ((value - firstBin) / width)] += count);
+        return counts;
+    }
+
+    /**
+     * A private helper function to list the distinct values and their counts in value order once.
+     * Map entries are sorted as longs which hold the value in the high and the count in the low bits.
+     */
+    private void sort() {
+        if (this.sortedValues != null) {
+            return;
+        }
+        int distinct = distinctCount();
+        int[] values = new int[distinct];
+        int[] counts = new int[distinct];
+        if (this.dense != null) {
+            for (int i = 0, j = 0; i < this.dense.length; i++) {
+                if (this.dense[i] != 0) {
+                    values[j] = this.min + i;
+                    counts[j++] = this.dense[i];
+                }
+            }
+        } else {
+            long[] entries = new long[distinct];
+            for (int slot = 0, j = 0; slot < this.sparse.capacity(); slot++) {
+                if (this.sparse.countAt(slot) != 0) {
+                    entries[j++] = (long) this.sparse.keyAt(slot) << 32 | this.sparse.countAt(slot);
+                }
+            }
+            Arrays.sort(entries);
+            for (int j = 0; j < distinct; j++) {
+                values[j] = (int) (entries[j] >>> 32);
+                counts[j] = (int) entries[j];
+            }
+        }
+        this.sortedValues = values;
+        this.sortedCounts = counts;
+    }
+
+    private void forEach(CountConsumer consumer) {
+        if (this.dense != null) {
+            for (int i = 0; i < this.dense.length; i++) {
+                if (this.dense[i] != 0) {
+                    consumer.accept(this.min + i, this.dense[i]);
+                }
+            }
+        } else {
+            for (int slot = 0; slot < this.sparse.capacity(); slot++) {
+                if (this.sparse.countAt(slot) != 0) {
+                    consumer.accept(this.sparse.keyAt(slot), this.sparse.countAt(slot));
+                }
+            }
+        }
+    }
+
+    private interface CountConsumer {
+        void accept(int value, int count);
+    }
+
+    private static final class CountTask extends RecursiveTask<FrequencyTable> {
+        private final int[] values;
+        private final int from;
+        private final int to;
+        private final int min;
+        private final int max;
+
+        private CountTask(int[] values, int from, int to, int min, int max) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        protected FrequencyTable compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return FrequencyTable.of(values, from, to, min, max);
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(values, from, middle, min, max);
+            left.fork();
+            FrequencyTable right = new CountTask(values, middle, to, min, max).compute();
+            FrequencyTable result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+}
+
+/**
+ * An index of a list of integers, built once, which answers statistics of any index range quickly.
+ * Sums and 128-bit sums of squares are kept at every 64th position, so the mean and standard deviation
+ * of a range need two lookups and at most 126 values, and are exact up to the final division.
+ * A wavelet matrix holds the bits of every value one level per bit, from the highest bit down,
+ * each level stably sorted by the bits above it. It finds the k-th smallest value of a range,
+ * and so the median, minimum and maximum, and counts the values below a bound in one step per bit.
+ * Besides the list it takes about 1.5 bits per bit of the range of values, 6 bytes per value at most.
+ */
+class RangeIndex {
+    private static final int SAMPLE_SHIFT = 6;
+
+    private final int[] values;
+    private final long[] sums;
+    private final long[] squaresHigh;
+    private final long[] squaresLow;
+    private final int min;
+    private final int max;
+    private final int levels;
+    private final long[][] bits;
+    private final int[][] ranks;
+    private final int[] zeros;
+
+    private RangeIndex(int[] values, long[] sums, long[] squaresHigh, long[] squaresLow, int min, int max,
+                       long[][] bits, int[][] ranks, int[] zeros) {
+        this.values = values;
+        this.sums = sums;
+        this.squaresHigh = squaresHigh;
+        this.squaresLow = squaresLow;
+        this.min = min;
+        this.max = max;
+        this.levels = bits.length;
+        this.bits = bits;
+        this.ranks = ranks;
+        this.zeros = zeros;
+    }
+
+    /**
+     * Builds the index. The list is shared and must not be modified.
+     * @param values list of integers
+     * @return an index of the list
+     */
+    public static RangeIndex of(int[] values) {
+        int n = values.length;
+        int samples = (n >>> SAMPLE_SHIFT) + 1;
+        long[] sums = new long[samples];
+        long[] squaresHigh = new long[samples];
+        long[] squaresLow = new long[samples];
+        long sum = 0;
+        long high = 0;
+        long low = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            if ((i & ((1 << SAMPLE_SHIFT) - 1)) == 0) {
+                sums[i >>> SAMPLE_SHIFT] = sum;
+                squaresHigh[i >>> SAMPLE_SHIFT] = high;
+                squaresLow[i >>> SAMPLE_SHIFT] = low;
+            }
+            long value = values[i];
+            long square = value * value;
+            sum += value;
+            low += square;
+            if (Long.compareUnsigned(low, square) < 0) {
+                high++;
+            }
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        if ((n & ((1 << SAMPLE_SHIFT) - 1)) == 0) {
+            sums[n >>> SAMPLE_SHIFT] = sum;
+            squaresHigh[n >>> SAMPLE_SHIFT] = high;
+            squaresLow[n >>> SAMPLE_SHIFT] = low;
+        }
+
+        int levels = n == 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros((long) max - min);
+        long[][] bits = new long[levels][];
+        int[][] ranks = new int[levels][];
+        int[] zeros = new int[levels];
+        int[] current = new int[levels == 0 ? 0 : n];
+        int[] next = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = values[i] - min;
+        }
+        for (int level = 0; level < levels; level++) {
+            int bit = levels - 1 - level;
+            // the bits are random, so both passes are branch free
+            long[] words = new long[(n >>> 6) + 1];
+            for (int i = 0; i < n; i++) {
+                words[i >>> 6] |= (long) (current[i] >>> bit & 1) << i;
+            }
+            int[] wordRanks = new int[words.length];
+            for (int w = 1; w < words.length; w++) {
+                wordRanks[w] = wordRanks[w - 1] + Long.bitCount(words[w - 1]);
+            }
+            int zeroCount = n - (wordRanks[words.length - 1] + Long.bitCount(words[words.length - 1]));
+            // stable partition, values with a 0 bit first
+            for (int i = 0, zero = 0, one = zeroCount; i < n; i++) {
+                int b = current[i] >>> bit & 1;
+                next[zero + ((one - zero) & -b)] = current[i];
+                zero += 1 - b;
+                one += b;
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            bits[level] = words;
+            ranks[level] = wordRanks;
+            zeros[level] = zeroCount;
+            CalculationProgress.checkpoint("Indexing", level + 1, levels);
+        }
+        return new RangeIndex(values, sums, squaresHigh, squaresLow, min, max, bits, ranks, zeros);
+    }
+
+    public int size() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns count, sum, mean, variance, min and max of a range.
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return statistics of the range
+     */
+    public StatisticsAccumulator statistics(int from, int to) {
+        checkRange(from, to);
+        long[] end = prefix(to);
+        long[] start = prefix(from);
+        long n = to - from;
+        long sum = end[0] - start[0];
+        long squaresLow = end[2] - start[2];
+        long squaresHigh = end[1] - start[1] - (Long.compareUnsigned(end[2], start[2]) < 0 ? 1 : 0);
+
+        return StatisticsAccumulator.restore(n, sum, IntMoments.m2(n, sum, squaresHigh, squaresLow),
+                select(from, to, 0), select(from, to, (int) n - 1));
+    }
+
+    /**
+     * Returns the median of a range. In case of even size, the mean of two numbers in the middle is returned.
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return median of the range
+     */
+    public double median(int from, int to) {
+        checkRange(from, to);
+        int n = to - from;
+        int upper = select(from, to, n / 2);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        return ((long) select(from, to, n / 2 - 1) + upper) / 2.0;
+    }
+
+    /**
+     * Finds the k-th smallest value of a range.
+     * @param from index of the first value
+     * @param to index after the last value
+     * @param k rank between 0 and to - from - 1
+     * @return k-th smallest value
+     */
+    public int select(int from, int to, int k) {
+        checkRange(from, to);
+        if (k < 0 || k >= to - from) {
+            throw new IllegalArgumentException("Rank " + k + " is out of range for size " + (to - from));
+        }
+        int key = 0;
+        for (int level = 0; level < this.levels; level++) {
+            int fromOnes = rank(level, from);
+            int toOnes = rank(level, to);
+            int rangeZeros = (to - from) - (toOnes - fromOnes);
+            if (k < rangeZeros) {
+                from -= fromOnes;
+                to -= toOnes;
+            } else {
+                k -= rangeZeros;
+                key |= 1 << (this.levels - 1 - level);
+                from = this.zeros[level] + fromOnes;
+                to = this.zeros[level] + toOnes;
+            }
+        }
+        return this.min + key;
+    }
+
+    /**
+     * Counts the values of a range which are smaller than a bound.
+     * @param from index of the first value
+     * @param to index after the last value
+     * @param bound exclusive upper bound of the values
+     * @return number of values below the bound
+     */
+    public int countBelow(int from, int to, long bound) {
+        checkRange(from, to);
+        if (bound <= this.min) {
+            return 0;
+        }
+        if (bound > this.max) {
+            return to - from;
+        }
+        long key = bound - this.min;
+        int count = 0;
+        for (int level = 0; level < this.levels; level++) {
+            int fromOnes = rank(level, from);
+            int toOnes = rank(level, to);
+            if ((key >>> (this.levels - 1 - level) & 1) != 0) {
+                count += (to - from) - (toOnes - fromOnes);
+                from = this.zeros[level] + fromOnes;
+                to = this.zeros[level] + toOnes;
+            } else {
+                from -= fromOnes;
+                to -= toOnes;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A private helper function to count the 1 bits of a level before a position.
+     */
+    private int rank(int level, int position) {
+        return this.ranks[level][position >>> 6] + Long.bitCount(this.bits[level][position >>> 6] & ((1L << position) - 1));
+    }
+
+    /**
+     * A private helper function to find the sum and the 128-bit sum of squares of the values before a position,
+     * from the nearest sample before it.
+     * @return sum, high and low bits of the sum of squares
+     */
+    private long[] prefix(int end) {
+        int sample = end >>> SAMPLE_SHIFT;
+        long sum = this.sums[sample];
+        long high = this.squaresHigh[sample];
+        long low = this.squaresLow[sample];
+        for (int i = sample << SAMPLE_SHIFT; i < end; i++) {
+            long value = this.values[i];
+            long square = value * value;
+            sum += value;
+            low += square;
+            if (Long.compareUnsigned(low, square) < 0) {
+                high++;
+            }
+        }
+        return new long[] {sum, high, low};
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > this.values.length || from >= to) {
+            throw new IllegalArgumentException("Range [" + from + ", " + to + ") is empty or out of bounds for size "
+                    + this.values.length);
+        }
+    }
+}
+
+/**
+ * Bootstrap estimates of the mean, standard deviation and median of a list of integers.
+ * A resample draws as many values as the list has, with replacement. Since it only holds values of the list,
+ * the list is sorted once and a resample is kept as the number of times each sorted value was drawn,
+ * in a scratch buffer of counts which its task reuses. One pass over the counts gives the mean and
+ * standard deviation, from deviations to the mean of the list so that the sums do not cancel,
+ * and the median is selected in linear time by counting up to the middle rank.
+ * Every resample has its own SplittableRandom seeded from one sequence drawn up front,
+ * so the estimates are the same whichever worker runs a resample and however many workers there are.
+ */
+class Bootstrap {
+    private final double[] means;
+    private final double[] sds;
+    private final double[] medians;
+
+    private Bootstrap(double[] means, double[] sds, double[] medians) {
+        this.means = means;
+        this.sds = sds;
+        this.medians = medians;
+    }
+
+    /**
+     * Resamples the list, in parallel on the common pool if it has more than one worker.
+     * @param values list of integers, which is not modified
+     * @param resamples number of resamples
+     * @param seed seed of the random resamples
+     * @return estimates of every resample
+     */
+    public static Bootstrap of(int[] values, int resamples, long seed) {
+        if (ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return of(values, resamples, seed, null);
+        }
+        return of(values, resamples, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Resamples the list in parallel on the given pool.
+     * @param values list of integers, which is not modified
+     * @param resamples number of resamples
+     * @param seed seed of the random resamples
+     * @param pool pool which runs the resamples, or null to run them on the calling thread
+     * @return estimates of every resample
+     */
+    public static Bootstrap of(int[] values, int resamples, long seed, ForkJoinPool pool) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Bootstrap needs at least one value");
+        }
+        if (resamples < 1) {
+            throw new IllegalArgumentException("Resamples must be positive: " + resamples);
+        }
+        long[] seeds = new SplittableRandom(seed).longs(resamples).toArray();
+        Bootstrap result = new Bootstrap(new double[resamples], new double[resamples], new double[resamples]);
+        int leafSize = pool == null ? resamples : Math.max(1, resamples / (pool.getParallelism() * 4));
+        double center = StatisticsAccumulator.of(values).getMean();
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        ResampleTask task = new ResampleTask(sorted, center, seeds, 0, resamples, leafSize, result,
+                CalculationProgress.current(), new AtomicLong());
+        if (pool == null) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the mean of every resample. The array is shared and must not be modified.
+     * @return means
+     */
+    public double[] getMeans() {
+        return this.means;
+    }
+
+    /**
+     * Returns the sample standard deviation of every resample. The array is shared and must not be modified.
+     * @return standard deviations
+     */
+    public double[] getSDs() {
+        return this.sds;
+    }
+
+    /**
+     * Returns the median of every resample. The array is shared and must not be modified.
+     * @return medians
+     */
+    public double[] getMedians() {
+        return this.medians;
+    }
+
+    /**
+     * Returns the percentile interval of the estimates, the range which holds
+     * the middle confidence fraction of them.
+     * @param estimates one estimate per resample
+     * @param confidence confidence level between 0 and 1, such as 0.95
+     * @return lower and upper bound
+     */
+    public static double[] percentileInterval(double[] estimates, double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1: " + confidence);
+        }
+        DoubleDataset dataset = new DoubleDataset(estimates);
+        return new double[] {dataset.quantile((1 - confidence) / 2), dataset.quantile((1 + confidence) / 2)};
+    }
+
+    /**
+     * Draws an index below n without bias, by multiplying a random int by n and keeping the high bits,
+     * which needs a division only in the rare case that the draw must be rejected (Lemire's method).
+     * @param random generator
+     * @param n bound, at least 1
+     * @return an index from 0 to n - 1
+     */
+    static int nextIndex(SplittableRandom random, int n) {
+        long product = (random.nextInt() & 0xFFFFFFFFL) * n;
+        if ((product & 0xFFFFFFFFL) < n) {
+            long threshold = (1L << 32) % n;
+            while ((product & 0xFFFFFFFFL) < threshold) {
+                product = (random.nextInt() & 0xFFFFFFFFL) * n;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    private static final class ResampleTask extends RecursiveAction {
+        private final int[] sorted;
+        private final double center;
+        private final long[] seeds;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final Bootstrap result;
+        private final CalculationProgress progress;
+        private final AtomicLong done;
+
+        private ResampleTask(int[] sorted, double center, long[] seeds, int from, int to, int leafSize,
+                             Bootstrap result, CalculationProgress progress, AtomicLong done) {
+            this.sorted = sorted;
+            this.center = center;
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.result = result;
+            this.progress = progress;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > leafSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ResampleTask(sorted, center, seeds, from, middle, leafSize, result, progress, done),
+                        new ResampleTask(sorted, center, seeds, middle, to, leafSize, result, progress, done));
+                return;
+            }
+            int n = sorted.length;
+            int[] counts = new int[n];
+            for (int b = from; b < to; b++) {
+                Arrays.fill(counts, 0);
+                SplittableRandom random = new SplittableRandom(seeds[b]);
+                for (int i = 0; i < n; i++) {
+                    counts[nextIndex(random, n)]++;
+                }
+                double sum = 0;
+                double sumOfSquares = 0;
+                for (int i = 0; i < n; i++) {
+                    double deviation = sorted[i] - center;
+                    sum += counts[i] * deviation;
+                    sumOfSquares += counts[i] * deviation * deviation;
+                }
+                result.means[b] = center + sum / n;
+                result.sds[b] = n == 1 ? 0 : Math.sqrt(Math.max(0, (sumOfSquares - sum * sum / n) / (n - 1)));
+
+                int i = 0;
+                long seen = counts[0];
+                while (seen <= (n - 1) / 2) {
+                    seen += counts[++i];
+                }
+                int lower = sorted[i];
+                while (seen <= n / 2) {
+                    seen += counts[++i];
+                }
+                result.medians[b] = ((long) lower + sorted[i]) / 2.0;
+                if (progress != null) {
+                    progress.report("Resampling", done.incrementAndGet(), seeds.length);
+                }
+            }
+        }
+    }
+}
+
+/**
+ * This class gives every distinct key an int code, in order of first appearance.
+ * Keys are looked up by their characters in the input with open addressing,
+ * so a String is only created the first time a key is seen.
+ */
+class KeyDictionary {
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys = new String[MIN_CAPACITY];
+    private int[] hashes = new int[MIN_CAPACITY];
+    // code + 1 of the key in each slot, 0 for an empty slot
+    private int[] slots = new int[MIN_CAPACITY * 2];
+    private int size;
+
+    /**
+     * Returns the code of the key between from and to, adding the key if it is new.
+     * @param input text which holds the key
+     * @param from offset of the key
+     * @param to offset after the key
+     * @return code of the key, from 0 to size() - 1
+     */
+    public int code(CharSequence input, int from, int to) {
+        // the same hash as String.hashCode, so keys and slices of the input hash alike
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        int mask = this.slots.length - 1;
+        int slot = spread(hash) & mask;
+        for (int code; (code = this.slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (this.hashes[code] == hash && matches(this.keys[code], input, from, to)) {
+                return code;
+            }
+        }
+        int code = this.size++;
+        if (code == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, code * 2);
+            this.hashes = Arrays.copyOf(this.hashes, code * 2);
+        }
+        this.keys[code] = input.subSequence(from, to).toString();
+        this.hashes[code] = hash;
+        this.slots[slot] = code + 1;
+        if (this.size * 2 > this.slots.length) {
+            grow();
+        }
+        return code;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns every key, indexed by its code.
+     * @return keys in order of first appearance
+     */
+    public String[] keys() {
+        return Arrays.copyOf(this.keys, this.size);
+    }
+
+    private void grow() {
+        this.slots = new int[this.slots.length * 2];
+        int mask = this.slots.length - 1;
+        for (int code = 0; code < this.size; code++) {
+            int slot = spread(this.hashes[code]) & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = code + 1;
+        }
+    }
+
+    private static boolean matches(String key, CharSequence input, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != input.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
+
+/**
+ * Rows of a key followed by one or more integers, such as the lines of a key,value CSV file, kept by column.
+ * Rows are separated by line breaks or semicolons and the fields of a row by commas. Keys are dictionary
+ * encoded while parsing, so each row holds the int code of its key and no String is created per row.
+ * A first row whose values are not all integers is a header which names the value columns.
+ */
+class KeyedColumns {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String[] keys;
+    private final int[] codes;
+    private final String[] columnNames;
+    private final int[][] columns;
+
+    private KeyedColumns(String[] keys, int[] codes, String[] columnNames, int[][] columns) {
+        this.keys = keys;
+        this.codes = codes;
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    /**
+     * Parse rows of a key followed by comma separated integers. Whitespace around a field is ignored,
+     * blank rows are skipped and every row must have as many integers as the first.
+     * @param input rows separated by line breaks or semicolons
+     * @return columns in input order
+     * @throws DatasetFormatException if a row has no key, a missing or extra value, or an invalid integer
+     */
+    public static KeyedColumns parse(CharSequence input) {
+        int length = input.length();
+        KeyDictionary dictionary = new KeyDictionary();
+        String[] columnNames = null;
+        int[][] columns = null;
+        int[] codes = new int[INITIAL_CAPACITY];
+        int rows = 0;
+        for (int rowStart = 0, rowEnd; rowStart < length; rowStart = rowEnd + 1) {
+            rowEnd = rowStart;
+            while (rowEnd < length && input.charAt(rowEnd) != '\n' && input.charAt(rowEnd) != ';') {
+                rowEnd++;
+            }
+            int keyStart = skipSpaces(input, rowStart, rowEnd);
+            if (keyStart == rowEnd) {
+                continue;
+            }
+            int keyEnd = indexOfComma(input, keyStart, rowEnd);
+            if (keyEnd == rowEnd) {
+                throw new DatasetFormatException("Row has no values", keyStart);
+            }
+            if (columns == null) {
+                int columnCount = 1;
+                for (int i = keyEnd + 1; i < rowEnd; i++) {
+                    columnCount += input.charAt(i) == ',' ? 1 : 0;
+                }
+                columns = new int[columnCount][INITIAL_CAPACITY];
+                columnNames = header(input, keyEnd, rowEnd, columnCount);
+                if (columnNames != null) {
+                    continue;
+                }
+                columnNames = new String[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    columnNames[c] = columnCount == 1 ? "value" : "value" + (c + 1);
+                }
+            }
+            int keyTrimmedEnd = keyEnd;
+            while (keyTrimmedEnd > keyStart && input.charAt(keyTrimmedEnd - 1) <= ' ') {
+                keyTrimmedEnd--;
+            }
+            if (keyTrimmedEnd == keyStart) {
+                throw new DatasetFormatException("Row has no key", keyStart);
+            }
+
+            if (rows == codes.length) {
+                codes = Arrays.copyOf(codes, rows * 2);
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], rows * 2);
+                }
+                CalculationProgress.checkpoint("Parsing", rowStart, length);
+            }
+            codes[rows] = dictionary.code(input, keyStart, keyTrimmedEnd);
+            int fieldStart = keyEnd + 1;
+            for (int c = 0; c < columns.length; c++) {
+                int fieldEnd = indexOfComma(input, fieldStart, rowEnd);
+                if ((fieldEnd == rowEnd) != (c == columns.length - 1)) {
+                    throw new DatasetFormatException("Row should have " + columns.length
+                            + (columns.length == 1 ? " value" : " values"), keyStart);
+                }
+                columns[c][rows] = NumberParser.parseInt(input, fieldStart, fieldEnd);
+                fieldStart = fieldEnd + 1;
+            }
+            rows++;
+        }
+        if (rows == 0) {
+            throw new DatasetFormatException("No rows", 0);
+        }
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = Arrays.copyOf(columns[c], rows);
+        }
+        return new KeyedColumns(dictionary.keys(), Arrays.copyOf(codes, rows), columnNames, columns);
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return number of rows
+     */
+    public int size() {
+        return this.codes.length;
+    }
+
+    /**
+     * Returns every distinct key, indexed by its code. The array is shared and must not be modified.
+     * @return keys in order of first appearance
+     */
+    public String[] keys() {
+        return this.keys;
+    }
+
+    /**
+     * Returns the key code of every row. The array is shared and must not be modified.
+     * @return codes in input order
+     */
+    public int[] codes() {
+        return this.codes;
+    }
+
+    /**
+     * Returns the names of the value columns, from the header or value1, value2 and so on.
+     * The array is shared and must not be modified.
+     * @return column names
+     */
+    public String[] columnNames() {
+        return this.columnNames;
+    }
+
+    /**
+     * Returns the values of a column. The array is shared and must not be modified.
+     * @param column index of the value column, from 0
+     * @return values in input order
+     */
+    public int[] column(int column) {
+        return this.columns[column];
+    }
+
+    /**
+     * A private helper function to read the names of a first row whose values are not all integers.
+     * @return the names, or null if every value of the row is an integer
+     */
+    private static String[] header(CharSequence input, int keyEnd, int rowEnd, int columnCount) {
+        String[] names = new String[columnCount];
+        boolean integers = true;
+        int fieldStart = keyEnd + 1;
+        for (int c = 0; c < columnCount; c++) {
+            int fieldEnd = indexOfComma(input, fieldStart, rowEnd);
+            names[c] = input.subSequence(fieldStart, fieldEnd).toString().trim();
+            if (integers) {
+                try {
+                    NumberParser.parseInt(input, fieldStart, fieldEnd);
+                } catch (NumberTypeException e) {
+                    // a number which is not an int is a bad value, not a name
+                    throw e;
+                } catch (DatasetFormatException e) {
+                    integers = false;
+                }
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        return integers ? null : names;
+    }
+
+    private static int skipSpaces(CharSequence input, int pos, int end) {
+        while (pos < end && input.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOfComma(CharSequence input, int pos, int end) {
+        while (pos < end && input.charAt(pos) != ',') {
+            pos++;
+        }
+        return pos;
+    }
+}
+
+/**
+ * The sample size, mean, standard deviation and median of every value column for each key of keyed columns.
+ * Key codes index arrays directly, so grouping needs no hashing. Values are partitioned by key with a counting sort:
+ * the rows are split into chunks and every chunk counts its keys once. From the counts each chunk knows where its
+ * values of every key go, so for each column the chunks copy their values into one buffer in parallel without locks,
+ * reading the column in order, and the values of a key end up next to each other in input order.
+ * Keys are then split among tasks into ranges of about the same number of values, and a task calculates each
+ * of its keys from its part of the buffer, selecting the median there in place.
+ */
+class GroupBy {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final String[] keys;
+    private final String[] columnNames;
+    private final int[] counts;
+    private final double[][] means;
+    private final double[][] sds;
+    private final double[][] medians;
+
+    private GroupBy(String[] keys, String[] columnNames, int[] counts,
+                    double[][] means, double[][] sds, double[][] medians) {
+        this.keys = keys;
+        this.columnNames = columnNames;
+        this.counts = counts;
+        this.means = means;
+        this.sds = sds;
+        this.medians = medians;
+    }
+
+    /**
+     * Groups the columns, in parallel on the common pool if they are large enough.
+     * @param columns keyed columns
+     * @return statistics of every key
+     */
+    public static GroupBy of(KeyedColumns columns) {
+        if (columns.size() < ParallelStatistics.PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return of(columns, null);
+        }
+        return of(columns, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Groups the columns in parallel on the given pool.
+     * @param columns keyed columns
+     * @param pool pool which groups and calculates, or null to run on the calling thread
+     * @return statistics of every key
+     */
+    public static GroupBy of(KeyedColumns columns, ForkJoinPool pool) {
+        int[] codes = columns.codes();
+        int n = codes.length;
+        int keyCount = columns.keys().length;
+        int columnCount = columns.columnNames().length;
+        int parallelism = pool == null ? 1 : pool.getParallelism() * 4;
+
+        // every chunk keeps a count per key, so many keys make fewer chunks
+        int chunkCount = Math.max(1, Math.min(parallelism, Math.min((n + CHUNK_SIZE - 1) / CHUNK_SIZE, n / keyCount)));
+        int[][] starts = new int[chunkCount][];
+        forEach(chunkCount, chunk -> {
+            int[] counts = new int[keyCount];
+            for (int i = chunkStart(n, chunkCount, chunk); i < chunkStart(n, chunkCount, chunk + 1); i++) {
+                counts[codes[i]]++;
+            }
+            starts[chunk] = counts;
+        }, pool);
+        // turn the counts into the offset where each chunk places its first row of each key
+        int[] offsets = new int[keyCount + 1];
+        int[] counts = new int[keyCount];
+        for (int key = 0, offset = 0; key < keyCount; key++) {
+            offsets[key] = offset;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int count = starts[chunk][key];
+                starts[chunk][key] = offset;
+                offset += count;
+            }
+            counts[key] = offset - offsets[key];
+        }
+        offsets[keyCount] = n;
+
+        int taskCount = Math.min(parallelism, keyCount);
+        int[] firstKeys = new int[taskCount + 1];
+        for (int task = 1, key = 0; task < taskCount; task++) {
+            long target = (long) n * task / taskCount;
+            while (key < keyCount && offsets[key] < target) {
+                key++;
+            }
+            firstKeys[task] = key;
+        }
+        firstKeys[taskCount] = keyCount;
+
+        GroupBy result = new GroupBy(columns.keys(), columns.columnNames(), counts,
+                new double[columnCount][keyCount], new double[columnCount][keyCount], new double[columnCount][keyCount]);
+        int[] buffer = new int[n];
+        CalculationProgress progress = CalculationProgress.current();
+        AtomicLong done = new AtomicLong();
+        for (int c = 0; c < columnCount; c++) {
+            int[] column = columns.column(c);
+            double[] means = result.means[c];
+            double[] sds = result.sds[c];
+            double[] medians = result.medians[c];
+            forEach(chunkCount, chunk -> {
+                int[] position = starts[chunk].clone();
+                for (int i = chunkStart(n, chunkCount, chunk); i < chunkStart(n, chunkCount, chunk + 1); i++) {
+                    buffer[position[codes[i]]++] = column[i];
+                }
+            }, pool);
+            forEach(taskCount, task -> {
+                for (int key = firstKeys[task]; key < firstKeys[task + 1]; key++) {
+                    int from = offsets[key];
+                    int to = offsets[key + 1];
+                    long sum = 0;
+                    for (int i = from; i < to; i++) {
+                        sum += buffer[i];
+                    }
+                    double mean = (double) sum / (to - from);
+                    double m2 = 0;
+                    for (int i = from; i < to; i++) {
+                        double deviation = buffer[i] - mean;
+                        m2 += deviation * deviation;
+                    }
+                    means[key] = mean;
+                    sds[key] = to - from == 1 ? 0 : Math.sqrt(m2 / (to - from - 1));
+                    medians[key] = Selection.median(buffer, from, to);
+                    if (progress != null) {
+                        progress.report("Grouping", done.addAndGet(to - from), (long) n * columnCount);
+                    }
+                }
+            }, pool);
+        }
+        return result;
+    }
+
+    /**
+     * Returns every key, in order of first appearance. The array is shared and must not be modified.
+     * @return keys
+     */
+    public String[] getKeys() {
+        return this.keys;
+    }
+
+    /**
+     * Returns the names of the value columns. The array is shared and must not be modified.
+     * @return column names
+     */
+    public String[] getColumnNames() {
+        return this.columnNames;
+    }
+
+    /**
+     * Returns the number of rows of every key. The array is shared and must not be modified.
+     * @return sample sizes
+     */
+    public int[] getCounts() {
+        return this.counts;
+    }
+
+    /**
+     * Returns the mean of every key, by column and then by key. The arrays are shared and must not be modified.
+     * @return means
+     */
+    public double[][] getMeans() {
+        return this.means;
+    }
+
+    /**
+     * Returns the sample standard deviation of every key, by column and then by key, NaN for a key of one row.
+     * The arrays are shared and must not be modified.
+     * @return standard deviations
+     */
+    public double[][] getSDs() {
+        return this.sds;
+    }
+
+    /**
+     * Returns the median of every key, by column and then by key. The arrays are shared and must not be modified.
+     * @return medians
+     */
+    public double[][] getMedians() {
+        return this.medians;
+    }
+
+    private static int chunkStart(int n, int chunkCount, int chunk) {
+        return (int) ((long) n * chunk / chunkCount);
+    }
+
+    /**
+     * A private helper function to run an action for every index below count,
+     * on the calling thread if pool is null and otherwise as fork/join tasks.
+     */
+    private static void forEach(int count, IntConsumer action, ForkJoinPool pool) {
+        if (pool == null) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.invoke(new ForEachTask(0, count, action));
+        }
+    }
+
+    private static final class ForEachTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private ForEachTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask(from, middle, action), new ForEachTask(middle, to, action));
+        }
+    }
+}
+
+/**
+ * This class keeps recently parsed datasets so that calculating several statistics
+ * of the same input parses it only once, also while other inputs are calculated at the same time.
+ * Datasets are keyed by the content of their input and the least recently used are evicted
+ * when there are more than the capacity or their inputs are longer than maxChars in total.
+ * The most recent dataset is always kept, however long its input, so large inputs are parsed once too.
+ * Inputs are parsed outside of the lock, so callers parsing different inputs do not wait on each other.
+ */
+class DatasetCache {
+    static final int DEFAULT_CAPACITY = 8;
+    static final long DEFAULT_MAX_CHARS = 1L << 24;
+
+    private final int capacity;
+    private final long maxChars;
+    private final LinkedHashMap<String, DatasetSource> datasets = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+
+    public DatasetCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * Creates a cache.
+     * @param capacity maximum number of datasets kept
+     * @param maxChars maximum total length of the inputs whose datasets are kept, besides the most recent one
+     */
+    public DatasetCache(int capacity, long maxChars) {
+        if (capacity < 1 || maxChars < 1) {
+            throw new IllegalArgumentException("Capacity and length must be positive");
+        }
+        this.capacity = capacity;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the parsed dataset of the given input, parsing it only if it is not kept.
+     * @param input user's input
+     * @return a parsed dataset of the narrowest type which holds every value
+     */
+    public DatasetSource get(String input) {
+        synchronized (this) {
+            DatasetSource dataset = this.datasets.get(input);
+            if (dataset != null) {
+                return dataset;
+            }
+        }
+        DatasetSource dataset = new Dataset(input).parseNumbers();
+        synchronized (this) {
+            if (this.datasets.put(input, dataset) == null) {
+                this.chars += input.length();
+            }
+            Iterator<String> eldest = this.datasets.keySet().iterator();
+            while (this.datasets.size() > 1 && (this.datasets.size() > this.capacity || this.chars > this.maxChars)) {
+                this.chars -= eldest.next().length();
+                eldest.remove();
+            }
+        }
+        return dataset;
+    }
+
+    public synchronized int size() {
+        return this.datasets.size();
+    }
+}
+
+/**
+ * This class keeps the results of recent calculations so that asking for the same statistic
+ * of the same input again returns at once, without parsing or calculating.
+ * Entries are keyed by the statistic and the content of the input: the hash picks the entry
+ * and the input is compared in full before a result is returned.
+ * The cache is split into independently locked segments, each evicting its least recently used entries
+ * when full, so concurrent callers rarely wait on each other. Entries may also expire after a time to live.
+ * Since every key holds its input, the cache is bounded by the total length of the inputs as well as by
+ * the number of entries, and an input longer than one segment's share is calculated without being kept.
+ * A result is calculated outside of any lock, so two callers missing the same key at once both calculate it.
+ */
+class ResultCache {
+    static final int DEFAULT_CAPACITY = 1024;
+    static final long DEFAULT_MAX_CHARS = 1L << 27;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long timeToLiveNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResultCache() {
+        this(DEFAULT_CAPACITY, 0);
+    }
+
+    /**
+     * Creates a cache which keeps inputs of up to DEFAULT_MAX_CHARS characters in total.
+     * @param capacity maximum number of results kept
+     * @param timeToLiveMillis milliseconds a result is kept for after it is calculated, or 0 to keep it until evicted
+     */
+    public ResultCache(int capacity, long timeToLiveMillis) {
+        this(capacity, DEFAULT_MAX_CHARS, timeToLiveMillis);
+    }
+
+    /**
+     * Creates a cache.
+     * @param capacity maximum number of results kept
+     * @param maxChars maximum total length of the inputs whose results are kept
+     * @param timeToLiveMillis milliseconds a result is kept for after it is calculated, or 0 to keep it until evicted
+     */
+    public ResultCache(int capacity, long maxChars, long timeToLiveMillis) {
+        if (capacity < 1 || maxChars < 1 || timeToLiveMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity and length must be positive and time to live must not be negative");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment((capacity + segmentCount - 1) / segmentCount,
+                    (maxChars + segmentCount - 1) / segmentCount);
+        }
+        this.timeToLiveNanos = timeToLiveMillis * 1_000_000;
+    }
+
+    /**
+     * Returns the cached result of the statistic of the input, calculating and keeping it if there is none.
+     * A calculation which throws is not kept.
+     * @param statistic name of the statistic, including any parameter which changes the result
+     * @param input user's input
+     * @param calculation calculation of the result
+     * @return the result, which is shared and must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String statistic, String input, Supplier<V> calculation) {
+        Key key = new Key(statistic, input);
+        Segment segment = this.segments[key.hash & (this.segments.length - 1)];
+        long now = this.timeToLiveNanos > 0 ? System.nanoTime() : 0;
+        synchronized (segment) {
+            CachedResult entry = segment.get(key);
+            if (entry != null && (this.timeToLiveNanos == 0 || now - entry.expiresAt < 0)) {
+                this.hits.increment();
+                return (V) entry.value;
+            }
+            if (entry != null) {
+                segment.discard(key);
+            }
+        }
+        this.misses.increment();
+        V value = calculation.get();
+        if (input.length() > segment.maxChars) {
+            return value;
+        }
+        // the time to live starts when the result exists, so a calculation longer than it is still kept
+        long expiresAt = this.timeToLiveNanos > 0 ? System.nanoTime() + this.timeToLiveNanos : 0;
+        CachedResult entry = new CachedResult(value, expiresAt);
+        synchronized (segment) {
+            segment.add(key, entry);
+        }
+        return value;
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Key, CachedResult> {
+        private final int capacity;
+        private final long maxChars;
+        private long chars;
+
+        private Segment(int capacity, long maxChars) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.maxChars = maxChars;
+        }
+
+        /**
+         * Keeps an entry, then evicts the least recently used entries until both bounds hold again.
+         */
+        private void add(Key key, CachedResult entry) {
+            if (put(key, entry) == null) {
+                this.chars += key.input.length();
+            }
+            Iterator<Key> eldest = keySet().iterator();
+            while (size() > this.capacity || this.chars > this.maxChars) {
+                this.chars -= eldest.next().input.length();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        private void discard(Key key) {
+            if (remove(key) != null) {
+                this.chars -= key.input.length();
+            }
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            this.chars = 0;
+        }
+    }
+
+    private static final class Key {
+        private final String statistic;
+        private final String input;
+        private final int hash;
+
+        private Key(String statistic, String input) {
+            this.statistic = statistic;
+            this.input = input;
+            int h = statistic.hashCode() * 31 + input.hashCode();
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.hash == key.hash && this.input.length() == key.input.length()
+                    && this.statistic.equals(key.statistic) && this.input.equals(key.input);
+        }
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final long expiresAt;
+
+        private CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
+
+/**
+ * A single-pass parser which reads comma separated integers in place
+ * and writes them straight into a growing int array.
+ * No String is allocated per value.
+ */
+class NumberParser {
+    private static final int INITIAL_CAPACITY = 16;
+    // powers of ten which are exact in a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parse comma separated integers. Whitespace around a value is ignored and
+     * empty values at the end of the input are dropped, the same as String.split.
+     * @param input comma separated integers
+     * @return a list of integers in input order
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public static int[] parseInts(CharSequence input) {
+        if (!Metrics.ENABLED) {
+            return parse(input);
+        }
+        long start = System.nanoTime();
+        try {
+            int[] values = parse(input);
+            Metrics.PARSE.recordSize(values.length);
+            return values;
+        } catch (RuntimeException e) {
+            Metrics.PARSE.recordError();
+            throw e;
+        } finally {
+            Metrics.PARSE.recordBytes(input.length());
+            Metrics.PARSE.recordLatency(start);
+        }
+    }
+
+    private static int[] parse(CharSequence input) {
+        int length = input.length();
+        if (length == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+        if (length >= ParallelNumberParser.PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() >= 2) {
+            return ParallelNumberParser.parseInts(input, ForkJoinPool.commonPool());
+        }
+        int end = valuesLength(input);
+        return end == 0 ? new int[0] : parseRange(input, 0, end);
+    }
+
+    /**
+     * Parse the integers between from and to, where to is the offset of a comma or the end of the values.
+     * Offsets in errors are offsets in the whole input.
+     * @param input comma separated integers
+     * @param from offset of the first value
+     * @param to offset after the last value
+     * @return a list of integers in input order, which has at least one value
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    static int[] parseRange(CharSequence input, int from, int to) {
+        int[] buffer = new int[INITIAL_CAPACITY];
+        int size = 0;
+        int pos = from;
+        while (true) {
+            int tokenStart = pos;
+            while (pos < to && input.charAt(pos) <= ' ') {
+                pos++;
+            }
+
+            boolean negative = false;
+            if (pos < to && (input.charAt(pos) == '-' || input.charAt(pos) == '+')) {
+                negative = input.charAt(pos) == '-';
+                pos++;
+            }
+            int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int digitsStart = pos;
+            int value = 0;
+            while (pos < to) {
+                int digit = input.charAt(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                // accumulate negatively like Integer.parseInt so MIN_VALUE fits
+                if (value < limit / 10 || value * 10 < limit + digit) {
+                    throw new NumberTypeException("Integer out of range", tokenStart, false);
+                }
+                value = value * 10 - digit;
+                pos++;
+            }
+            if (pos == digitsStart) {
+                throw invalid(input, pos, "Invalid integer");
+            }
+
+            while (pos < to && input.charAt(pos) <= ' ') {
+                pos++;
+            }
+            if (pos < to && input.charAt(pos) != ',') {
+                throw invalid(input, pos, "Invalid integer");
+            }
+
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+                CalculationProgress.checkpoint("Parsing", pos, input.length());
+            }
+            buffer[size++] = negative ? value : -value;
+            if (pos >= to) {
+                break;
+            }
+            pos++;
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Parse comma separated numbers into the narrowest type which holds all of them:
+     * integers, then 64-bit integers, then floating-point numbers.
+     * Integers are parsed by the same code as parseInts, and only when a value does not fit
+     * is the input parsed again as the wider type, so inputs of integers are as fast as before.
+     * @param input comma separated numbers
+     * @return a dataset of integers, 64-bit integers or floating-point numbers
+     * @throws DatasetFormatException if a value is not a valid number
+     */
+    public static DatasetSource parseNumbers(CharSequence input) {
+        if (!Metrics.ENABLED) {
+            return parseNarrowest(input);
+        }
+        long start = System.nanoTime();
+        try {
+            DatasetSource dataset = parseNarrowest(input);
+            Metrics.PARSE.recordSize(dataset.size());
+            return dataset;
+        } catch (RuntimeException e) {
+            Metrics.PARSE.recordError();
+            throw e;
+        } finally {
+            Metrics.PARSE.recordBytes(input.length());
+            Metrics.PARSE.recordLatency(start);
+        }
+    }
+
+    private static DatasetSource parseNarrowest(CharSequence input) {
+        try {
+            return new ParsedDataset(parse(input));
+        } catch (NumberTypeException e) {
+            if (!e.isFractional()) {
+                try {
+                    return new LongDataset(parseLongs(input));
+                } catch (NumberTypeException wider) {
+                    // a value is out of the range of long or has a fraction
+                }
+            }
+            return new DoubleDataset(parseDoubles(input));
+        }
+    }
+
+    /**
+     * Parse comma separated 64-bit integers, the same way as parseInts.
+     * @param input comma separated integers
+     * @return a list of integers in input order
+     * @throws DatasetFormatException if a value is not a valid 64-bit integer
+     */
+    public static long[] parseLongs(CharSequence input) {
+        int length = input.length();
+        if (length == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+
+        long[] buffer = new long[INITIAL_CAPACITY];
+        int size = 0;
+        int pos = 0;
+        while (pos <= length) {
+            if ((pos == length || input.charAt(pos) == ',') && onlyCommasFrom(input, pos)) {
+                break;
+            }
+            int tokenStart = pos;
+            while (pos < length && input.charAt(pos) <= ' ') {
+                pos++;
+            }
+
+            boolean negative = false;
+            if (pos < length && (input.charAt(pos) == '-' || input.charAt(pos) == '+')) {
+                negative = input.charAt(pos) == '-';
+                pos++;
+            }
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            int digitsStart = pos;
+            long value = 0;
+            while (pos < length) {
+                int digit = input.charAt(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (value < limit / 10 || value * 10 < limit + digit) {
+                    throw new NumberTypeException("Integer out of range", tokenStart, false);
+                }
+                value = value * 10 - digit;
+                pos++;
+            }
+            if (pos == digitsStart) {
+                throw invalid(input, pos, "Invalid integer");
+            }
+
+            while (pos < length && input.charAt(pos) <= ' ') {
+                pos++;
+            }
+            if (pos < length && input.charAt(pos) != ',') {
+                throw invalid(input, pos, "Invalid integer");
+            }
+
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+                CalculationProgress.checkpoint("Parsing", pos, length);
+            }
+            buffer[size++] = negative ? value : -value;
+            pos++;
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Parse comma separated decimal numbers such as 12, -0.5, .25 or 6.02e23, the same way as parseInts.
+     * @param input comma separated numbers
+     * @return a list of numbers in input order
+     * @throws DatasetFormatException if a value is not a valid finite number
+     */
+    public static double[] parseDoubles(CharSequence input) {
+        int length = input.length();
+        if (length == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+
+        double[] buffer = new double[INITIAL_CAPACITY];
+        int size = 0;
+        int pos = 0;
+        while (pos <= length) {
+            if ((pos == length || input.charAt(pos) == ',') && onlyCommasFrom(input, pos)) {
+                break;
+            }
+            int end = pos;
+            while (end < length && input.charAt(end) != ',') {
+                end++;
+            }
+            int start = pos;
+            while (start < end && input.charAt(start) <= ' ') {
+                start++;
+            }
+            int stop = end;
+            while (stop > start && input.charAt(stop - 1) <= ' ') {
+                stop--;
+            }
+
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+                CalculationProgress.checkpoint("Parsing", pos, length);
+            }
+            buffer[size++] = parseDouble(input, start, stop);
+            pos = end + 1;
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Parse one number without creating a String.
+     * A number of at most 15 significant digits and a small exponent is the exact quotient or product
+     * of two doubles, so one division or multiplication rounds it correctly.
+     * Other numbers are checked here and converted by Double.parseDouble.
+     * @param input text which holds the number
+     * @param start offset of the number
+     * @param end offset after the number
+     * @return the number
+     * @throws DatasetFormatException if the text is not a valid finite number
+     */
+    static double parseDouble(CharSequence input, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (input.charAt(pos) == '-' || input.charAt(pos) == '+')) {
+            negative = input.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean afterPoint = false;
+        for (; pos < end; pos++) {
+            char c = input.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits <= 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (afterPoint) {
+                        exponent--;
+                    }
+                } else if (!afterPoint) {
+                    exponent++;
+                }
+            } else if (c == '.' && !afterPoint) {
+                afterPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!hasDigits) {
+            throw new DatasetFormatException("Invalid number", pos);
+        }
+        if (pos < end && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (input.charAt(pos) == '-' || input.charAt(pos) == '+')) {
+                negativeExponent = input.charAt(pos) == '-';
+                pos++;
+            }
+            int exponentStart = pos;
+            int written = 0;
+            while (pos < end && input.charAt(pos) >= '0' && input.charAt(pos) <= '9') {
+                // far beyond the range of double, so larger exponents need not be exact
+                written = Math.min(written * 10 + (input.charAt(pos) - '0'), 100_000);
+                pos++;
+            }
+            if (pos == exponentStart) {
+                throw new DatasetFormatException("Invalid number", pos);
+            }
+            exponent += negativeExponent ? -written : written;
+        }
+        if (pos < end) {
+            throw new DatasetFormatException("Invalid number", pos);
+        }
+
+        double value;
+        if (significantDigits <= 15 && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        value = Double.parseDouble(input.subSequence(start, end).toString());
+        if (Double.isInfinite(value)) {
+            throw new DatasetFormatException("Number out of range", start);
+        }
+        return value;
+    }
+
+    /**
+     * Parse one integer between from and to. Whitespace around it is ignored.
+     * @param input text which holds the integer
+     * @param from offset of the integer
+     * @param to offset after the integer
+     * @return the integer
+     * @throws DatasetFormatException if the text is not a valid integer
+     */
+    static int parseInt(CharSequence input, int from, int to) {
+        int pos = from;
+        while (pos < to && input.charAt(pos) <= ' ') {
+            pos++;
+        }
+        boolean negative = false;
+        if (pos < to && (input.charAt(pos) == '-' || input.charAt(pos) == '+')) {
+            negative = input.charAt(pos) == '-';
+            pos++;
+        }
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int digitsStart = pos;
+        int value = 0;
+        while (pos < to) {
+            int digit = input.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberTypeException("Integer out of range", from, false);
+            }
+            value = value * 10 - digit;
+            pos++;
+        }
+        if (pos == digitsStart) {
+            throw invalid(input, pos, "Invalid integer");
+        }
+        while (pos < to && input.charAt(pos) <= ' ') {
+            pos++;
+        }
+        if (pos < to) {
+            throw invalid(input, pos, "Invalid integer");
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * A private helper function to report an invalid integer, which may be a valid number with a fraction.
+     */
+    private static DatasetFormatException invalid(CharSequence input, int pos, String message) {
+        char c = pos < input.length() ? input.charAt(pos) : ' ';
+        if (c == '.' || c == 'e' || c == 'E') {
+            return new NumberTypeException(message, pos, true);
+        }
+        return new DatasetFormatException(message, pos);
+    }
+
+    /**
+     * Returns the length of the input without its trailing commas, which are empty values and dropped.
+     * @param input comma separated values
+     * @return offset after the last value
+     */
+    static int valuesLength(CharSequence input) {
+        int end = input.length();
+        while (end > 0 && input.charAt(end - 1) == ',') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * A private helper function to check whether the rest of the input only has commas,
+     * which means all the remaining values are empty.
+     */
+    private static boolean onlyCommasFrom(CharSequence input, int pos) {
+        for (int i = pos; i < input.length(); i++) {
+            if (input.charAt(i) != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+/**
+ * A parser which splits large comma separated input at commas into chunks and parses the chunks
+ * on a fork-join pool. Each chunk is parsed by NumberParser into its own array and the arrays are
+ * joined in input order, so the values are the same as parsing on one thread.
+ * Errors are the same too: when several chunks have an invalid value, the error of the first of them,
+ * which has the smallest offset, is thrown, and chunks after a failed one are not parsed.
+ */
+class ParallelNumberParser {
+    /**
+     * Inputs shorter than this are parsed on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int CHUNK_SIZE = 1 << 18;
+
+    private ParallelNumberParser() {
+    }
+
+    /**
+     * Parse comma separated integers in parallel on the given pool, the same way as NumberParser.parseInts.
+     * @param input comma separated integers
+     * @param pool pool which parses the chunks
+     * @return a list of integers in input order
+     * @throws DatasetFormatException if a value is not a valid integer
+     */
+    public static int[] parseInts(CharSequence input, ForkJoinPool pool) {
+        return parseInts(input, pool, CHUNK_SIZE);
+    }
+
+    static int[] parseInts(CharSequence input, ForkJoinPool pool, int chunkSize) {
+        if (input.length() == 0) {
+            throw new DatasetFormatException("Empty input", 0);
+        }
+        int end = NumberParser.valuesLength(input);
+        if (end == 0) {
+            return new int[0];
+        }
+        int[] ends = chunkEnds(input, end, chunkSize);
+        int[][] chunks = new int[ends.length][];
+        DatasetFormatException[] errors = new DatasetFormatException[ends.length];
+        AtomicInteger firstError = new AtomicInteger(ends.length);
+        pool.invoke(new ParseTask(input, ends, 0, ends.length, chunks, errors, firstError,
+                CalculationProgress.current(), new AtomicLong()));
+        if (firstError.get() < ends.length) {
+            throw errors[firstError.get()];
+        }
+
+        long size = 0;
+        for (int[] chunk : chunks) {
+            size += chunk.length;
+        }
+        int[] values = new int[(int) size];
+        int offset = 0;
+        for (int[] chunk : chunks) {
+            System.arraycopy(chunk, 0, values, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return values;
+    }
+
+    /**
+     * A private helper function to split the values into chunks of about chunkSize characters.
+     * Every chunk but the last ends at a comma, so no value is split.
+     * @return offset after the last value of each chunk
+     */
+    private static int[] chunkEnds(CharSequence input, int end, int chunkSize) {
+        int[] ends = new int[(int) ((end + (long) chunkSize - 1) / chunkSize)];
+        int count = 0;
+        int pos = 0;
+        while (true) {
+            pos = (int) Math.min(end, (long) pos + chunkSize);
+            while (pos < end && input.charAt(pos) != ',') {
+                pos++;
+            }
+            if (pos >= end) {
+                break;
+            }
+            ends[count++] = pos++;
+        }
+        ends[count++] = end;
+        return count == ends.length ? ends : Arrays.copyOf(ends, count);
+    }
+
+    /**
+     * A task which parses a range of chunks. An error is kept with its chunk instead of thrown,
+     * so that the first failed chunk can be found once all tasks are done.
+     */
+    private static final class ParseTask extends RecursiveAction {
+        private final CharSequence input;
+        private final int[] ends;
+        private final int from;
+        private final int to;
+        private final int[][] chunks;
+        private final DatasetFormatException[] errors;
+        private final AtomicInteger firstError;
+        private final CalculationProgress progress;
+        private final AtomicLong done;
+
+        private ParseTask(CharSequence input, int[] ends, int from, int to, int[][] chunks,
+                          DatasetFormatException[] errors, AtomicInteger firstError,
+                          CalculationProgress progress, AtomicLong done) {
+            this.input = input;
+            this.ends = ends;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+            this.errors = errors;
+            this.firstError = firstError;
+            this.progress = progress;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                parseChunk(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(input, ends, from, middle, chunks, errors, firstError, progress, done),
+                    new ParseTask(input, ends, middle, to, chunks, errors, firstError, progress, done));
+        }
+
+        private void parseChunk(int chunk) {
+            if (chunk > firstError.get()) {
+                return;
+            }
+            int start = chunk == 0 ? 0 : ends[chunk - 1] + 1;
+            try {
+                chunks[chunk] = NumberParser.parseRange(input, start, ends[chunk]);
+            } catch (DatasetFormatException e) {
+                errors[chunk] = e;
+                firstError.accumulateAndGet(chunk, Math::min);
+                return;
+            }
+            if (progress != null) {
+                progress.report("Parsing", done.addAndGet(ends[chunk] - start), ends[ends.length - 1]);
+            }
+        }
+    }
+}
+
+/**
+ * This exception is thrown when user's input contains a value which is not a valid number.
+ * It reports the offset of the bad value in the input.
+ */
+class DatasetFormatException extends NumberFormatException {
+    private final long offset;
+
+    public DatasetFormatException(String message, long offset) {
+        super(message + " at offset " + offset);
+        this.offset = offset;
+    }
+
+    public long getOffset() {
+        return this.offset;
+    }
+}
+
+/**
+ * This exception is thrown when a value is a valid number of a wider type than the one being parsed:
+ * an integer out of range, or a number with a fraction or an exponent.
+ */
+class NumberTypeException extends DatasetFormatException {
+    private final boolean fractional;
+
+    public NumberTypeException(String message, long offset, boolean fractional) {
+        super(message, offset);
+        this.fractional = fractional;
+    }
+
+    /**
+     * Returns whether the value needs a floating-point type, rather than only a longer integer type.
+     * @return true if the value has a fraction or an exponent
+     */
+    public boolean isFractional() {
+        return this.fractional;
+    }
+}
+
+/**
+ * This class keeps the metrics of every instrumented operation: parsing typed input or a stream, selection,
+ * each interactor (named after its use case) and each presenter (the use case followed by .present).
+ * Metrics are recorded only when the JVM runs with -Dstatistics.metrics=true. The flag is a constant,
+ * so when it is off the checks on the hot paths are removed by the JIT and no boundary is wrapped.
+ * When it is on, ControllerFactory puts a Timed*Boundary decorator around every interactor and presenter.
+ * Every operation is registered as an MBean named StatisticalCalculator:type=Operation,name=...
+ * and dump() writes all of them as text.
+ */
+class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("statistics.metrics");
+    static final String DOMAIN = "StatisticalCalculator";
+
+    private static final Map<String, OperationMetrics> OPERATIONS = new ConcurrentHashMap<>();
+
+    static final OperationMetrics PARSE = operation("parse");
+    static final OperationMetrics PARSE_STREAM = operation("parse.stream");
+    static final OperationMetrics SELECT = operation("select");
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the metrics of the named operation, creating and registering them on the first call.
+     * @param name name of the operation
+     * @return metrics of the operation
+     */
+    public static OperationMetrics operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, key -> {
+            OperationMetrics metrics = new OperationMetrics(key);
+            if (ENABLED) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                            new ObjectName(DOMAIN + ":type=Operation,name=" + ObjectName.quote(key)));
+                } catch (JMException e) {
+                    throw new IllegalStateException("Cannot register metrics of " + key, e);
+                }
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * Writes the metrics of every operation, one line each, in name order.
+     * @return metrics as text
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder(String.format("%-20s %10s %8s %10s %10s %10s %10s %10s %12s %14s%n",
+                "operation", "count", "errors", "mean us", "p50 us", "p99 us", "p99.9 us", "max us",
+                "p50 size", "bytes"));
+        OPERATIONS.keySet().stream().sorted().forEach(name -> text.append(OPERATIONS.get(name).toString()));
+        return text.toString();
+    }
+}
+
+/**
+ * A histogram of non-negative values with buckets of bounded relative width, like HdrHistogram:
+ * values below 64 have a bucket each, and every larger power of two is split into 32 buckets,
+ * so a recorded value is known to within 1 / 32 of itself.
+ * Recording only increments counters in place, so it never allocates and never locks.
+ */
+class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(index(value));
+        this.count.increment();
+        this.sum.add(value);
+        long current;
+        while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+            // retry until the maximum is at least the value
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public double getMean() {
+        long n = this.count.sum();
+        return n == 0 ? 0 : (double) this.sum.sum() / n;
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the value at or below which the given share of the recorded values are,
+     * as the highest value of its bucket but no more than the maximum.
+     * @param p probability between 0 and 1
+     * @return value at p, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double p) {
+        long n = this.count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
+
+/**
+ * This class keeps the metrics of one operation: latency, sizes of the datasets, bytes parsed and errors.
+ * It is its own MBean, with an attribute per metric and a reset operation.
+ */
+class OperationMetrics implements DynamicMBean {
+    private static final String[] ATTRIBUTES = {"Count", "Errors", "MeanMicros", "P50Micros", "P90Micros",
+            "P99Micros", "P999Micros", "MaxMicros", "P50Size", "MaxSize", "Bytes"};
+
+    private final String name;
+    private final LogLinearHistogram latency = new LogLinearHistogram();
+    private final LogLinearHistogram sizes = new LogLinearHistogram();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records the latency of a call which started at the given time.
+     * @param startNanos System.nanoTime() when the call started
+     */
+    public void recordLatency(long startNanos) {
+        this.latency.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordSize(long size) {
+        this.sizes.record(size);
+    }
+
+    public void recordBytes(long count) {
+        this.bytes.add(count);
+    }
+
+    public void recordError() {
+        this.errors.increment();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public LogLinearHistogram getLatency() {
+        return this.latency;
+    }
+
+    public LogLinearHistogram getSizes() {
+        return this.sizes;
+    }
+
+    public long getBytes() {
+        return this.bytes.sum();
+    }
+
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    public void reset() {
+        this.latency.reset();
+        this.sizes.reset();
+        this.bytes.reset();
+        this.errors.reset();
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        switch (attribute) {
+            case "Count":
+                return this.latency.getCount();
+            case "Errors":
+                return getErrors();
+            case "MeanMicros":
+                return this.latency.getMean() / 1000;
+            case "P50Micros":
+                return this.latency.getValueAtPercentile(0.5) / 1000.0;
+            case "P90Micros":
+                return this.latency.getValueAtPercentile(0.9) / 1000.0;
+            case "P99Micros":
+                return this.latency.getValueAtPercentile(0.99) / 1000.0;
+            case "P999Micros":
+                return this.latency.getValueAtPercentile(0.999) / 1000.0;
+            case "MaxMicros":
+                return this.latency.getMax() / 1000.0;
+            case "P50Size":
+                return this.sizes.getValueAtPercentile(0.5);
+            case "MaxSize":
+                return this.sizes.getMax();
+            case "Bytes":
+                return getBytes();
+            default:
+                throw new IllegalArgumentException("Unknown attribute: " + attribute);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Metrics are read only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            list.add(new Attribute(attribute, getAttribute(attribute)));
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        if (!actionName.equals("reset")) {
+            throw new UnsupportedOperationException("Unknown operation: " + actionName);
+        }
+        reset();
+        return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            String type = ATTRIBUTES[i].endsWith("Micros") ? "double" : "long";
+            attributes[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i], true, false, false);
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears every metric", null, "void",
+                MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Metrics of " + this.name, attributes, null,
+                new MBeanOperationInfo[] {reset}, null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %12d %14d%n", this.name,
+                this.latency.getCount(), getErrors(), this.latency.getMean() / 1000,
+                this.latency.getValueAtPercentile(0.5) / 1000.0, this.latency.getValueAtPercentile(0.99) / 1000.0,
+                this.latency.getValueAtPercentile(0.999) / 1000.0, this.latency.getMax() / 1000.0,
+                this.sizes.getValueAtPercentile(0.5), getBytes());
+    }
+}
+
+/**
+ * A listener which receives the progress of a calculation running in the background.
+ */
+interface ProgressListener {
+    /**
+     * @param stage what the calculation is doing, such as "Parsing"
+     * @param fraction fraction of the stage which is done, between 0 and 1
+     */
+    void progress(String stage, double fraction);
+}
+
+/**
+ * The progress of a calculation submitted to CalculationExecutor.
+ * Long loops call checkpoint, which reports progress and throws CancellationException
+ * once the calculation has been cancelled. Outside CalculationExecutor a checkpoint does nothing.
+ */
+class CalculationProgress {
+    private static final ThreadLocal<CalculationProgress> CURRENT = new ThreadLocal<>();
+
+    private final CompletableFuture<?> future;
+    private final ProgressListener listener;
+    private volatile int lastPercent = -1;
+
+    CalculationProgress(CompletableFuture<?> future, ProgressListener listener) {
+        this.future = future;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the progress of the calculation which runs on this thread.
+     * @return progress, or null if this thread does not run a calculation
+     */
+    public static CalculationProgress current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Reports progress of the calculation which runs on this thread, if any.
+     * @param stage what the calculation is doing
+     * @param done amount of work done
+     * @param total total amount of work
+     * @throws CancellationException if the calculation has been cancelled
+     */
+    public static void checkpoint(String stage, long done, long total) {
+        CalculationProgress progress = CURRENT.get();
+        if (progress != null) {
+            progress.report(stage, done, total);
+        }
+    }
+
+    /**
+     * Reports progress, calling the listener only when the percentage changes.
+     * @param stage what the calculation is doing
+     * @param done amount of work done
+     * @param total total amount of work
+     * @throws CancellationException if the calculation has been cancelled
+     */
+    public void report(String stage, long done, long total) {
+        if (this.future.isDone()) {
+            throw new CancellationException();
+        }
+        int percent = (int) (done * 100 / Math.max(total, 1));
+        if (percent != this.lastPercent) {
+            this.lastPercent = percent;
+            this.listener.progress(stage, percent / 100.0);
+        }
+    }
+
+    void runWith(Runnable calculation) {
+        CURRENT.set(this);
+        try {
+            calculation.run();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+}
+
+/**
+ * This class runs calculations in the background so that the caller, such as the Swing
+ * event dispatch thread, is never blocked. It uses virtual threads when the JDK has them
+ * and daemon platform threads otherwise. Cancelling a returned future stops the calculation
+ * at its next progress checkpoint.
+ */
+class CalculationExecutor {
+    private static final ProgressListener NO_PROGRESS = (stage, fraction) -> { };
+    private static volatile CalculationExecutor defaultExecutor;
+
+    private final ExecutorService executor;
+
+    public CalculationExecutor() {
+        this.executor = newExecutor();
+    }
+
+    /**
+     * Returns an executor shared by controllers which were not given one.
+     * @return shared executor
+     */
+    public static CalculationExecutor getDefault() {
+        if (defaultExecutor == null) {
+            synchronized (CalculationExecutor.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = new CalculationExecutor();
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> calculation) {
+        return submit(calculation, NO_PROGRESS);
+    }
+
+    /**
+     * Runs the calculation in the background.
+     * @param calculation calculation to run
+     * @param listener listener which receives progress from the background thread
+     * @return a future of the result; cancelling it stops the calculation
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> calculation, ProgressListener listener) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CalculationProgress progress = new CalculationProgress(future, listener);
+        this.executor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            progress.runWith(() -> {
+                try {
+                    future.complete(calculation.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        });
+        return future;
+    }
+
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * A private helper function to create a virtual thread per task executor on JDKs which have one.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "calculation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateMean method through MeanInputBoundary.
+ */
+class MeanController {
+    private final MeanInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public MeanController(MeanInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public MeanController(MeanInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public MeanViewModel calculateMean(String input) {
+        return inputBoundary.calculateMean(input);
+    }
+
+    public MeanViewModel calculateMean(DatasetSource source) {
+        return inputBoundary.calculateMean(source);
+    }
+
+    public CompletableFuture<MeanViewModel> calculateMeanAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateMean(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<MeanViewModel> calculateMeanAsync(String input, IncrementalInput live, ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null ? inputBoundary.calculateMean(source) : inputBoundary.calculateMean(input);
+        }, listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateSD method through SDInputBoundary.
+ */
+class SDController {
+    private final SDInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public SDController(SDInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public SDController(SDInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public SDViewModel calculateSD(String input) {
+        return inputBoundary.calculateSD(input);
+    }
+
+    public SDViewModel calculateSD(DatasetSource source) {
+        return inputBoundary.calculateSD(source);
+    }
+
+    public CompletableFuture<SDViewModel> calculateSDAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateSD(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<SDViewModel> calculateSDAsync(String input, IncrementalInput live, ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null ? inputBoundary.calculateSD(source) : inputBoundary.calculateSD(input);
+        }, listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateMedian method through MedianInputBoundary.
+ */
+class MedianController {
+    private final MedianInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public MedianController(MedianInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public MedianController(MedianInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public MedianViewModel calculateMedian(String input) {
+        return inputBoundary.calculateMedian(input);
+    }
+
+    public MedianViewModel calculateMedian(DatasetSource source) {
+        return inputBoundary.calculateMedian(source);
+    }
+
+    public CompletableFuture<MedianViewModel> calculateMedianAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateMedian(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<MedianViewModel> calculateMedianAsync(String input, IncrementalInput live, ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null ? inputBoundary.calculateMedian(source) : inputBoundary.calculateMedian(input);
+        }, listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateSampleSize method through SampleSizeInputBoundary.
+ */
+class SampleSizeController {
+    private final SampleSizeInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public SampleSizeController(SampleSizeInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public SampleSizeController(SampleSizeInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public SampleSizeViewModel calculateSampleSize(String input) {
+        return inputBoundary.calculateSampleSize(input);
+    }
+
+    public SampleSizeViewModel calculateSampleSize(DatasetSource source) {
+        return inputBoundary.calculateSampleSize(source);
+    }
+
+    public CompletableFuture<SampleSizeViewModel> calculateSampleSizeAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateSampleSize(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<SampleSizeViewModel> calculateSampleSizeAsync(String input, IncrementalInput live, ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null ? inputBoundary.calculateSampleSize(source) : inputBoundary.calculateSampleSize(input);
+        }, listener);
+    }
+}
+
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateQuantiles method through QuantileInputBoundary.
+ */
+class QuantileController {
+    private static final double[] DEFAULT_PROBABILITIES = {0.5, 0.9, 0.99};
+
+    private final QuantileInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public QuantileController(QuantileInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public QuantileController(QuantileInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    /**
+     * Calculates the median, 90th and 99th percentiles.
+     */
+    public QuantileViewModel calculateQuantiles(String input) {
+        return inputBoundary.calculateQuantiles(input, DEFAULT_PROBABILITIES.clone());
+    }
+
+    public QuantileViewModel calculateQuantiles(String input, double[] probabilities) {
+        return inputBoundary.calculateQuantiles(input, probabilities);
+    }
+
+    public QuantileViewModel calculateQuantiles(DatasetSource source, double[] probabilities) {
+        return inputBoundary.calculateQuantiles(source, probabilities);
+    }
+
+    public CompletableFuture<QuantileViewModel> calculateQuantilesAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> calculateQuantiles(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<QuantileViewModel> calculateQuantilesAsync(String input, IncrementalInput live,
+                                                                       ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null
+                    ? inputBoundary.calculateQuantiles(source, DEFAULT_PROBABILITIES.clone())
+                    : calculateQuantiles(input);
+        }, listener);
+    }
+}
+
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateWindow method through WindowInputBoundary.
+ */
+class WindowController {
+    private final WindowInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public WindowController(WindowInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public WindowController(WindowInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public WindowViewModel calculateWindow(String input, int windowSize) {
+        return inputBoundary.calculateWindow(input, windowSize);
+    }
+
+    public CompletableFuture<WindowViewModel> calculateWindowAsync(String input, int windowSize,
+                                                                   ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateWindow(input, windowSize), listener);
+    }
+
+    public WindowViewModel calculateWindow(String input, long[] timestampsMillis, long durationMillis) {
+        return inputBoundary.calculateWindow(input, timestampsMillis, durationMillis);
+    }
+
+    public CompletableFuture<WindowViewModel> calculateWindowAsync(String input, long[] timestampsMillis,
+                                                                   long durationMillis, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateWindow(input, timestampsMillis, durationMillis), listener);
+    }
+}
+
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateSummary method through SummaryInputBoundary.
+ */
+class SummaryController {
+    private final SummaryInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public SummaryController(SummaryInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public SummaryController(SummaryInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public SummaryViewModel calculateSummary(String input) {
+        return inputBoundary.calculateSummary(input);
+    }
+
+    public SummaryViewModel calculateSummary(DatasetSource source) {
+        return inputBoundary.calculateSummary(source);
+    }
+
+    public CompletableFuture<SummaryViewModel> calculateSummaryAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateSummary(input), listener);
+    }
+
+    /**
+     * Calculates in the background from the live dataset of the input while every value is an int,
+     * and from the typed input otherwise.
+     */
+    public CompletableFuture<SummaryViewModel> calculateSummaryAsync(String input, IncrementalInput live, ProgressListener listener) {
+        return executor.submit(() -> {
+            DatasetSource source = live.dataset();
+            return source != null ? inputBoundary.calculateSummary(source) : inputBoundary.calculateSummary(input);
+        }, listener);
+    }
+}
+
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateFrequency method through FrequencyInputBoundary.
+ */
+class FrequencyController {
+    private final FrequencyInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public FrequencyController(FrequencyInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public FrequencyController(FrequencyInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public FrequencyViewModel calculateFrequency(String input) {
+        return inputBoundary.calculateFrequency(input);
+    }
+
+    public FrequencyViewModel calculateFrequency(DatasetSource source) {
+        return inputBoundary.calculateFrequency(source);
+    }
+
+    public CompletableFuture<FrequencyViewModel> calculateFrequencyAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateFrequency(input), listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateRange method through RangeInputBoundary.
+ */
+class RangeController {
+    private final RangeInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public RangeController(RangeInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public RangeController(RangeInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public RangeViewModel calculateRange(String input, int from, int to) {
+        return inputBoundary.calculateRange(input, from, to);
+    }
+
+    public RangeViewModel calculateRange(DatasetSource source, int from, int to) {
+        return inputBoundary.calculateRange(source, from, to);
+    }
+
+    public CompletableFuture<RangeViewModel> calculateRangeAsync(String input, int from, int to,
+                                                                 ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateRange(input, from, to), listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateBootstrap method through BootstrapInputBoundary.
+ */
+class BootstrapController {
+    private final BootstrapInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public BootstrapController(BootstrapInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public BootstrapController(BootstrapInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public BootstrapViewModel calculateBootstrap(String input, int resamples, double confidence) {
+        return inputBoundary.calculateBootstrap(input, resamples, confidence);
+    }
+
+    public BootstrapViewModel calculateBootstrap(DatasetSource source, int resamples, double confidence) {
+        return inputBoundary.calculateBootstrap(source, resamples, confidence);
+    }
+
+    public CompletableFuture<BootstrapViewModel> calculateBootstrapAsync(String input, int resamples, double confidence,
+                                                                         ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateBootstrap(input, resamples, confidence), listener);
+    }
+}
+
+/**
+ * This class is a controller which receives user input
+ * and handles calculateGroups method through GroupInputBoundary.
+ */
+class GroupController {
+    private final GroupInputBoundary inputBoundary;
+    private final CalculationExecutor executor;
+
+    public GroupController(GroupInputBoundary inputBoundary) {
+        this(inputBoundary, CalculationExecutor.getDefault());
+    }
+
+    public GroupController(GroupInputBoundary inputBoundary, CalculationExecutor executor) {
+        this.inputBoundary = inputBoundary;
+        this.executor = executor;
+    }
+
+    public GroupViewModel calculateGroups(String input) {
+        return inputBoundary.calculateGroups(input);
+    }
+
+    public GroupViewModel calculateGroups(KeyedColumns columns) {
+        return inputBoundary.calculateGroups(columns);
+    }
+
+    public CompletableFuture<GroupViewModel> calculateGroupsAsync(String input, ProgressListener listener) {
+        return executor.submit(() -> inputBoundary.calculateGroups(input), listener);
+    }
+}
+
+/**
+ * This interface is an abstraction layer between MeanController and MeanInteractor.
+ */
+interface MeanInputBoundary {
+    MeanViewModel calculateMean(String input);
+
+    MeanViewModel calculateMean(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between SDController and SDInteractor.
+ */
+interface SDInputBoundary {
+    SDViewModel calculateSD(String input);
+
+    SDViewModel calculateSD(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between MedianController and MedianInteractor.
+ */
+interface MedianInputBoundary {
+    MedianViewModel calculateMedian(String input);
+
+    MedianViewModel calculateMedian(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between SampleSizeController and SampleSizeInteractor.
+ */
+interface SampleSizeInputBoundary {
+    SampleSizeViewModel calculateSampleSize(String input);
+
+    SampleSizeViewModel calculateSampleSize(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between QuantileController and QuantileInteractor.
+ */
+interface QuantileInputBoundary {
+    QuantileViewModel calculateQuantiles(String input, double[] probabilities);
+
+    QuantileViewModel calculateQuantiles(DatasetSource source, double[] probabilities);
+}
+
+/**
+ * This interface is an abstraction layer between WindowController and WindowInteractor.
+ */
+interface WindowInputBoundary {
+    WindowViewModel calculateWindow(String input, int windowSize);
+
+    WindowViewModel calculateWindow(String input, long[] timestampsMillis, long durationMillis);
+}
+
+/**
+ * This interface is an abstraction layer between SummaryController and SummaryInteractor.
+ */
+interface SummaryInputBoundary {
+    SummaryViewModel calculateSummary(String input);
+
+    SummaryViewModel calculateSummary(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between FrequencyController and FrequencyInteractor.
+ */
+interface FrequencyInputBoundary {
+    FrequencyViewModel calculateFrequency(String input);
+
+    FrequencyViewModel calculateFrequency(DatasetSource source);
+}
+
+/**
+ * This interface is an abstraction layer between RangeController and RangeInteractor.
+ */
+interface RangeInputBoundary {
+    RangeViewModel calculateRange(String input, int from, int to);
+
+    RangeViewModel calculateRange(DatasetSource source, int from, int to);
+}
+
+/**
+ * This interface is an abstraction layer between BootstrapController and BootstrapInteractor.
+ */
+interface BootstrapInputBoundary {
+    BootstrapViewModel calculateBootstrap(String input, int resamples, double confidence);
+
+    BootstrapViewModel calculateBootstrap(DatasetSource source, int resamples, double confidence);
+}
+
+/**
+ * This interface is an abstraction layer between GroupController and GroupInteractor.
+ */
+interface GroupInputBoundary {
+    GroupViewModel calculateGroups(String input);
+
+    GroupViewModel calculateGroups(KeyedColumns columns);
+}
+
+/**
+ * This class is an interactor for handle calculating mean use case.
+ */
+class MeanInteractor implements MeanInputBoundary {
+    private final MeanOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public MeanInteractor(MeanOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public MeanInteractor(MeanOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the mean of given input and returns the result
+     * by encapsulating in MeanViewModel through MeanOutputBoundary.
+     *
+     * @param input user's input
+     * @return a MeanViewModel object
+     */
+    @Override
+    public MeanViewModel calculateMean(String input) {
+        return calculateMean(this.datasetCache.get(input));
+    }
+
+    /**
+     * Calculates the mean of given dataset and returns the result
+     * by encapsulating in MeanViewModel through MeanOutputBoundary.
+     *
+     * @param source dataset
+     * @return a MeanViewModel object
+     */
+    @Override
+    public MeanViewModel calculateMean(DatasetSource source) {
+        double mean = source.statistics().getMean();
+        double roundedMean = StatisticsAccumulator.roundToHundredths(mean);
+        return this.outputBoundary.promptMean(roundedMean);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating standard deviation use case.
+ */
+class SDInteractor implements SDInputBoundary {
+    private final SDOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public SDInteractor(SDOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public SDInteractor(SDOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the standard deviation of given input and returns the result
+     * by encapsulating in SDViewModel through SDOutputBoundary.
+     *
+     * @param input user's input
+     * @return a SDViewModel object
+     */
+    @Override
+    public SDViewModel calculateSD(String input) {
+        return calculateSD(this.datasetCache.get(input));
+    }
+
+    /**
+     * Calculates the standard deviation of given dataset and returns the result
+     * by encapsulating in SDViewModel through SDOutputBoundary.
+     *
+     * @param source dataset
+     * @return a SDViewModel object
+     */
+    @Override
+    public SDViewModel calculateSD(DatasetSource source) {
+        double sd = source.statistics().getStandardDeviation();
+        double roundedSD = StatisticsAccumulator.roundToHundredths(sd);
+
+        return this.outputBoundary.promptSD(roundedSD);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating median use case.
+ */
+class MedianInteractor implements MedianInputBoundary {
+    private final MedianOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public MedianInteractor(MedianOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public MedianInteractor(MedianOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the median of given input and returns the result
+     * by encapsulating in MedianViewModel through MedianOutputBoundary.
+     *
+     * @param input user's input
+     * @return a MedianViewModel object
+     */
+    @Override
+    public MedianViewModel calculateMedian(String input) {
+        return calculateMedian(this.datasetCache.get(input));
+    }
+
+    /**
+     * Calculates the median of given dataset and returns the result
+     * by encapsulating in MedianViewModel through MedianOutputBoundary.
+     *
+     * @param source dataset
+     * @return a MedianViewModel object
+     */
+    @Override
+    public MedianViewModel calculateMedian(DatasetSource source) {
+        double median = source.median();
+        return this.outputBoundary.promptMedian(median);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating sample size use case.
+ */
+class SampleSizeInteractor implements SampleSizeInputBoundary {
+    private final SampleSizeOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public SampleSizeInteractor(SampleSizeOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public SampleSizeInteractor(SampleSizeOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the sample size of given input and returns the result
+     * by encapsulating in SampleSizeViewModel through SampleSizeOutputBoundary.
+     *
+     * @param input user's input
+     * @return a SampleSizeViewModel object
+     */
+    @Override
+    public SampleSizeViewModel calculateSampleSize(String input) {
+        return calculateSampleSize(this.datasetCache.get(input));
+    }
+
+    /**
+     * Calculates the sample size of given dataset and returns the result
+     * by encapsulating in SampleSizeViewModel through SampleSizeOutputBoundary.
+     *
+     * @param source dataset
+     * @return a SampleSizeViewModel object
+     */
+    @Override
+    public SampleSizeViewModel calculateSampleSize(DatasetSource source) {
+        int n = Math.toIntExact(source.size());
+        return this.outputBoundary.promptSampleSize(n);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating approximate quantiles use case.
+ */
+class QuantileInteractor implements QuantileInputBoundary {
+    private final QuantileOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public QuantileInteractor(QuantileOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public QuantileInteractor(QuantileOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the quantiles of given input and returns the result
+     * by encapsulating in QuantileViewModel through QuantileOutputBoundary.
+     *
+     * @param input user's input
+     * @param probabilities probabilities between 0 and 1
+     * @return a QuantileViewModel object
+     */
+    @Override
+    public QuantileViewModel calculateQuantiles(String input, double[] probabilities) {
+        return calculateQuantiles(this.datasetCache.get(input), probabilities);
+    }
+
+    /**
+     * Calculates the quantiles of given dataset from its quantile sketch and returns the result
+     * by encapsulating in QuantileViewModel through QuantileOutputBoundary.
+     *
+     * @param source dataset
+     * @param probabilities probabilities between 0 and 1
+     * @return a QuantileViewModel object
+     */
+    @Override
+    public QuantileViewModel calculateQuantiles(DatasetSource source, double[] probabilities) {
+        QuantileSketch sketch = source.quantileSketch();
+        double[] quantiles = new double[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            quantiles[i] = sketch.quantile(probabilities[i]);
+        }
+        return this.outputBoundary.promptQuantiles(probabilities, quantiles);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating rolling statistics use case.
+ */
+class WindowInteractor implements WindowInputBoundary {
+    private final WindowOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public WindowInteractor(WindowOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public WindowInteractor(WindowOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the mean, standard deviation and median of the last windowSize values
+     * at every value of given input, and returns the result
+     * by encapsulating in WindowViewModel through WindowOutputBoundary.
+     *
+     * @param input user's input in time order
+     * @param windowSize number of values in the window
+     * @return a WindowViewModel object
+     */
+    @Override
+    public WindowViewModel calculateWindow(String input, int windowSize) {
+        return calculateWindow(integers(input), null, SlidingWindowStatistics.ofCount(windowSize));
+    }
+
+    /**
+     * Calculates the mean, standard deviation and median of the values of the last durationMillis
+     * milliseconds at every value of given input, and returns the result
+     * by encapsulating in WindowViewModel through WindowOutputBoundary.
+     *
+     * @param input user's input in time order
+     * @param timestampsMillis time of every value in milliseconds, not decreasing
+     * @param durationMillis length of the window in milliseconds
+     * @return a WindowViewModel object
+     */
+    @Override
+    public WindowViewModel calculateWindow(String input, long[] timestampsMillis, long durationMillis) {
+        int[] data = integers(input);
+        if (timestampsMillis.length != data.length) {
+            throw new IllegalArgumentException(timestampsMillis.length + " timestamps for " + data.length + " values");
+        }
+        for (int i = 1; i < timestampsMillis.length; i++) {
+            if (timestampsMillis[i] < timestampsMillis[i - 1]) {
+                throw new IllegalArgumentException("Timestamps must not decrease: " + timestampsMillis[i]
+                        + " follows " + timestampsMillis[i - 1]);
+            }
+        }
+        return calculateWindow(data, timestampsMillis, SlidingWindowStatistics.ofDuration(durationMillis));
+    }
+
+    private int[] integers(String input) {
+        DatasetSource source = this.datasetCache.get(input);
+        if (!(source instanceof ParsedDataset)) {
+            throw new IllegalArgumentException("Rolling statistics need integers");
+        }
+        return ((ParsedDataset) source).values();
+    }
+
+    /**
+     * A private helper function to slide the window over the values. Values of a count window
+     * are all added at time 0, so only the count evicts them.
+     */
+    private WindowViewModel calculateWindow(int[] data, long[] timestampsMillis, SlidingWindowStatistics window) {
+        double[] means = new double[data.length];
+        double[] sds = new double[data.length];
+        double[] medians = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            window.add(timestampsMillis == null ? 0 : timestampsMillis[i], data[i]);
+            means[i] = StatisticsAccumulator.roundToHundredths(window.mean());
+            sds[i] = StatisticsAccumulator.roundToHundredths(window.standardDeviation());
+            medians[i] = window.median();
+        }
+        return this.outputBoundary.promptWindow(means, sds, medians);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating all statistics at once use case.
+ */
+class SummaryInteractor implements SummaryInputBoundary {
+    static final double[] PROBABILITIES = {0.25, 0.75, 0.9, 0.99};
+
+    private final SummaryOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public SummaryInteractor(SummaryOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public SummaryInteractor(SummaryOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates every statistic of given input and returns the result
+     * by encapsulating in SummaryViewModel through SummaryOutputBoundary.
+     *
+     * @param input user's input
+     * @return a SummaryViewModel object
+     */
+    @Override
+    public SummaryViewModel calculateSummary(String input) {
+        return calculateSummary(this.datasetCache.get(input));
+    }
+
+    /**
+     * Calculates every statistic of given dataset from one pass for the moments
+     * and one selection of the at most ten ranks which the median and quantiles need, and returns the result
+     * by encapsulating in SummaryViewModel through SummaryOutputBoundary.
+     * Parsed datasets and datasets of 64-bit integers or decimals select the ranks together on their working
+     * copy, in a few linear passes rather than five selections. A mapped file is scanned three or four times
+     * and an off-heap dataset twice for all of them. The live dataset still walks its tree once per rank,
+     * in logarithmic time, and a streamed dataset answers from its sketch.
+     *
+     * @param source dataset
+     * @return a SummaryViewModel object
+     */
+    @Override
+    public SummaryViewModel calculateSummary(DatasetSource source) {
+        StatisticsAccumulator statistics = source.statistics();
+        double mean = StatisticsAccumulator.roundToHundredths(statistics.getMean());
+        double sd = StatisticsAccumulator.roundToHundredths(statistics.getStandardDeviation());
+        double[] orderStatistics = source.medianAndQuantiles(PROBABILITIES);
+        double median = orderStatistics[0];
+        double[] quantiles = Arrays.copyOfRange(orderStatistics, 1, orderStatistics.length);
+        return this.outputBoundary.promptSummary(statistics.getCount(), mean, sd, median,
+                statistics.getMin(), statistics.getMax(), PROBABILITIES.clone(), quantiles);
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating frequencies use case.
+ */
+class FrequencyInteractor implements FrequencyInputBoundary {
+    private final FrequencyOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public FrequencyInteractor(FrequencyOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public FrequencyInteractor(FrequencyOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the modes, the number of distinct values and a histogram of given input and returns the result
+     * by encapsulating in FrequencyViewModel through FrequencyOutputBoundary.
+     *
+     * @param input user's input
+     * @return a FrequencyViewModel object
+     */
+    @Override
+    public FrequencyViewModel calculateFrequency(String input) {
+        return calculateFrequency(this.datasetCache.get(input));
+    }
+
+    /**
+     * Counts every value of given dataset once, and finds the modes and a histogram from the counts.
+     * The histogram has equal width bins whose number follows Sturges' rule, ceil(log2(n)) + 1,
+     * but is never more than the number of integers between the minimum and the maximum.
+     *
+     * @param source dataset of integers
+     * @return a FrequencyViewModel object
+     */
+    @Override
+    public FrequencyViewModel calculateFrequency(DatasetSource source) {
+        if (!(source instanceof ParsedDataset)) {
+            throw new IllegalArgumentException("Frequencies need integers");
+        }
+        int[] values = ((ParsedDataset) source).values();
+        StatisticsAccumulator statistics = source.statistics();
+        if (values.length == 0) {
+            return this.outputBoundary.promptFrequency(0, 0, new int[0], 0, new long[0], new long[0], new long[0]);
+        }
+        int min = (int) statistics.getMin();
+        int max = (int) statistics.getMax();
+        FrequencyTable table = FrequencyTable.of(values, min, max);
+
+        long range = (long) max - min + 1;
+        int bins = (int) Math.min(range, 64 - Long.numberOfLeadingZeros(values.length - 1L) + 1);
+        long width = (range + bins - 1) / bins;
+        bins = (int) ((range + width - 1) / width);
+        long[] binStarts = new long[bins];
+        long[] binEnds = new long[bins];
+        for (int i = 0; i < bins; i++) {
+            binStarts[i] = min + i * width;
+            binEnds[i] = Math.min(max, binStarts[i] + width - 1);
+        }
+        return this.outputBoundary.promptFrequency(values.length, table.distinctCount(), table.modes(),
+                table.modeCount(), binStarts, binEnds, table.histogram(min, width, bins));
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating statistics of a range of the input use case.
+ */
+class RangeInteractor implements RangeInputBoundary {
+    private final RangeOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public RangeInteractor(RangeOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public RangeInteractor(RangeOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the statistics of the values from index from, included, to index to, excluded,
+     * counted from 0, of given input and returns the result
+     * by encapsulating in RangeViewModel through RangeOutputBoundary.
+     *
+     * @param input user's input
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return a RangeViewModel object
+     */
+    @Override
+    public RangeViewModel calculateRange(String input, int from, int to) {
+        return calculateRange(this.datasetCache.get(input), from, to);
+    }
+
+    /**
+     * Calculates the statistics of a range of given dataset from its range index,
+     * which is built on the first query only, so many ranges of one dataset are answered quickly.
+     *
+     * @param source dataset of integers
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return a RangeViewModel object
+     */
+    @Override
+    public RangeViewModel calculateRange(DatasetSource source, int from, int to) {
+        if (!(source instanceof ParsedDataset)) {
+            throw new IllegalArgumentException("Range queries need integers");
+        }
+        RangeIndex index = ((ParsedDataset) source).rangeIndex();
+        StatisticsAccumulator statistics = index.statistics(from, to);
+        double mean = StatisticsAccumulator.roundToHundredths(statistics.getMean());
+        double sd = StatisticsAccumulator.roundToHundredths(statistics.getStandardDeviation());
+        return this.outputBoundary.promptRange(statistics.getCount(), mean, sd, index.median(from, to),
+                statistics.getMin(), statistics.getMax());
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating bootstrap confidence intervals use case.
+ */
+class BootstrapInteractor implements BootstrapInputBoundary {
+    /**
+     * Resamples are drawn from a fixed seed, so the same input always gives the same intervals.
+     */
+    static final long SEED = 42;
+
+    private final BootstrapOutputBoundary outputBoundary;
+    private final DatasetCache datasetCache;
+
+    public BootstrapInteractor(BootstrapOutputBoundary outputBoundary) {
+        this(outputBoundary, new DatasetCache());
+    }
+
+    public BootstrapInteractor(BootstrapOutputBoundary outputBoundary, DatasetCache datasetCache) {
+        this.outputBoundary = outputBoundary;
+        this.datasetCache = datasetCache;
+    }
+
+    /**
+     * Calculates the mean, standard deviation and median of given input with their percentile
+     * confidence intervals and returns the result
+     * by encapsulating in BootstrapViewModel through BootstrapOutputBoundary.
+     *
+     * @param input user's input
+     * @param resamples number of bootstrap resamples
+     * @param confidence confidence level between 0 and 1, such as 0.95
+     * @return a BootstrapViewModel object
+     */
+    @Override
+    public BootstrapViewModel calculateBootstrap(String input, int resamples, double confidence) {
+        return calculateBootstrap(this.datasetCache.get(input), resamples, confidence);
+    }
+
+    /**
+     * Calculates the statistics of given dataset, and their intervals from the statistics of resamples
+     * of the dataset which are drawn in parallel.
+     *
+     * @param source dataset of integers
+     * @param resamples number of bootstrap resamples
+     * @param confidence confidence level between 0 and 1, such as 0.95
+     * @return a BootstrapViewModel object
+     */
+    @Override
+    public BootstrapViewModel calculateBootstrap(DatasetSource source, int resamples, double confidence) {
+        if (!(source instanceof ParsedDataset)) {
+            throw new IllegalArgumentException("Bootstrap needs integers");
+        }
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1: " + confidence);
+        }
+        Bootstrap bootstrap = Bootstrap.of(((ParsedDataset) source).values(), resamples, SEED);
+        StatisticsAccumulator statistics = source.statistics();
+        double mean = StatisticsAccumulator.roundToHundredths(statistics.getMean());
+        double sd = StatisticsAccumulator.roundToHundredths(statistics.getStandardDeviation());
+        double[] meanInterval = roundInterval(Bootstrap.percentileInterval(bootstrap.getMeans(), confidence));
+        double[] sdInterval = roundInterval(Bootstrap.percentileInterval(bootstrap.getSDs(), confidence));
+        double[] medianInterval = Bootstrap.percentileInterval(bootstrap.getMedians(), confidence);
+        return this.outputBoundary.promptBootstrap(resamples, confidence, mean, meanInterval, sd, sdInterval,
+                source.median(), medianInterval);
+    }
+
+    private static double[] roundInterval(double[] interval) {
+        return new double[] {StatisticsAccumulator.roundToHundredths(interval[0]),
+                StatisticsAccumulator.roundToHundredths(interval[1])};
+    }
+}
+
+/**
+ * This class is an interactor for handle calculating statistics of every key use case.
+ */
+class GroupInteractor implements GroupInputBoundary {
+    private final GroupOutputBoundary outputBoundary;
+
+    public GroupInteractor(GroupOutputBoundary outputBoundary) {
+        this.outputBoundary = outputBoundary;
+    }
+
+    /**
+     * Calculates the sample size, mean, standard deviation and median of every value column for each key
+     * of given input, which has a key followed by integers on each row, and returns the result
+     * by encapsulating in GroupViewModel through GroupOutputBoundary.
+     *
+     * @param input user's input
+     * @return a GroupViewModel object
+     */
+    @Override
+    public GroupViewModel calculateGroups(String input) {
+        return calculateGroups(new Dataset(input).parseKeyed());
+    }
+
+    /**
+     * Calculates the statistics of every key of given columns, grouping them in parallel when they are large.
+     *
+     * @param columns keyed columns
+     * @return a GroupViewModel object
+     */
+    @Override
+    public GroupViewModel calculateGroups(KeyedColumns columns) {
+        GroupBy groups = GroupBy.of(columns);
+        return this.outputBoundary.promptGroups(groups.getColumnNames(), groups.getKeys(), groups.getCounts(),
+                roundAll(groups.getMeans()), roundAll(groups.getSDs()), groups.getMedians());
+    }
+
+    private static double[][] roundAll(double[][] columns) {
+        double[][] rounded = new double[columns.length][];
+        for (int c = 0; c < columns.length; c++) {
+            rounded[c] = new double[columns[c].length];
+            for (int key = 0; key < columns[c].length; key++) {
+                rounded[c][key] = StatisticsAccumulator.roundToHundredths(columns[c][key]);
+            }
+        }
+        return rounded;
+    }
+}
+
+/**
+ * This class keeps the results of MeanInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingMeanInputBoundary implements MeanInputBoundary {
+    private final MeanInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingMeanInputBoundary(MeanInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public MeanViewModel calculateMean(String input) {
+        return this.resultCache.get("mean", input, () -> this.inputBoundary.calculateMean(input));
+    }
+
+    @Override
+    public MeanViewModel calculateMean(DatasetSource source) {
+        return this.inputBoundary.calculateMean(source);
+    }
+}
+
+/**
+ * This class keeps the results of SDInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingSDInputBoundary implements SDInputBoundary {
+    private final SDInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingSDInputBoundary(SDInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public SDViewModel calculateSD(String input) {
+        return this.resultCache.get("sd", input, () -> this.inputBoundary.calculateSD(input));
+    }
+
+    @Override
+    public SDViewModel calculateSD(DatasetSource source) {
+        return this.inputBoundary.calculateSD(source);
+    }
+}
+
+/**
+ * This class keeps the results of MedianInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingMedianInputBoundary implements MedianInputBoundary {
+    private final MedianInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingMedianInputBoundary(MedianInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public MedianViewModel calculateMedian(String input) {
+        return this.resultCache.get("median", input, () -> this.inputBoundary.calculateMedian(input));
+    }
+
+    @Override
+    public MedianViewModel calculateMedian(DatasetSource source) {
+        return this.inputBoundary.calculateMedian(source);
+    }
+}
+
+/**
+ * This class keeps the results of SampleSizeInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingSampleSizeInputBoundary implements SampleSizeInputBoundary {
+    private final SampleSizeInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingSampleSizeInputBoundary(SampleSizeInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public SampleSizeViewModel calculateSampleSize(String input) {
+        return this.resultCache.get("sampleSize", input, () -> this.inputBoundary.calculateSampleSize(input));
+    }
+
+    @Override
+    public SampleSizeViewModel calculateSampleSize(DatasetSource source) {
+        return this.inputBoundary.calculateSampleSize(source);
+    }
+}
+
+/**
+ * This class keeps the results of QuantileInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingQuantileInputBoundary implements QuantileInputBoundary {
+    private final QuantileInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingQuantileInputBoundary(QuantileInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public QuantileViewModel calculateQuantiles(String input, double[] probabilities) {
+        return this.resultCache.get("quantiles" + Arrays.toString(probabilities), input,
+                () -> this.inputBoundary.calculateQuantiles(input, probabilities));
+    }
+
+    @Override
+    public QuantileViewModel calculateQuantiles(DatasetSource source, double[] probabilities) {
+        return this.inputBoundary.calculateQuantiles(source, probabilities);
+    }
+}
+
+/**
+ * This class keeps the results of WindowInputBoundary in a ResultCache.
+ * Time windows, whose timestamps are not typed in, are passed on without caching.
+ */
+class CachingWindowInputBoundary implements WindowInputBoundary {
+    private final WindowInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingWindowInputBoundary(WindowInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public WindowViewModel calculateWindow(String input, int windowSize) {
+        return this.resultCache.get("window" + windowSize, input,
+                () -> this.inputBoundary.calculateWindow(input, windowSize));
+    }
+
+    @Override
+    public WindowViewModel calculateWindow(String input, long[] timestampsMillis, long durationMillis) {
+        return this.inputBoundary.calculateWindow(input, timestampsMillis, durationMillis);
+    }
+}
+
+/**
+ * This class keeps the results of SummaryInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingSummaryInputBoundary implements SummaryInputBoundary {
+    private final SummaryInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingSummaryInputBoundary(SummaryInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public SummaryViewModel calculateSummary(String input) {
+        return this.resultCache.get("summary", input, () -> this.inputBoundary.calculateSummary(input));
+    }
+
+    @Override
+    public SummaryViewModel calculateSummary(DatasetSource source) {
+        return this.inputBoundary.calculateSummary(source);
+    }
+}
+
+/**
+ * This class keeps the results of FrequencyInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingFrequencyInputBoundary implements FrequencyInputBoundary {
+    private final FrequencyInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingFrequencyInputBoundary(FrequencyInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public FrequencyViewModel calculateFrequency(String input) {
+        return this.resultCache.get("frequency", input, () -> this.inputBoundary.calculateFrequency(input));
+    }
+
+    @Override
+    public FrequencyViewModel calculateFrequency(DatasetSource source) {
+        return this.inputBoundary.calculateFrequency(source);
+    }
+}
+
+/**
+ * This class keeps the results of RangeInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingRangeInputBoundary implements RangeInputBoundary {
+    private final RangeInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingRangeInputBoundary(RangeInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public RangeViewModel calculateRange(String input, int from, int to) {
+        return this.resultCache.get("range" + from + "," + to, input,
+                () -> this.inputBoundary.calculateRange(input, from, to));
+    }
+
+    @Override
+    public RangeViewModel calculateRange(DatasetSource source, int from, int to) {
+        return this.inputBoundary.calculateRange(source, from, to);
+    }
+}
+
+/**
+ * This class keeps the results of BootstrapInputBoundary in a ResultCache.
+ * Datasets which are not typed in are passed on without caching.
+ */
+class CachingBootstrapInputBoundary implements BootstrapInputBoundary {
+    private final BootstrapInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingBootstrapInputBoundary(BootstrapInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public BootstrapViewModel calculateBootstrap(String input, int resamples, double confidence) {
+        return this.resultCache.get("bootstrap" + resamples + "," + confidence, input,
+                () -> this.inputBoundary.calculateBootstrap(input, resamples, confidence));
+    }
+
+    @Override
+    public BootstrapViewModel calculateBootstrap(DatasetSource source, int resamples, double confidence) {
+        return this.inputBoundary.calculateBootstrap(source, resamples, confidence);
+    }
+}
+
+/**
+ * This class keeps the results of GroupInputBoundary in a ResultCache.
+ * Columns which are not typed in are passed on without caching.
+ */
+class CachingGroupInputBoundary implements GroupInputBoundary {
+    private final GroupInputBoundary inputBoundary;
+    private final ResultCache resultCache;
+
+    public CachingGroupInputBoundary(GroupInputBoundary inputBoundary, ResultCache resultCache) {
+        this.inputBoundary = inputBoundary;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public GroupViewModel calculateGroups(String input) {
+        return this.resultCache.get("group", input, () -> this.inputBoundary.calculateGroups(input));
+    }
+
+    @Override
+    public GroupViewModel calculateGroups(KeyedColumns columns) {
+        return this.inputBoundary.calculateGroups(columns);
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of MeanInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedMeanInputBoundary implements MeanInputBoundary {
+    private final MeanInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedMeanInputBoundary(MeanInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public MeanViewModel calculateMean(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateMean(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public MeanViewModel calculateMean(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            MeanViewModel result = this.inputBoundary.calculateMean(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of SDInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedSDInputBoundary implements SDInputBoundary {
+    private final SDInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSDInputBoundary(SDInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SDViewModel calculateSD(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateSD(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public SDViewModel calculateSD(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            SDViewModel result = this.inputBoundary.calculateSD(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of MedianInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedMedianInputBoundary implements MedianInputBoundary {
+    private final MedianInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedMedianInputBoundary(MedianInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public MedianViewModel calculateMedian(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateMedian(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public MedianViewModel calculateMedian(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            MedianViewModel result = this.inputBoundary.calculateMedian(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of SampleSizeInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedSampleSizeInputBoundary implements SampleSizeInputBoundary {
+    private final SampleSizeInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSampleSizeInputBoundary(SampleSizeInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SampleSizeViewModel calculateSampleSize(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateSampleSize(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public SampleSizeViewModel calculateSampleSize(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            SampleSizeViewModel result = this.inputBoundary.calculateSampleSize(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of QuantileInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedQuantileInputBoundary implements QuantileInputBoundary {
+    private final QuantileInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedQuantileInputBoundary(QuantileInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public QuantileViewModel calculateQuantiles(String input, double[] probabilities) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateQuantiles(input, probabilities);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public QuantileViewModel calculateQuantiles(DatasetSource source, double[] probabilities) {
+        long start = System.nanoTime();
+        try {
+            QuantileViewModel result = this.inputBoundary.calculateQuantiles(source, probabilities);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of WindowInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedWindowInputBoundary implements WindowInputBoundary {
+    private final WindowInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedWindowInputBoundary(WindowInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public WindowViewModel calculateWindow(String input, int windowSize) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateWindow(input, windowSize);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public WindowViewModel calculateWindow(String input, long[] timestampsMillis, long durationMillis) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateWindow(input, timestampsMillis, durationMillis);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of SummaryInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedSummaryInputBoundary implements SummaryInputBoundary {
+    private final SummaryInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSummaryInputBoundary(SummaryInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SummaryViewModel calculateSummary(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateSummary(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public SummaryViewModel calculateSummary(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            SummaryViewModel result = this.inputBoundary.calculateSummary(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of FrequencyInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedFrequencyInputBoundary implements FrequencyInputBoundary {
+    private final FrequencyInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedFrequencyInputBoundary(FrequencyInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public FrequencyViewModel calculateFrequency(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateFrequency(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public FrequencyViewModel calculateFrequency(DatasetSource source) {
+        long start = System.nanoTime();
+        try {
+            FrequencyViewModel result = this.inputBoundary.calculateFrequency(source);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of RangeInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedRangeInputBoundary implements RangeInputBoundary {
+    private final RangeInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedRangeInputBoundary(RangeInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public RangeViewModel calculateRange(String input, int from, int to) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateRange(input, from, to);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public RangeViewModel calculateRange(DatasetSource source, int from, int to) {
+        long start = System.nanoTime();
+        try {
+            RangeViewModel result = this.inputBoundary.calculateRange(source, from, to);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of BootstrapInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedBootstrapInputBoundary implements BootstrapInputBoundary {
+    private final BootstrapInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedBootstrapInputBoundary(BootstrapInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public BootstrapViewModel calculateBootstrap(String input, int resamples, double confidence) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateBootstrap(input, resamples, confidence);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public BootstrapViewModel calculateBootstrap(DatasetSource source, int resamples, double confidence) {
+        long start = System.nanoTime();
+        try {
+            BootstrapViewModel result = this.inputBoundary.calculateBootstrap(source, resamples, confidence);
+            this.metrics.recordSize(source.size());
+            return result;
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency, errors and dataset sizes of GroupInputBoundary calls in OperationMetrics.
+ * Recording only updates counters, so a timed call allocates nothing more than the call itself.
+ */
+class TimedGroupInputBoundary implements GroupInputBoundary {
+    private final GroupInputBoundary inputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedGroupInputBoundary(GroupInputBoundary inputBoundary, OperationMetrics metrics) {
+        this.inputBoundary = inputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GroupViewModel calculateGroups(String input) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateGroups(input);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+
+    @Override
+    public GroupViewModel calculateGroups(KeyedColumns columns) {
+        long start = System.nanoTime();
+        try {
+            return this.inputBoundary.calculateGroups(columns);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of MeanOutputBoundary calls in OperationMetrics.
+ */
+class TimedMeanOutputBoundary implements MeanOutputBoundary {
+    private final MeanOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedMeanOutputBoundary(MeanOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public MeanViewModel promptMean(double mean) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptMean(mean);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of SDOutputBoundary calls in OperationMetrics.
+ */
+class TimedSDOutputBoundary implements SDOutputBoundary {
+    private final SDOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSDOutputBoundary(SDOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SDViewModel promptSD(double sd) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptSD(sd);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of MedianOutputBoundary calls in OperationMetrics.
+ */
+class TimedMedianOutputBoundary implements MedianOutputBoundary {
+    private final MedianOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedMedianOutputBoundary(MedianOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public MedianViewModel promptMedian(double median) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptMedian(median);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of SampleSizeOutputBoundary calls in OperationMetrics.
+ */
+class TimedSampleSizeOutputBoundary implements SampleSizeOutputBoundary {
+    private final SampleSizeOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSampleSizeOutputBoundary(SampleSizeOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SampleSizeViewModel promptSampleSize(int size) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptSampleSize(size);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of QuantileOutputBoundary calls in OperationMetrics.
+ */
+class TimedQuantileOutputBoundary implements QuantileOutputBoundary {
+    private final QuantileOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedQuantileOutputBoundary(QuantileOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public QuantileViewModel promptQuantiles(double[] probabilities, double[] quantiles) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptQuantiles(probabilities, quantiles);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of WindowOutputBoundary calls in OperationMetrics.
+ */
+class TimedWindowOutputBoundary implements WindowOutputBoundary {
+    private final WindowOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedWindowOutputBoundary(WindowOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public WindowViewModel promptWindow(double[] means, double[] sds, double[] medians) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptWindow(means, sds, medians);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of SummaryOutputBoundary calls in OperationMetrics.
+ */
+class TimedSummaryOutputBoundary implements SummaryOutputBoundary {
+    private final SummaryOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedSummaryOutputBoundary(SummaryOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SummaryViewModel promptSummary(long count, double mean, double sd, double median, double min, double max,
+                                          double[] probabilities, double[] quantiles) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptSummary(count, mean, sd, median, min, max, probabilities, quantiles);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of FrequencyOutputBoundary calls in OperationMetrics.
+ */
+class TimedFrequencyOutputBoundary implements FrequencyOutputBoundary {
+    private final FrequencyOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedFrequencyOutputBoundary(FrequencyOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public FrequencyViewModel promptFrequency(long count, int distinctCount, int[] modes, int modeCount,
+                                              long[] binStarts, long[] binEnds, long[] binCounts) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptFrequency(count, distinctCount, modes, modeCount, binStarts, binEnds, binCounts);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of RangeOutputBoundary calls in OperationMetrics.
+ */
+class TimedRangeOutputBoundary implements RangeOutputBoundary {
+    private final RangeOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedRangeOutputBoundary(RangeOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public RangeViewModel promptRange(long count, double mean, double sd, double median, double min, double max) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptRange(count, mean, sd, median, min, max);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of BootstrapOutputBoundary calls in OperationMetrics.
+ */
+class TimedBootstrapOutputBoundary implements BootstrapOutputBoundary {
+    private final BootstrapOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedBootstrapOutputBoundary(BootstrapOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public BootstrapViewModel promptBootstrap(int resamples, double confidence, double mean, double[] meanInterval,
+                                              double sd, double[] sdInterval, double median, double[] medianInterval) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptBootstrap(resamples, confidence, mean, meanInterval, sd, sdInterval, median, medianInterval);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This class records the latency and errors of GroupOutputBoundary calls in OperationMetrics.
+ */
+class TimedGroupOutputBoundary implements GroupOutputBoundary {
+    private final GroupOutputBoundary outputBoundary;
+    private final OperationMetrics metrics;
+
+    public TimedGroupOutputBoundary(GroupOutputBoundary outputBoundary, OperationMetrics metrics) {
+        this.outputBoundary = outputBoundary;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public GroupViewModel promptGroups(String[] columnNames, String[] keys, int[] counts, double[][] means,
+                                       double[][] sds, double[][] medians) {
+        long start = System.nanoTime();
+        try {
+            return this.outputBoundary.promptGroups(columnNames, keys, counts, means, sds, medians);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        } finally {
+            this.metrics.recordLatency(start);
+        }
+    }
+}
+
+/**
+ * This interface is an abstraction layer between MeanInteractor and MeanPresenter.
+ */
+interface MeanOutputBoundary {
+    MeanViewModel promptMean(double mean);
+}
 
 /**
  * This interface is an abstraction layer between SDInteractor and SDPresenter.
@@ -319,6 +8564,59 @@ interface SampleSizeOutputBoundary {
     SampleSizeViewModel promptSampleSize(int size);
 }
 
+/**
+ * This interface is an abstraction layer between QuantileInteractor and QuantilePresenter.
+ */
+interface QuantileOutputBoundary {
+    QuantileViewModel promptQuantiles(double[] probabilities, double[] quantiles);
+}
+
+/**
+ * This interface is an abstraction layer between WindowInteractor and WindowPresenter.
+ */
+interface WindowOutputBoundary {
+    WindowViewModel promptWindow(double[] means, double[] sds, double[] medians);
+}
+
+/**
+ * This interface is an abstraction layer between SummaryInteractor and SummaryPresenter.
+ */
+interface SummaryOutputBoundary {
+    SummaryViewModel promptSummary(long count, double mean, double sd, double median, double min, double max,
+                                   double[] probabilities, double[] quantiles);
+}
+
+/**
+ * This interface is an abstraction layer between FrequencyInteractor and FrequencyPresenter.
+ */
+interface FrequencyOutputBoundary {
+    FrequencyViewModel promptFrequency(long count, int distinctCount, int[] modes, int modeCount,
+                                       long[] binStarts, long[] binEnds, long[] binCounts);
+}
+
+/**
+ * This interface is an abstraction layer between RangeInteractor and RangePresenter.
+ */
+interface RangeOutputBoundary {
+    RangeViewModel promptRange(long count, double mean, double sd, double median, double min, double max);
+}
+
+/**
+ * This interface is an abstraction layer between BootstrapInteractor and BootstrapPresenter.
+ */
+interface BootstrapOutputBoundary {
+    BootstrapViewModel promptBootstrap(int resamples, double confidence, double mean, double[] meanInterval,
+                                       double sd, double[] sdInterval, double median, double[] medianInterval);
+}
+
+/**
+ * This interface is an abstraction layer between GroupInteractor and GroupPresenter.
+ */
+interface GroupOutputBoundary {
+    GroupViewModel promptGroups(String[] columnNames, String[] keys, int[] counts,
+                                double[][] means, double[][] sds, double[][] medians);
+}
+
 /**
  * This class is a presenter which creates and returns MeanViewModel object
  * whose value is from MeanInteractor
@@ -339,87 +8637,482 @@ class SDPresenter implements SDOutputBoundary {
     public SDViewModel promptSD(double sd) {
         return new SDViewModel(sd);
     }
-}
+}
+
+/**
+ * This class is a presenter which creates and returns MedianViewModel object
+ * whose value is from MedianInteractor
+ */
+class MedianPresenter implements MedianOutputBoundary {
+    @Override
+    public MedianViewModel promptMedian(double median) {
+        return new MedianViewModel(median);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns SampleSizeViewModel object
+ * whose value is from SampleSizeInteractor
+ */
+class SampleSizePresenter implements SampleSizeOutputBoundary {
+    @Override
+    public SampleSizeViewModel promptSampleSize(int size) {
+        return new SampleSizeViewModel(size);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns QuantileViewModel object
+ * whose values are from QuantileInteractor
+ */
+class QuantilePresenter implements QuantileOutputBoundary {
+    @Override
+    public QuantileViewModel promptQuantiles(double[] probabilities, double[] quantiles) {
+        return new QuantileViewModel(probabilities, quantiles);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns WindowViewModel object
+ * whose values are from WindowInteractor
+ */
+class WindowPresenter implements WindowOutputBoundary {
+    @Override
+    public WindowViewModel promptWindow(double[] means, double[] sds, double[] medians) {
+        return new WindowViewModel(means, sds, medians);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns SummaryViewModel object
+ * whose values are from SummaryInteractor
+ */
+class SummaryPresenter implements SummaryOutputBoundary {
+    @Override
+    public SummaryViewModel promptSummary(long count, double mean, double sd, double median, double min, double max,
+                                          double[] probabilities, double[] quantiles) {
+        return new SummaryViewModel(count, mean, sd, median, min, max, probabilities, quantiles);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns FrequencyViewModel object
+ * whose values are from FrequencyInteractor
+ */
+class FrequencyPresenter implements FrequencyOutputBoundary {
+    @Override
+    public FrequencyViewModel promptFrequency(long count, int distinctCount, int[] modes, int modeCount,
+                                              long[] binStarts, long[] binEnds, long[] binCounts) {
+        return new FrequencyViewModel(count, distinctCount, modes, modeCount, binStarts, binEnds, binCounts);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns RangeViewModel object
+ * whose values are from RangeInteractor
+ */
+class RangePresenter implements RangeOutputBoundary {
+    @Override
+    public RangeViewModel promptRange(long count, double mean, double sd, double median, double min, double max) {
+        return new RangeViewModel(count, mean, sd, median, min, max);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns BootstrapViewModel object
+ * whose values are from BootstrapInteractor
+ */
+class BootstrapPresenter implements BootstrapOutputBoundary {
+    @Override
+    public BootstrapViewModel promptBootstrap(int resamples, double confidence, double mean, double[] meanInterval,
+                                              double sd, double[] sdInterval, double median, double[] medianInterval) {
+        return new BootstrapViewModel(resamples, confidence, mean, meanInterval, sd, sdInterval, median, medianInterval);
+    }
+}
+
+/**
+ * This class is a presenter which creates and returns GroupViewModel object
+ * whose values are from GroupInteractor
+ */
+class GroupPresenter implements GroupOutputBoundary {
+    @Override
+    public GroupViewModel promptGroups(String[] columnNames, String[] keys, int[] counts,
+                                       double[][] means, double[][] sds, double[][] medians) {
+        return new GroupViewModel(columnNames, keys, counts, means, sds, medians);
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result value from MeanInteractor.
+ */
+class MeanViewModel {
+    private final double mean;
+
+    public MeanViewModel(double mean) {
+        this.mean = mean;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result value from SDInteractor.
+ */
+class SDViewModel {
+    private final double sd;
+
+    public SDViewModel(double sd) {
+        this.sd = sd;
+    }
+
+    public double getSD() {
+        return this.sd;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result value from MedianInteractor.
+ */
+class MedianViewModel {
+    private final double median;
+
+    public MedianViewModel(double median) {
+        this.median = median;
+    }
+
+    public double getMedian() {
+        return this.median;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result value from SampleSizeInteractor.
+ */
+class SampleSizeViewModel {
+    private final int sampleSize;
+
+    public SampleSizeViewModel(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public int getSampleSize() {
+        return this.sampleSize;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result values from QuantileInteractor.
+ * The i-th quantile belongs to the i-th probability.
+ */
+class QuantileViewModel {
+    private final double[] probabilities;
+    private final double[] quantiles;
+
+    public QuantileViewModel(double[] probabilities, double[] quantiles) {
+        this.probabilities = probabilities;
+        this.quantiles = quantiles;
+    }
+
+    public double[] getProbabilities() {
+        return this.probabilities;
+    }
+
+    public double[] getQuantiles() {
+        return this.quantiles;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result values from WindowInteractor.
+ * The i-th value of each list is the statistic of the window which ends at the i-th input value.
+ */
+class WindowViewModel {
+    private final double[] means;
+    private final double[] sds;
+    private final double[] medians;
+
+    public WindowViewModel(double[] means, double[] sds, double[] medians) {
+        this.means = means;
+        this.sds = sds;
+        this.medians = medians;
+    }
+
+    public double[] getMeans() {
+        return this.means;
+    }
+
+    public double[] getSDs() {
+        return this.sds;
+    }
+
+    public double[] getMedians() {
+        return this.medians;
+    }
+}
+
+/**
+ * This class is a data model to encapsulate the result values from SummaryInteractor.
+ * The i-th quantile belongs to the i-th probability.
+ */
+class SummaryViewModel {
+    private final long count;
+    private final double mean;
+    private final double sd;
+    private final double median;
+    private final double min;
+    private final double max;
+    private final double[] probabilities;
+    private final double[] quantiles;
+
+    public SummaryViewModel(long count, double mean, double sd, double median, double min, double max,
+                            double[] probabilities, double[] quantiles) {
+        this.count = count;
+        this.mean = mean;
+        this.sd = sd;
+        this.median = median;
+        this.min = min;
+        this.max = max;
+        this.probabilities = probabilities;
+        this.quantiles = quantiles;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    public double getSD() {
+        return this.sd;
+    }
+
+    public double getMedian() {
+        return this.median;
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    public double[] getProbabilities() {
+        return this.probabilities;
+    }
 
-/**
- * This class is a presenter which creates and returns MedianViewModel object
- * whose value is from MedianInteractor
- */
-class MedianPresenter implements MedianOutputBoundary {
-    @Override
-    public MedianViewModel promptMedian(double median) {
-        return new MedianViewModel(median);
+    public double[] getQuantiles() {
+        return this.quantiles;
     }
 }
 
 /**
- * This class is a presenter which creates and returns SampleSizeViewModel object
- * whose value is from SampleSizeInteractor
+ * This class is a data model to encapsulate the result values from FrequencyInteractor.
+ * The i-th bin of the histogram holds binCounts[i] values from binStarts[i] to binEnds[i], both included.
  */
-class SampleSizePresenter implements SampleSizeOutputBoundary {
-    @Override
-    public SampleSizeViewModel promptSampleSize(int size) {
-        return new SampleSizeViewModel(size);
+class FrequencyViewModel {
+    private final long count;
+    private final int distinctCount;
+    private final int[] modes;
+    private final int modeCount;
+    private final long[] binStarts;
+    private final long[] binEnds;
+    private final long[] binCounts;
+
+    public FrequencyViewModel(long count, int distinctCount, int[] modes, int modeCount,
+                              long[] binStarts, long[] binEnds, long[] binCounts) {
+        this.count = count;
+        this.distinctCount = distinctCount;
+        this.modes = modes;
+        this.modeCount = modeCount;
+        this.binStarts = binStarts;
+        this.binEnds = binEnds;
+        this.binCounts = binCounts;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public int getDistinctCount() {
+        return this.distinctCount;
+    }
+
+    public int[] getModes() {
+        return this.modes;
+    }
+
+    public int getModeCount() {
+        return this.modeCount;
+    }
+
+    public long[] getBinStarts() {
+        return this.binStarts;
+    }
+
+    public long[] getBinEnds() {
+        return this.binEnds;
+    }
+
+    public long[] getBinCounts() {
+        return this.binCounts;
     }
 }
 
 /**
- * This class is a data model to encapsulate the result value from MeanInteractor.
+ * This class is a data model to encapsulate the result values from RangeInteractor.
  */
-class MeanViewModel {
+class RangeViewModel {
+    private final long count;
     private final double mean;
+    private final double sd;
+    private final double median;
+    private final double min;
+    private final double max;
 
-    public MeanViewModel(double mean) {
+    public RangeViewModel(long count, double mean, double sd, double median, double min, double max) {
+        this.count = count;
         this.mean = mean;
+        this.sd = sd;
+        this.median = median;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return this.count;
     }
 
     public double getMean() {
         return this.mean;
     }
+
+    public double getSD() {
+        return this.sd;
+    }
+
+    public double getMedian() {
+        return this.median;
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
 }
 
 /**
- * This class is a data model to encapsulate the result value from SDInteractor.
+ * This class is a data model to encapsulate the result values from BootstrapInteractor.
+ * Each interval holds the lower and the upper bound.
  */
-class SDViewModel {
+class BootstrapViewModel {
+    private final int resamples;
+    private final double confidence;
+    private final double mean;
+    private final double[] meanInterval;
     private final double sd;
+    private final double[] sdInterval;
+    private final double median;
+    private final double[] medianInterval;
 
-    public SDViewModel(double sd) {
+    public BootstrapViewModel(int resamples, double confidence, double mean, double[] meanInterval,
+                              double sd, double[] sdInterval, double median, double[] medianInterval) {
+        this.resamples = resamples;
+        this.confidence = confidence;
+        this.mean = mean;
+        this.meanInterval = meanInterval;
         this.sd = sd;
+        this.sdInterval = sdInterval;
+        this.median = median;
+        this.medianInterval = medianInterval;
+    }
+
+    public int getResamples() {
+        return this.resamples;
+    }
+
+    public double getConfidence() {
+        return this.confidence;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    public double[] getMeanInterval() {
+        return this.meanInterval;
     }
 
     public double getSD() {
         return this.sd;
     }
-}
-
-/**
- * This class is a data model to encapsulate the result value from MedianInteractor.
- */
-class MedianViewModel {
-    private final double median;
 
-    public MedianViewModel(double median) {
-        this.median = median;
+    public double[] getSDInterval() {
+        return this.sdInterval;
     }
 
     public double getMedian() {
         return this.median;
     }
+
+    public double[] getMedianInterval() {
+        return this.medianInterval;
+    }
 }
 
 /**
- * This class is a data model to encapsulate the result value from SampleSizeInteractor.
+ * This class is a data model to encapsulate the result values from GroupInteractor.
+ * Keys are in order of first appearance, and means, standard deviations and medians
+ * are indexed by value column and then by key.
  */
-class SampleSizeViewModel {
-    private final int sampleSize;
+class GroupViewModel {
+    private final String[] columnNames;
+    private final String[] keys;
+    private final int[] counts;
+    private final double[][] means;
+    private final double[][] sds;
+    private final double[][] medians;
 
-    public SampleSizeViewModel(int sampleSize) {
-        this.sampleSize = sampleSize;
+    public GroupViewModel(String[] columnNames, String[] keys, int[] counts,
+                          double[][] means, double[][] sds, double[][] medians) {
+        this.columnNames = columnNames;
+        this.keys = keys;
+        this.counts = counts;
+        this.means = means;
+        this.sds = sds;
+        this.medians = medians;
     }
 
-    public int getSampleSize() {
-        return this.sampleSize;
+    public String[] getColumnNames() {
+        return this.columnNames;
+    }
+
+    public String[] getKeys() {
+        return this.keys;
+    }
+
+    public int[] getCounts() {
+        return this.counts;
+    }
+
+    public double[][] getMeans() {
+        return this.means;
+    }
+
+    public double[][] getSDs() {
+        return this.sds;
+    }
+
+    public double[][] getMedians() {
+        return this.medians;
     }
 }
 
@@ -428,53 +9121,612 @@ class SampleSizeViewModel {
  * It encapsulates the creation of controllers and their associated interactors and presenters.
  */
 class ControllerFactory {
+    private final DatasetCache datasetCache = new DatasetCache();
+    private final CalculationExecutor executor = new CalculationExecutor();
+    private final ResultCache resultCache;
+
+    public ControllerFactory() {
+        this(new ResultCache());
+    }
+
+    public ControllerFactory(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the cache which every controller created by this factory shares, for its hit and miss counts.
+     * @return result cache
+     */
+    public ResultCache getResultCache() {
+        return this.resultCache;
+    }
 
     public MeanController createMeanController() {
         MeanOutputBoundary meanPresenter = new MeanPresenter();
-        MeanInputBoundary meanInteractor = new MeanInteractor(meanPresenter);
-        return new MeanController(meanInteractor);
+        if (Metrics.ENABLED) {
+            meanPresenter = new TimedMeanOutputBoundary(meanPresenter, Metrics.operation("mean.present"));
+        }
+        MeanInputBoundary meanInteractor = new MeanInteractor(meanPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            meanInteractor = new TimedMeanInputBoundary(meanInteractor, Metrics.operation("mean"));
+        }
+        return new MeanController(new CachingMeanInputBoundary(meanInteractor, resultCache), executor);
     }
 
     public SDController createSDController() {
         SDOutputBoundary sdPresenter = new SDPresenter();
-        SDInputBoundary sdInteractor = new SDInteractor(sdPresenter);
-        return new SDController(sdInteractor);
+        if (Metrics.ENABLED) {
+            sdPresenter = new TimedSDOutputBoundary(sdPresenter, Metrics.operation("sd.present"));
+        }
+        SDInputBoundary sdInteractor = new SDInteractor(sdPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            sdInteractor = new TimedSDInputBoundary(sdInteractor, Metrics.operation("sd"));
+        }
+        return new SDController(new CachingSDInputBoundary(sdInteractor, resultCache), executor);
     }
 
     public MedianController createMedianController() {
         MedianOutputBoundary medianPresenter = new MedianPresenter();
-        MedianInputBoundary medianInteractor = new MedianInteractor(medianPresenter);
-        return new MedianController(medianInteractor);
+        if (Metrics.ENABLED) {
+            medianPresenter = new TimedMedianOutputBoundary(medianPresenter, Metrics.operation("median.present"));
+        }
+        MedianInputBoundary medianInteractor = new MedianInteractor(medianPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            medianInteractor = new TimedMedianInputBoundary(medianInteractor, Metrics.operation("median"));
+        }
+        return new MedianController(new CachingMedianInputBoundary(medianInteractor, resultCache), executor);
     }
 
     public SampleSizeController createSampleSizeController() {
         SampleSizeOutputBoundary sampleSizePresenter = new SampleSizePresenter();
-        SampleSizeInputBoundary sampleSizeInteractor = new SampleSizeInteractor(sampleSizePresenter);
-        return new SampleSizeController(sampleSizeInteractor);
+        if (Metrics.ENABLED) {
+            sampleSizePresenter = new TimedSampleSizeOutputBoundary(sampleSizePresenter, Metrics.operation("sampleSize.present"));
+        }
+        SampleSizeInputBoundary sampleSizeInteractor = new SampleSizeInteractor(sampleSizePresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            sampleSizeInteractor = new TimedSampleSizeInputBoundary(sampleSizeInteractor, Metrics.operation("sampleSize"));
+        }
+        return new SampleSizeController(new CachingSampleSizeInputBoundary(sampleSizeInteractor, resultCache), executor);
+    }
+
+    public QuantileController createQuantileController() {
+        QuantileOutputBoundary quantilePresenter = new QuantilePresenter();
+        if (Metrics.ENABLED) {
+            quantilePresenter = new TimedQuantileOutputBoundary(quantilePresenter, Metrics.operation("quantile.present"));
+        }
+        QuantileInputBoundary quantileInteractor = new QuantileInteractor(quantilePresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            quantileInteractor = new TimedQuantileInputBoundary(quantileInteractor, Metrics.operation("quantile"));
+        }
+        return new QuantileController(new CachingQuantileInputBoundary(quantileInteractor, resultCache), executor);
+    }
+
+    public SummaryController createSummaryController() {
+        SummaryOutputBoundary summaryPresenter = new SummaryPresenter();
+        if (Metrics.ENABLED) {
+            summaryPresenter = new TimedSummaryOutputBoundary(summaryPresenter, Metrics.operation("summary.present"));
+        }
+        SummaryInputBoundary summaryInteractor = new SummaryInteractor(summaryPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            summaryInteractor = new TimedSummaryInputBoundary(summaryInteractor, Metrics.operation("summary"));
+        }
+        return new SummaryController(new CachingSummaryInputBoundary(summaryInteractor, resultCache), executor);
+    }
+
+    public FrequencyController createFrequencyController() {
+        FrequencyOutputBoundary frequencyPresenter = new FrequencyPresenter();
+        if (Metrics.ENABLED) {
+            frequencyPresenter = new TimedFrequencyOutputBoundary(frequencyPresenter, Metrics.operation("frequency.present"));
+        }
+        FrequencyInputBoundary frequencyInteractor = new FrequencyInteractor(frequencyPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            frequencyInteractor = new TimedFrequencyInputBoundary(frequencyInteractor, Metrics.operation("frequency"));
+        }
+        return new FrequencyController(new CachingFrequencyInputBoundary(frequencyInteractor, resultCache), executor);
+    }
+
+    public RangeController createRangeController() {
+        RangeOutputBoundary rangePresenter = new RangePresenter();
+        if (Metrics.ENABLED) {
+            rangePresenter = new TimedRangeOutputBoundary(rangePresenter, Metrics.operation("range.present"));
+        }
+        RangeInputBoundary rangeInteractor = new RangeInteractor(rangePresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            rangeInteractor = new TimedRangeInputBoundary(rangeInteractor, Metrics.operation("range"));
+        }
+        return new RangeController(new CachingRangeInputBoundary(rangeInteractor, resultCache), executor);
+    }
+
+    public BootstrapController createBootstrapController() {
+        BootstrapOutputBoundary bootstrapPresenter = new BootstrapPresenter();
+        if (Metrics.ENABLED) {
+            bootstrapPresenter = new TimedBootstrapOutputBoundary(bootstrapPresenter, Metrics.operation("bootstrap.present"));
+        }
+        BootstrapInputBoundary bootstrapInteractor = new BootstrapInteractor(bootstrapPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            bootstrapInteractor = new TimedBootstrapInputBoundary(bootstrapInteractor, Metrics.operation("bootstrap"));
+        }
+        return new BootstrapController(new CachingBootstrapInputBoundary(bootstrapInteractor, resultCache), executor);
+    }
+
+    public GroupController createGroupController() {
+        GroupOutputBoundary groupPresenter = new GroupPresenter();
+        if (Metrics.ENABLED) {
+            groupPresenter = new TimedGroupOutputBoundary(groupPresenter, Metrics.operation("group.present"));
+        }
+        GroupInputBoundary groupInteractor = new GroupInteractor(groupPresenter);
+        if (Metrics.ENABLED) {
+            groupInteractor = new TimedGroupInputBoundary(groupInteractor, Metrics.operation("group"));
+        }
+        return new GroupController(new CachingGroupInputBoundary(groupInteractor, resultCache), executor);
+    }
+
+    public WindowController createWindowController() {
+        WindowOutputBoundary windowPresenter = new WindowPresenter();
+        if (Metrics.ENABLED) {
+            windowPresenter = new TimedWindowOutputBoundary(windowPresenter, Metrics.operation("window.present"));
+        }
+        WindowInputBoundary windowInteractor = new WindowInteractor(windowPresenter, datasetCache);
+        if (Metrics.ENABLED) {
+            windowInteractor = new TimedWindowInputBoundary(windowInteractor, Metrics.operation("window"));
+        }
+        return new WindowController(new CachingWindowInputBoundary(windowInteractor, resultCache), executor);
+    }
+
+}
+
+/**
+ * This class runs the calculator from the command line, for shell pipelines and machines without a display.
+ * Each argument is a file, a glob such as data/*.csv or data/**.csv, or - for standard input.
+ * Every dataset is summarized through SummaryController, in parallel across files,
+ * and one line per dataset is written in argument order as CSV or JSON lines.
+ * Datasets which cannot be read are reported on the error stream and make the exit status 1.
+ */
+class CommandLineRunner {
+    static final String USAGE = "Usage: StatisticalCalculator [--gui] | --serve [PORT]"
+            + " | [--format csv|json] [--threads N] [--approximate | --off-heap] (FILE | GLOB | -)...";
+
+    private final SummaryController summaryController;
+
+    public CommandLineRunner(SummaryController summaryController) {
+        this.summaryController = summaryController;
+    }
+
+    /**
+     * Summarizes every dataset named by the arguments.
+     * @param args options followed by files, globs or -
+     * @param stdin stream which - reads
+     * @param out stream which receives the results
+     * @param err stream which receives errors
+     * @return exit status: 0 on success, 1 if a dataset failed, 2 on invalid arguments
+     */
+    public int run(String[] args, InputStream stdin, PrintStream out, PrintStream err) {
+        boolean json = false;
+        boolean approximate = false;
+        boolean offHeap = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> sources = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--format") || arg.startsWith("--format=")) {
+                    String format = arg.equals("--format") ? args[++i] : arg.substring("--format=".length());
+                    if (!format.equals("csv") && !format.equals("json")) {
+                        throw new IllegalArgumentException("Unknown format: " + format);
+                    }
+                    json = format.equals("json");
+                } else if (arg.equals("--threads") || arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.equals("--threads") ? args[++i] : arg.substring("--threads=".length()));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("Threads must be positive");
+                    }
+                } else if (arg.equals("--approximate")) {
+                    approximate = true;
+                } else if (arg.equals("--off-heap")) {
+                    offHeap = true;
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    sources.add(arg);
+                }
+            }
+            if (sources.isEmpty()) {
+                throw new IllegalArgumentException("No input given");
+            }
+            if (approximate && offHeap) {
+                throw new IllegalArgumentException("--approximate and --off-heap cannot be combined");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        List<String> names = new ArrayList<>();
+        int status = 0;
+        for (String source : sources) {
+            try {
+                names.addAll(expand(source));
+            } catch (IOException | UncheckedIOException e) {
+                err.println(source + ": " + e.getMessage());
+                status = 1;
+            }
+        }
+
+        if (!json) {
+            out.print("source,count,mean,sd,median,min,max");
+            for (double probability : SummaryInteractor.PROBABILITIES) {
+                out.print(",p" + formatPercent(probability));
+            }
+            out.print('\n');
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // a bounded number of datasets is in flight so results can be written in order as they finish
+            Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+            for (String name : names) {
+                boolean lineJson = json;
+                boolean lineApproximate = approximate;
+                boolean lineOffHeap = offHeap;
+                pending.add(CompletableFuture.supplyAsync(
+                        () -> summarize(name, stdin, lineJson, lineApproximate, lineOffHeap), pool));
+                if (pending.size() >= threads * 4) {
+                    status |= write(pending.poll(), out, err);
+                }
+            }
+            while (!pending.isEmpty()) {
+                status |= write(pending.poll(), out, err);
+            }
+        } finally {
+            pool.shutdown();
+            out.flush();
+        }
+        if (Metrics.ENABLED) {
+            err.print(Metrics.dump());
+        }
+        return status;
+    }
+
+    /**
+     * A private helper function to write one finished line, or its error.
+     * @return 0 if the dataset was summarized, 1 otherwise
+     */
+    private static int write(CompletableFuture<String> line, PrintStream out, PrintStream err) {
+        try {
+            out.print(line.join());
+            return 0;
+        } catch (java.util.concurrent.CompletionException e) {
+            err.println(e.getCause().getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * A private helper function to summarize one dataset into one output line.
+     * Exact mode parses every value so the median and quantiles match the window,
+     * approximate mode streams the values through a quantile sketch in constant memory
+     * and off-heap mode keeps every value in direct memory, which is freed as soon as the line is formatted.
+     * Exact and approximate modes read 64-bit integers and floating-point numbers as the window does,
+     * while off-heap mode stores 32-bit integers only.
+     */
+    private String summarize(String name, InputStream stdin, boolean json, boolean approximate, boolean offHeap) {
+        try (ReadableByteChannel channel = name.equals("-") ? Channels.newChannel(stdin) : FileChannel.open(Paths.get(name))) {
+            if (offHeap) {
+                try (OffHeapDataset source = OffHeapDataset.of(channel)) {
+                    return summarize(name, source, json);
+                }
+            }
+            if (approximate) {
+                return summarize(name, StreamingDataset.of(channel), json);
+            }
+            return summarize(name, new StreamingNumberParser(channel).readNumbers(), json);
+        } catch (java.nio.file.NoSuchFileException e) {
+            throw new UncheckedIOException(name + ": no such file", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(name + ": " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException(name + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (NumberTypeException e) {
+            // only off-heap mode stops at a value which is wider than int
+            throw new IllegalArgumentException(name + ": " + e.getMessage() + " (--off-heap holds 32-bit integers only)", e);
+        } catch (DatasetFormatException e) {
+            throw new IllegalArgumentException(name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String summarize(String name, DatasetSource source, boolean json) {
+        if (source.size() == 0) {
+            throw new IllegalArgumentException(name + ": no values");
+        }
+        return format(name, this.summaryController.calculateSummary(source), json);
+    }
+
+    /**
+     * Expands a glob into the matching files in sorted order. Other arguments are returned unchanged.
+     * @param source file, glob or -
+     * @return names of the datasets
+     */
+    static List<String> expand(String source) throws IOException {
+        int glob = indexOfGlob(source);
+        if (glob < 0) {
+            return List.of(source);
+        }
+        int separator = source.lastIndexOf('/', glob);
+        Path base = Paths.get(separator < 0 ? "" : source.substring(0, separator + 1));
+        String pattern = source.substring(separator + 1);
+        int depth = pattern.contains("**") ? Integer.MAX_VALUE : pattern.split("/").length;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + source);
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(base, depth)) {
+            paths.filter(path -> matcher.matches(path) && Files.isRegularFile(path))
+                    .map(Path::toString)
+                    .sorted()
+                    .forEach(names::add);
+        }
+        if (names.isEmpty()) {
+            throw new IOException("no files match");
+        }
+        return names;
+    }
+
+    private static int indexOfGlob(String source) {
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Formats one summary as a CSV row or a JSON object, ending in a line break.
+     */
+    static String format(String name, SummaryViewModel summary, boolean json) {
+        StringBuilder line = new StringBuilder(128);
+        if (json) {
+            line.append("{\"source\":");
+            appendJsonString(line, name);
+            line.append(",\"count\":").append(summary.getCount());
+            appendJsonField(line, "mean", summary.getMean());
+            appendJsonField(line, "sd", summary.getSD());
+            appendJsonField(line, "median", summary.getMedian());
+            appendJsonField(line, "min", summary.getMin());
+            appendJsonField(line, "max", summary.getMax());
+            for (int i = 0; i < summary.getQuantiles().length; i++) {
+                appendJsonField(line, "p" + formatPercent(summary.getProbabilities()[i]), summary.getQuantiles()[i]);
+            }
+            line.append('}');
+        } else {
+            if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0) {
+                line.append('"').append(name.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(name);
+            }
+            line.append(',').append(summary.getCount())
+                    .append(',').append(summary.getMean())
+                    .append(',').append(summary.getSD())
+                    .append(',').append(summary.getMedian())
+                    .append(',').append(summary.getMin())
+                    .append(',').append(summary.getMax());
+            for (double quantile : summary.getQuantiles()) {
+                line.append(',').append(quantile);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    static void appendJsonField(StringBuilder line, String key, double value) {
+        line.append(",\"").append(key).append("\":");
+        if (Double.isFinite(value)) {
+            line.append(value);
+        } else {
+            line.append("null");
+        }
+    }
+
+    static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < ' ') {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static String formatPercent(double probability) {
+        double percent = probability * 100;
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+    }
+}
+
+/**
+ * This class serves the mean, standard deviation, median and sample size use cases over HTTP.
+ * Every endpoint takes a POST body with one dataset per line, comma separated integers as typed in the window,
+ * and answers with one JSON line per dataset in the same order:
+ * POST /mean, /sd, /median, /sampleSize, or /statistics for all four.
+ * GET /metrics answers with Metrics.dump().
+ * A dataset which cannot be calculated gets an error line and the rest of the batch still runs.
+ * Lines are calculated and written while the body is still being read, and the response is chunked,
+ * so a batch of any size is answered in constant memory.
+ * Requests are handled on virtual threads when the JDK has them, see CalculationExecutor.
+ */
+class StatisticsHttpServer {
+    static final int DEFAULT_PORT = 8080;
+
+    private final MeanController meanController;
+    private final SDController sdController;
+    private final MedianController medianController;
+    private final SampleSizeController sampleSizeController;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StatisticsHttpServer(ControllerFactory controllerFactory) {
+        this.meanController = controllerFactory.createMeanController();
+        this.sdController = controllerFactory.createSDController();
+        this.medianController = controllerFactory.createMedianController();
+        this.sampleSizeController = controllerFactory.createSampleSizeController();
+    }
+
+    /**
+     * Starts listening.
+     * Headers and body are written separately, which without TCP_NODELAY stalls every small response
+     * on the client's delayed acknowledgement. The JDK server only sets TCP_NODELAY when the JVM-wide
+     * property sun.net.httpserver.nodelay is true when its first server is created, so it is not set
+     * here: main sets it for --serve, and other launchers pass -Dsun.net.httpserver.nodelay=true.
+     * @param port port to listen on, or 0 for any free port
+     * @return the port listened on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized int start(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/mean", exchange -> handle(exchange, input -> {
+            StringBuilder fields = new StringBuilder();
+            CommandLineRunner.appendJsonField(fields, "mean", this.meanController.calculateMean(input).getMean());
+            return fields;
+        }));
+        this.server.createContext("/sd", exchange -> handle(exchange, input -> {
+            StringBuilder fields = new StringBuilder();
+            CommandLineRunner.appendJsonField(fields, "sd", this.sdController.calculateSD(input).getSD());
+            return fields;
+        }));
+        this.server.createContext("/median", exchange -> handle(exchange, input -> {
+            StringBuilder fields = new StringBuilder();
+            CommandLineRunner.appendJsonField(fields, "median", this.medianController.calculateMedian(input).getMedian());
+            return fields;
+        }));
+        this.server.createContext("/sampleSize", exchange -> handle(exchange, input -> new StringBuilder(",\"sampleSize\":")
+                .append(this.sampleSizeController.calculateSampleSize(input).getSampleSize())));
+        this.server.createContext("/statistics", exchange -> handle(exchange, input -> {
+            // the controllers share the factory's dataset cache, which is keyed by input,
+            // so the line is parsed once for all four even while other requests run
+            StringBuilder fields = new StringBuilder(",\"sampleSize\":")
+                    .append(this.sampleSizeController.calculateSampleSize(input).getSampleSize());
+            CommandLineRunner.appendJsonField(fields, "mean", this.meanController.calculateMean(input).getMean());
+            CommandLineRunner.appendJsonField(fields, "sd", this.sdController.calculateSD(input).getSD());
+            CommandLineRunner.appendJsonField(fields, "median", this.medianController.calculateMedian(input).getMedian());
+            return fields;
+        }));
+        this.server.createContext("/metrics", exchange -> {
+            try {
+                byte[] text = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, text.length);
+                exchange.getResponseBody().write(text);
+            } finally {
+                exchange.close();
+            }
+        });
+        this.executor = CalculationExecutor.newExecutor();
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops listening, waiting up to the given delay for running requests to finish.
+     * @param delaySeconds seconds to wait
+     */
+    public synchronized void stop(int delaySeconds) {
+        this.server.stop(delaySeconds);
+        this.executor.shutdown();
     }
 
+    /**
+     * A private helper function to answer one request, calculating each line of the body in turn.
+     * Calculations return the fields of their JSON object, each starting with a comma.
+     */
+    private static void handle(HttpExchange exchange, Function<String, StringBuilder> calculation) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), 1 << 16);
+            exchange.sendResponseHeaders(200, 0);
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16);
+            String input;
+            while ((input = reader.readLine()) != null) {
+                if (input.isBlank()) {
+                    continue;
+                }
+                StringBuilder fields;
+                try {
+                    fields = calculation.apply(input);
+                } catch (RuntimeException e) {
+                    fields = new StringBuilder(",\"error\":");
+                    CommandLineRunner.appendJsonString(fields, String.valueOf(e.getMessage()));
+                }
+                writer.append('{').append(fields, 1, fields.length()).append("}\n");
+            }
+            writer.flush();
+        } finally {
+            exchange.close();
+        }
+    }
 }
 
 /**
  * This class is to implement UI that users use.
  */
 class CalculatorView extends JFrame {
+    // longer lists of values are cut, since a text area of millions of values cannot be shown
+    private static final int MAX_SHOWN_VALUES = 1000;
+
     private final JTextField inputField;
     private final JTextArea resultArea;
     private final MeanController meanController;
     private final SDController sdController;
     private final MedianController medianController;
     private final SampleSizeController sampleSizeController;
+    private final QuantileController quantileController;
+    private final WindowController windowController;
+    private final SummaryController summaryController;
+    private final FrequencyController frequencyController;
+    private final RangeController rangeController;
+    private final BootstrapController bootstrapController;
+    private final GroupController groupController;
+    private final IncrementalInput liveInput = new IncrementalInput();
+    private CompletableFuture<?> currentCalculation;
+    private int calculationGeneration;
 
     public CalculatorView(MeanController meanController,
                           SDController sdController,
                           MedianController medianController,
-                          SampleSizeController sampleSizeController) {
+                          SampleSizeController sampleSizeController,
+                          QuantileController quantileController,
+                          WindowController windowController,
+                          SummaryController summaryController,
+                          FrequencyController frequencyController,
+                          RangeController rangeController,
+                          BootstrapController bootstrapController,
+                          GroupController groupController) {
 
         this.meanController = meanController;
         this.sdController = sdController;
         this.medianController = medianController;
         this.sampleSizeController = sampleSizeController;
+        this.quantileController = quantileController;
+        this.windowController = windowController;
+        this.summaryController = summaryController;
+        this.frequencyController = frequencyController;
+        this.rangeController = rangeController;
+        this.bootstrapController = bootstrapController;
+        this.groupController = groupController;
 
         setTitle("Statistical Calculator");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -488,6 +9740,17 @@ class CalculatorView extends JFrame {
         JButton sdButton = new JButton("Standard Deviation");
         JButton medianButton = new JButton("Median");
         JButton sampleSizeButton = new JButton("Sample Size");
+        JButton quantileButton = new JButton("Quantiles");
+        JButton summaryButton = new JButton("Summary");
+        JButton frequencyButton = new JButton("Frequency");
+        JButton windowButton = new JButton("Rolling");
+        JTextField windowField = new JTextField("5", 5);
+        JButton rangeButton = new JButton("Range");
+        JTextField rangeFromField = new JTextField("0", 4);
+        JTextField rangeToField = new JTextField("5", 4);
+        JButton bootstrapButton = new JButton("Bootstrap");
+        JTextField resamplesField = new JTextField("1000", 5);
+        JButton groupButton = new JButton("Group by Key");
         resultArea = new JTextArea(3, 30);
         resultArea.setEditable(false);
         JScrollPane resultScrollPane = new JScrollPane(resultArea);
@@ -498,20 +9761,66 @@ class CalculatorView extends JFrame {
         inputPanel.add(doneButton);
         inputPanel.add(undoButton);
 
-        JPanel buttonsPanel = new JPanel(new GridLayout(2, 2));
+        JPanel buttonsPanel = new JPanel(new GridLayout(0, 2));
         buttonsPanel.add(meanButton);
         buttonsPanel.add(sdButton);
         buttonsPanel.add(medianButton);
         buttonsPanel.add(sampleSizeButton);
+        buttonsPanel.add(quantileButton);
+        buttonsPanel.add(summaryButton);
+        buttonsPanel.add(frequencyButton);
+        JPanel windowPanel = new JPanel(new BorderLayout());
+        windowPanel.add(new JLabel(" Window: "), BorderLayout.WEST);
+        windowPanel.add(windowField, BorderLayout.CENTER);
+        windowPanel.add(windowButton, BorderLayout.EAST);
+        buttonsPanel.add(windowPanel);
+        JPanel rangePanel = new JPanel(new GridLayout(1, 0));
+        rangePanel.add(new JLabel(" From: "));
+        rangePanel.add(rangeFromField);
+        rangePanel.add(new JLabel(" To: "));
+        rangePanel.add(rangeToField);
+        rangePanel.add(rangeButton);
+        buttonsPanel.add(rangePanel);
+        JPanel bootstrapPanel = new JPanel(new BorderLayout());
+        bootstrapPanel.add(new JLabel(" Resamples: "), BorderLayout.WEST);
+        bootstrapPanel.add(resamplesField, BorderLayout.CENTER);
+        bootstrapPanel.add(bootstrapButton, BorderLayout.EAST);
+        buttonsPanel.add(bootstrapPanel);
+        buttonsPanel.add(groupButton);
 
         add(inputPanel, BorderLayout.NORTH);
         add(buttonsPanel, BorderLayout.CENTER);
         add(resultScrollPane, BorderLayout.SOUTH);
 
-        setSize(400, 350);
+        setSize(400, 480);
         setVisible(true);
 
+        // the live input follows every edit, so the calculations which take a dataset do not parse it all again
+        inputField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                cancelCalculation();
+                try {
+                    liveInput.insert(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()));
+                } catch (javax.swing.text.BadLocationException impossible) {
+                    throw new IllegalStateException(impossible);
+                }
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                cancelCalculation();
+                liveInput.remove(e.getOffset(), e.getLength());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                cancelCalculation();
+            }
+        });
+
         undoButton.addActionListener(e -> {
+            cancelCalculation();
             inputField.setText("");
             resultArea.setText("");
         });
@@ -521,29 +9830,135 @@ class CalculatorView extends JFrame {
             setResult("Input: " + input);
         });
 
-        meanButton.addActionListener(e -> {
-            String input = inputField.getText();
-            MeanViewModel result = this.meanController.calculateMean(input);
-            setResult("Mean: " + result.getMean());
-        });
+        meanButton.addActionListener(e -> calculate("Mean",
+                listener -> this.meanController.calculateMeanAsync(inputField.getText(), this.liveInput, listener),
+                result -> "Mean: " + result.getMean()));
+
+        sdButton.addActionListener(e -> calculate("Standard Deviation",
+                listener -> this.sdController.calculateSDAsync(inputField.getText(), this.liveInput, listener),
+                result -> "Standard Deviation: " + result.getSD()));
+
+        medianButton.addActionListener(e -> calculate("Median",
+                listener -> this.medianController.calculateMedianAsync(inputField.getText(), this.liveInput,
+                        listener),
+                result -> "Median: " + result.getMedian()));
+
+        sampleSizeButton.addActionListener(e -> calculate("Sample Size",
+                listener -> this.sampleSizeController.calculateSampleSizeAsync(inputField.getText(), this.liveInput,
+                        listener),
+                result -> "Sample Size: " + result.getSampleSize()));
 
-        sdButton.addActionListener(e -> {
-            String input = inputField.getText();
-            SDViewModel result = this.sdController.calculateSD(input);
-            setResult("Standard Deviation: " + result.getSD());
+        quantileButton.addActionListener(e -> calculate("Quantiles",
+                listener -> this.quantileController.calculateQuantilesAsync(inputField.getText(), this.liveInput,
+                        listener),
+                result -> {
+                    StringBuilder text = new StringBuilder("Quantiles:");
+                    for (int i = 0; i < result.getQuantiles().length; i++) {
+                        text.append(i == 0 ? " " : ", ")
+                                .append("p").append(formatPercent(result.getProbabilities()[i]))
+                                .append(" = ").append(result.getQuantiles()[i]);
+                    }
+                    return text.toString();
+                }));
+
+        summaryButton.addActionListener(e -> calculate("Summary",
+                listener -> this.summaryController.calculateSummaryAsync(inputField.getText(), this.liveInput,
+                        listener),
+                result -> {
+                    StringBuilder text = new StringBuilder()
+                            .append("Sample Size: ").append(result.getCount())
+                            .append(", Mean: ").append(result.getMean())
+                            .append(", Standard Deviation: ").append(result.getSD())
+                            .append("\nMedian: ").append(result.getMedian())
+                            .append(", Min: ").append(result.getMin())
+                            .append(", Max: ").append(result.getMax())
+                            .append("\nQuantiles:");
+                    for (int i = 0; i < result.getQuantiles().length; i++) {
+                        text.append(i == 0 ? " " : ", ")
+                                .append("p").append(formatPercent(result.getProbabilities()[i]))
+                                .append(" = ").append(result.getQuantiles()[i]);
+                    }
+                    return text.toString();
+                }));
+
+        frequencyButton.addActionListener(e -> calculate("Frequency",
+                listener -> this.frequencyController.calculateFrequencyAsync(inputField.getText(), listener),
+                result -> {
+                    StringBuilder text = new StringBuilder()
+                            .append("Modes: ").append(Arrays.toString(result.getModes()))
+                            .append(" (").append(result.getModeCount()).append(" times)")
+                            .append(", Distinct Values: ").append(result.getDistinctCount())
+                            .append("\nHistogram:");
+                    for (int i = 0; i < result.getBinCounts().length; i++) {
+                        text.append(i == 0 ? " " : ", ")
+                                .append(result.getBinStarts()[i]).append("..").append(result.getBinEnds()[i])
+                                .append(" = ").append(result.getBinCounts()[i]);
+                    }
+                    return text.toString();
+                }));
+
+        windowButton.addActionListener(e -> {
+            Integer windowSize = readInt(windowField, "Rolling: invalid window size");
+            if (windowSize == null) {
+                return;
+            }
+            calculate("Rolling",
+                    listener -> this.windowController.calculateWindowAsync(inputField.getText(), windowSize, listener),
+                    result -> "Rolling Mean: " + formatValues(result.getMeans())
+                            + "\nRolling Standard Deviation: " + formatValues(result.getSDs())
+                            + "\nRolling Median: " + formatValues(result.getMedians()));
         });
 
-        medianButton.addActionListener(e -> {
-            String input = inputField.getText();
-            MedianViewModel result = this.medianController.calculateMedian(input);
-            setResult("Median: " + result.getMedian());
+        rangeButton.addActionListener(e -> {
+            Integer from = readInt(rangeFromField, "Range: invalid start index");
+            Integer to = from == null ? null : readInt(rangeToField, "Range: invalid end index");
+            if (to == null) {
+                return;
+            }
+            calculate("Range",
+                    listener -> this.rangeController.calculateRangeAsync(inputField.getText(), from, to, listener),
+                    result -> "Sample Size: " + result.getCount()
+                            + ", Mean: " + result.getMean()
+                            + ", Standard Deviation: " + result.getSD()
+                            + "\nMedian: " + result.getMedian()
+                            + ", Min: " + result.getMin()
+                            + ", Max: " + result.getMax());
         });
 
-        sampleSizeButton.addActionListener(e -> {
-            String input = inputField.getText();
-            SampleSizeViewModel result = this.sampleSizeController.calculateSampleSize(input);
-            setResult("Sample Size: " + result.getSampleSize());
+        bootstrapButton.addActionListener(e -> {
+            Integer resamples = readInt(resamplesField, "Bootstrap: invalid number of resamples");
+            if (resamples == null) {
+                return;
+            }
+            calculate("Bootstrap",
+                    listener -> this.bootstrapController.calculateBootstrapAsync(inputField.getText(), resamples, 0.95,
+                            listener),
+                    result -> formatPercent(result.getConfidence()) + "% intervals of "
+                            + result.getResamples() + " resamples"
+                            + "\nMean: " + result.getMean() + " " + Arrays.toString(result.getMeanInterval())
+                            + "\nStandard Deviation: " + result.getSD() + " " + Arrays.toString(result.getSDInterval())
+                            + "\nMedian: " + result.getMedian() + " " + Arrays.toString(result.getMedianInterval()));
         });
+
+        groupButton.addActionListener(e -> calculate("Group by Key",
+                listener -> this.groupController.calculateGroupsAsync(inputField.getText(), listener),
+                result -> {
+                    StringBuilder text = new StringBuilder();
+                    String[] columnNames = result.getColumnNames();
+                    for (int c = 0; c < columnNames.length; c++) {
+                        for (int key = 0; key < result.getKeys().length; key++) {
+                            text.append(text.length() == 0 ? "" : "\n").append(result.getKeys()[key]);
+                            if (columnNames.length > 1) {
+                                text.append(" ").append(columnNames[c]);
+                            }
+                            text.append(": Sample Size: ").append(result.getCounts()[key])
+                                    .append(", Mean: ").append(result.getMeans()[c][key])
+                                    .append(", Standard Deviation: ").append(result.getSDs()[c][key])
+                                    .append(", Median: ").append(result.getMedians()[c][key]);
+                        }
+                    }
+                    return text.toString();
+                }));
     }
 
     public String getInputText() {
@@ -554,6 +9969,79 @@ class CalculatorView extends JFrame {
         resultArea.setText(result);
     }
 
+    /**
+     * A private helper function to read a whole number from a field.
+     * If the text is not one, the previous calculation is cancelled and the error is shown in resultArea.
+     * @return the number, or null if the field does not hold one
+     */
+    private Integer readInt(JTextField field, String error) {
+        try {
+            return Integer.parseInt(field.getText().trim());
+        } catch (NumberFormatException e) {
+            cancelCalculation();
+            setResult(error);
+            return null;
+        }
+    }
+
+    /**
+     * A private helper function to format a list of values, of which at most MAX_SHOWN_VALUES are shown.
+     */
+    private static String formatValues(double[] values) {
+        if (values.length <= MAX_SHOWN_VALUES) {
+            return Arrays.toString(values);
+        }
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < MAX_SHOWN_VALUES; i++) {
+            text.append(values[i]).append(", ");
+        }
+        return text.append("... ").append(values.length - MAX_SHOWN_VALUES).append(" more]").toString();
+    }
+
+    /**
+     * A private helper function to run a calculation off the event dispatch thread.
+     * The previous calculation is cancelled, progress is shown in resultArea while it runs,
+     * and results of calculations which were cancelled meanwhile are ignored.
+     * Results are formatted in the background too, so only the finished text is set on the event dispatch thread.
+     */
+    private <T> void calculate(String name, Function<ProgressListener, CompletableFuture<T>> calculation,
+                               Function<T, String> format) {
+        cancelCalculation();
+        int generation = this.calculationGeneration;
+        setResult(name + ": calculating...");
+        CompletableFuture<T> future = calculation.apply((stage, fraction) -> SwingUtilities.invokeLater(() -> {
+            if (generation == this.calculationGeneration) {
+                setResult(name + ": " + stage + " " + round(fraction * 100) + "%");
+            }
+        }));
+        this.currentCalculation = future;
+        future.thenApplyAsync(format).whenComplete((text, error) -> SwingUtilities.invokeLater(() -> {
+            if (generation != this.calculationGeneration || future.isCancelled()) {
+                return;
+            }
+            this.currentCalculation = null;
+            if (error == null) {
+                setResult(text);
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                setResult(name + ": " + cause.getMessage());
+            }
+        }));
+    }
+
+    private void cancelCalculation() {
+        this.calculationGeneration++;
+        if (this.currentCalculation != null) {
+            this.currentCalculation.cancel(true);
+            this.currentCalculation = null;
+        }
+    }
+
+    private static String formatPercent(double probability) {
+        double percent = probability * 100;
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+    }
+
 }
 
 
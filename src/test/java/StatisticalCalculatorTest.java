@@ -127,4 +127,1159 @@ class StatisticalCalculatorTest {
         // Verify interactions with the Mocks
         Mockito.verify(sampleSizeOutputBoundary).promptSampleSize(5);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test parsing user's input into a list of integers.
+     */
+    @Test
+    public void testGetNumberList() {
+        int[] result = new Dataset(" 30,10 , -20,+40,2147483647,-2147483648,,").getNumberList();
+        assert java.util.Arrays.equals(result, new int[]{30, 10, -20, 40, 2147483647, -2147483648});
+    }
+
+    /**
+     * Test parsing user's input which has an invalid value.
+     */
+    @Test
+    public void testParseInvalidNumber() {
+        try {
+            NumberParser.parseInts("10, 20, 3x0, 40");
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getOffset() == 9;
+        }
+
+        try {
+            NumberParser.parseInts("10, 2147483648");
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getOffset() == 3;
+        }
+    }
+
+    /**
+     * Test that the same input is parsed only once and the median leaves input order as it is.
+     */
+    @Test
+    public void testDatasetCache() {
+        DatasetCache datasetCache = new DatasetCache();
+        ParsedDataset first = (ParsedDataset) datasetCache.get("30, 10, 20");
+        DatasetSource second = datasetCache.get(new String("30, 10, 20"));
+        assert first == second;
+        assert first.median() == 20.0;
+        assert java.util.Arrays.equals(first.values(), new int[]{30, 10, 20});
+        assert datasetCache.get("30, 10") != first;
+        assert datasetCache.get("30, 10, 20") == first;
+
+        // interleaved inputs do not evict each other, and the cache is bounded by count and by length
+        DatasetCache bounded = new DatasetCache(3, 30);
+        DatasetSource a = bounded.get("1, 2");
+        DatasetSource b = bounded.get("3, 4");
+        assert bounded.get("1, 2") == a && bounded.get("3, 4") == b;
+        bounded.get("5, 6");
+        bounded.get("7, 8");
+        assert bounded.size() == 3;
+        assert bounded.get("3, 4") == b;
+        assert bounded.get("1, 2") != a;
+        String longInput = "1" + ", 1".repeat(20);
+        DatasetSource last = bounded.get(longInput);
+        assert bounded.size() == 1;
+        assert bounded.get(longInput) == last;
+    }
+
+    /**
+     * Test selecting order statistics against a sorted copy, including inputs with many duplicates.
+     */
+    @Test
+    public void testSelection() {
+        java.util.Random random = new java.util.Random(7);
+        for (int n = 1; n < 300; n += 7) {
+            int[] data = new int[n];
+            for (int i = 0; i < n; i++) {
+                data[i] = n % 2 == 0 ? random.nextInt() : random.nextInt(5);
+            }
+            int[] sorted = data.clone();
+            java.util.Arrays.sort(sorted);
+            for (int k = 0; k < n; k++) {
+                assert Selection.select(data.clone(), k) == sorted[k];
+            }
+            assert Selection.quantile(data.clone(), 0.0) == sorted[0];
+            assert Selection.quantile(data.clone(), 1.0) == sorted[n - 1];
+        }
+
+        assert Selection.median(new int[]{2147483647, 2147483645}) == 2147483646.0;
+        assert Selection.quantile(new int[]{40, 10, 30, 20}, 0.5) == 25.0;
+        assert Selection.quantile(new int[]{40, 10, 30, 20}, 0.9) == 37.0;
+    }
+
+    /**
+     * Test calculating mean and standard deviation when the sum does not fit in an int.
+     */
+    @Test
+    public void testCalculateLargeValues() {
+        MeanInteractor meanInteractor = new MeanInteractor(new MeanPresenter());
+        SDInteractor sdInteractor = new SDInteractor(new SDPresenter());
+
+        assert meanInteractor.calculateMean("2147483647, 2147483647, 2147483646").getMean() == 2147483646.67;
+        assert sdInteractor.calculateSD("2147483647, 2147483647, 2147483646").getSD() == 0.58;
+    }
+
+    /**
+     * Test that accumulating one value at a time, in blocks and by combining halves gives the same statistics.
+     */
+    @Test
+    public void testStatisticsAccumulator() {
+        java.util.Random random = new java.util.Random(11);
+        int[] data = new int[10000];
+        StatisticsAccumulator oneByOne = new StatisticsAccumulator();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(2000) - 1000;
+            oneByOne.accept(data[i]);
+        }
+        StatisticsAccumulator blocks = StatisticsAccumulator.of(data);
+        StatisticsAccumulator halves = StatisticsAccumulator.of(data, 0, 3333);
+        halves.combine(StatisticsAccumulator.of(data, 3333, data.length));
+
+        for (StatisticsAccumulator result : new StatisticsAccumulator[]{blocks, halves}) {
+            assert result.getCount() == oneByOne.getCount();
+            assert result.getSum() == oneByOne.getSum();
+            assert Math.abs(result.getVariance() - oneByOne.getVariance()) < 1e-6;
+            assert result.getMin() == oneByOne.getMin();
+            assert result.getMax() == oneByOne.getMax();
+        }
+    }
+
+    /**
+     * Test that accumulating in parallel gives the same statistics as accumulating sequentially.
+     */
+    @Test
+    public void testParallelStatistics() {
+        java.util.Random random = new java.util.Random(13);
+        int[] data = new int[ParallelStatistics.PARALLEL_THRESHOLD * 2 + 12345];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        StatisticsAccumulator sequential = StatisticsAccumulator.of(data);
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        StatisticsAccumulator parallel;
+        try {
+            parallel = ParallelStatistics.of(data, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assert parallel.getCount() == sequential.getCount();
+        assert parallel.getSum() == sequential.getSum();
+        assert Math.abs(parallel.getStandardDeviation() / sequential.getStandardDeviation() - 1) < 1e-12;
+        assert parallel.getMin() == sequential.getMin();
+        assert parallel.getMax() == sequential.getMax();
+    }
+
+    /**
+     * Test calculating statistics of a stream which has numbers separated by commas and line breaks.
+     */
+    @Test
+    public void testStreamingDataset() {
+        byte[] bytes = "10, 20\n30,\r\n\n40, 50\n".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+
+        StreamingDataset dataset = StreamingDataset.of(new java.io.ByteArrayInputStream(bytes));
+        assert new MeanInteractor(new MeanPresenter()).calculateMean(dataset).getMean() == 30.0;
+        assert new SDInteractor(new SDPresenter()).calculateSD(dataset).getSD() == 15.81;
+        assert new MedianInteractor(new MedianPresenter()).calculateMedian(dataset).getMedian() == 30.0;
+        assert new SampleSizeInteractor(new SampleSizePresenter()).calculateSampleSize(dataset).getSampleSize() == 5;
+
+        java.nio.channels.ReadableByteChannel channel = java.nio.channels.Channels.newChannel(
+                new java.io.ByteArrayInputStream("10, 2 0".getBytes()));
+        StreamingDataset invalid = StreamingDataset.of(channel);
+        for (int query = 0; query < 2; query++) {
+            try {
+                invalid.size();
+                assert false;
+            } catch (DatasetFormatException e) {
+                assert e.getOffset() == 6;
+            }
+        }
+        assert channel.isOpen();
+
+        byte[] nonAscii = "1,2\u00e9,3\n\u00e94\n".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        try {
+            StreamingDataset.of(new java.io.ByteArrayInputStream(nonAscii)).size();
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getOffset() == 3;
+        }
+    }
+
+    /**
+     * Test that streamed input is read into the narrowest type, as typed input is.
+     */
+    @Test
+    public void testStreamedNumberTypes() throws java.io.IOException {
+        assert parseStream("1, 2\n3").getClass() == ParsedDataset.class;
+        DatasetSource longs = parseStream("1, 2\n3000000000\n-4");
+        assert longs instanceof LongDataset;
+        assert longs.statistics().getSum() == 2999999999.0;
+        DatasetSource doubles = parseStream("1, 3000000000\n2.5, .5e1\n99999999999999999999");
+        assert doubles instanceof DoubleDataset;
+        assert doubles.median() == 5.0;
+        assert doubles.statistics().getMax() == 1e20;
+
+        StreamingNumberParser parser = new StreamingNumberParser(java.nio.channels.Channels.newChannel(
+                new java.io.ByteArrayInputStream("1, 2, -3.5, 4, 5".getBytes())));
+        long[] longBlock = new long[4];
+        double[] doubleBlock = new double[4];
+        assert parser.read(longBlock, doubleBlock) == 2 && !parser.isFloatingPoint();
+        assert longBlock[0] == 1 && longBlock[1] == 2;
+        assert parser.read(longBlock, doubleBlock) == 3 && parser.isFloatingPoint();
+        assert java.util.Arrays.equals(java.util.Arrays.copyOf(doubleBlock, 3), new double[] {-3.5, 4, 5});
+        assert parser.read(longBlock, doubleBlock) == 0;
+
+        String[] invalid = {"1, 2.5x", "1, 1e", "1, 2.5 3", "1, 1e999"};
+        long[] offsets = {6, 5, 7, 3};
+        for (int i = 0; i < invalid.length; i++) {
+            try {
+                parseStream(invalid[i]);
+                assert false;
+            } catch (DatasetFormatException e) {
+                assert e.getOffset() == offsets[i] : invalid[i] + ": " + e.getMessage();
+            }
+        }
+
+        StreamingDataset approximate = StreamingDataset.of(new java.io.ByteArrayInputStream("1.5, 2.5\n3000000000".getBytes()));
+        assert approximate.statistics().getSum() == 3000000004.0;
+
+        CommandLineRunner runner = new CommandLineRunner(new ControllerFactory().createSummaryController());
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        int status = runner.run(new String[] {"-"}, new java.io.ByteArrayInputStream("1.5, 2.5".getBytes()),
+                new java.io.PrintStream(out, true), new java.io.PrintStream(new java.io.ByteArrayOutputStream(), true));
+        assert status == 0;
+        assert out.toString().split("\n")[1].startsWith("-,2,2.0,0.71,2.0,1.5,2.5,");
+    }
+
+    private static DatasetSource parseStream(String input) throws java.io.IOException {
+        return new StreamingNumberParser(java.nio.channels.Channels.newChannel(
+                new java.io.ByteArrayInputStream(input.getBytes()))).readNumbers();
+    }
+
+    /**
+     * Test converting text into a column file and calculating statistics over the mapped file.
+     */
+    @Test
+    public void testMappedDataset() throws java.io.IOException {
+        java.nio.file.Path text = java.nio.file.Files.createTempFile("dataset", ".txt");
+        java.nio.file.Path column = java.nio.file.Files.createTempFile("dataset", ".scol");
+        try {
+            java.nio.file.Files.write(text, "40, -10\n30, 20, 50, 2147483647".getBytes());
+            for (boolean storeMoments : new boolean[]{true, false}) {
+                ColumnFile.convert(text, column, storeMoments);
+                MappedDataset dataset = MappedDataset.open(column);
+                assert dataset.size() == 6;
+                assert dataset.median() == 35.0;
+                assert dataset.statistics().getSum() == 2147483647.0 + 130;
+                assert dataset.statistics().getMin() == -10.0;
+                assert new SDInteractor(new SDPresenter()).calculateSD(dataset).getSD() == 876706517.07;
+            }
+
+            ColumnFile.write(column, new Dataset("10, 20, 30, 40, 50").parse(), true);
+            assert new MeanInteractor(new MeanPresenter()).calculateMean(MappedDataset.open(column)).getMean() == 30.0;
+
+            // values written as int64 are rewritten as float64 when a fraction follows
+            java.nio.file.Files.write(text, "5000000000, -2\n-0.5, 1.25".getBytes());
+            ColumnFile.convert(text, column, true);
+            MappedDataset doubles = MappedDataset.open(column);
+            assert doubles.median() == 0.375;
+            assert doubles.statistics().getMin() == -2.0;
+            assert doubles.statistics().getSum() == 4999999998.75;
+            assert doubles.quantile(1) == 5e9;
+
+            // float64 files written from a dataset select the same order statistics as the dataset
+            java.util.Random random = new java.util.Random(7);
+            double[] values = new double[20001];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i % 3 == 0 ? random.nextInt(100) : random.nextGaussian() * 1e6;
+            }
+            DoubleDataset expected = new DoubleDataset(values);
+            ColumnFile.write(column, expected, false);
+            MappedDataset mapped = MappedDataset.open(column);
+            assert mapped.median() == expected.median();
+            for (double p : new double[]{0, 0.25, 0.5, 0.9, 0.99, 0.999, 1}) {
+                assert mapped.quantile(p) == expected.quantile(p);
+            }
+            double[] probabilities = {0.25, 0.75, 0.9, 0.99};
+            assert java.util.Arrays.equals(mapped.medianAndQuantiles(probabilities),
+                    expected.medianAndQuantiles(probabilities));
+            assert mapped.statistics().getSum() == expected.statistics().getSum();
+        } finally {
+            java.nio.file.Files.delete(text);
+            java.nio.file.Files.delete(column);
+        }
+    }
+
+    /**
+     * Test that selecting several ranks at once puts each of them where a full sort would.
+     */
+    @Test
+    public void testSelectAll() {
+        java.util.Random random = new java.util.Random(3);
+        for (int n : new int[]{1, 15, 100, 10000}) {
+            long[] data = new long[n];
+            for (int i = 0; i < n; i++) {
+                data[i] = i % 2 == 0 ? random.nextInt(10) : random.nextLong();
+            }
+            long[] sorted = data.clone();
+            java.util.Arrays.sort(sorted);
+            int[] ranks = {0, n / 4, n / 2, n / 2, n - 1};
+            Selection.selectAll(data, ranks);
+            for (int rank : ranks) {
+                assert data[rank] == sorted[rank];
+            }
+        }
+
+        // a cancelled calculation stops at the first partition of a large range
+        java.util.concurrent.CompletableFuture<Void> cancelled = new java.util.concurrent.CompletableFuture<>();
+        cancelled.cancel(true);
+        int[] large = new int[1 << 17];
+        try {
+            new CalculationProgress(cancelled, (stage, fraction) -> { }).runWith(() -> Selection.median(large));
+            assert false;
+        } catch (java.util.concurrent.CancellationException e) {
+            // stopped before the first partition
+        }
+
+        // the median and quantiles of one selection are the numbers of separate selections for every dataset
+        double[] probabilities = {0.25, 0.75, 0.9, 0.99, 0, 1};
+        for (int n : new int[]{1, 2, 1001, 1002}) {
+            int[] ints = new int[n];
+            long[] longs = new long[n];
+            double[] doubles = new double[n];
+            for (int i = 0; i < n; i++) {
+                ints[i] = random.nextInt(1 << 20) - (1 << 19);
+                longs[i] = random.nextLong();
+                doubles[i] = random.nextGaussian();
+            }
+            OffHeapDataset offHeap = OffHeapDataset.of(ints);
+            DatasetSource[] sources = {new ParsedDataset(ints), new LongDataset(longs), new DoubleDataset(doubles), offHeap};
+            for (DatasetSource source : sources) {
+                double[] together = source.medianAndQuantiles(probabilities);
+                assert together[0] == source.median();
+                for (int i = 0; i < probabilities.length; i++) {
+                    assert together[i + 1] == source.quantile(probabilities[i]);
+                }
+            }
+            offHeap.close();
+        }
+        SummaryViewModel summary = new SummaryInteractor(new SummaryPresenter()).calculateSummary("4, 1, 3, 2");
+        assert summary.getMedian() == 2.5;
+        assert java.util.Arrays.equals(summary.getQuantiles(), new double[]{1.75, 3.25, 3.7, 3.9699999999999998});
+    }
+
+    /**
+     * Test calculating quantiles, which are exact while the input is smaller than the sketch.
+     */
+    @Test
+    public void testCalculateQuantiles() {
+        QuantileInteractor quantileInteractor = new QuantileInteractor(new QuantilePresenter());
+        QuantileViewModel result = quantileInteractor.calculateQuantiles("50, 40, 30, 20, 10", new double[]{0.5, 0.9});
+        assert java.util.Arrays.equals(result.getQuantiles(), new double[]{30.0, 46.0});
+    }
+
+    /**
+     * Test that the rank error of a sketch and of merged sketches of chunks stays within the bound.
+     */
+    @Test
+    public void testQuantileSketchErrorBound() {
+        java.util.Random random = new java.util.Random(17);
+        int n = 100000;
+        int k = 200;
+        int[] data = new int[n];
+        for (int i = 0; i < n; i++) {
+            data[i] = random.nextInt();
+        }
+        int[] sorted = data.clone();
+        java.util.Arrays.sort(sorted);
+
+        QuantileSketch whole = QuantileSketch.of(data, 0, n, k);
+        QuantileSketch merged = QuantileSketch.of(data, 0, n / 4, k);
+        for (int chunk = 1; chunk < 4; chunk++) {
+            merged.merge(QuantileSketch.of(data, chunk * n / 4, (chunk + 1) * n / 4, k));
+        }
+        assert merged.getCount() == n;
+
+        for (QuantileSketch sketch : new QuantileSketch[]{whole, merged}) {
+            for (int percent = 1; percent < 100; percent++) {
+                double value = sketch.quantile(percent / 100.0);
+                int rank = java.util.Arrays.binarySearch(sorted, (int) Math.ceil(value));
+                rank = rank < 0 ? -rank - 1 : rank;
+                double error = Math.abs(rank - (n - 1) * percent / 100.0) / n;
+                assert error < 2.5 / k;
+            }
+        }
+
+        // a shared sketch is queried by several threads at once, which must not disturb each other
+        double[] expected = new double[99];
+        for (int percent = 1; percent < 100; percent++) {
+            expected[percent - 1] = whole.quantile(percent / 100.0);
+        }
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(8);
+        java.util.List<java.util.concurrent.CompletableFuture<Boolean>> queries = new java.util.ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            queries.add(java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+                boolean same = true;
+                for (int round = 0; round < 50; round++) {
+                    for (int percent = 1; percent < 100; percent++) {
+                        same &= whole.quantile(percent / 100.0) == expected[percent - 1];
+                    }
+                }
+                return same;
+            }, pool));
+        }
+        for (java.util.concurrent.CompletableFuture<Boolean> query : queries) {
+            assert query.join();
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Test that statistics of an incremental dataset follow values as they are added and removed.
+     */
+    @Test
+    public void testIncrementalDataset() {
+        IncrementalDataset dataset = new IncrementalDataset();
+        dataset.addAll(new int[]{10, 20, 30, 40, 50});
+        MeanInteractor meanInteractor = new MeanInteractor(new MeanPresenter());
+        SDInteractor sdInteractor = new SDInteractor(new SDPresenter());
+        MedianInteractor medianInteractor = new MedianInteractor(new MedianPresenter());
+
+        assert meanInteractor.calculateMean(dataset).getMean() == 30.0;
+        assert sdInteractor.calculateSD(dataset).getSD() == 15.81;
+        assert medianInteractor.calculateMedian(dataset).getMedian() == 30.0;
+
+        dataset.add(60);
+        assert !dataset.remove(15);
+        assert dataset.remove(10);
+        assert meanInteractor.calculateMean(dataset).getMean() == 40.0;
+        assert medianInteractor.calculateMedian(dataset).getMedian() == 40.0;
+        assert dataset.statistics().getMin() == 20.0;
+
+        for (int i = 100; i > 0; i--) {
+            dataset.add(i);
+        }
+        assert dataset.size() == 105;
+        assert medianInteractor.calculateMedian(dataset).getMedian() == 50.0;
+        assert dataset.quantileSketch().getCount() == 105;
+        assert dataset.quantileSketch().quantile(0.5) == 50.0;
+
+        try {
+            new IncrementalDataset().median();
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getMessage().equals("Empty input at offset 0");
+        }
+    }
+
+    /**
+     * Test that the live dataset of edited input follows every edit, and that input which is not all ints is parsed.
+     */
+    @Test
+    public void testIncrementalInput() throws Exception {
+        IncrementalInput input = new IncrementalInput();
+        StringBuilder text = new StringBuilder();
+        java.util.function.BiConsumer<Integer, String> insert = (offset, inserted) -> {
+            input.insert(offset, inserted);
+            text.insert((int) offset, inserted);
+        };
+        java.util.function.BiConsumer<Integer, Integer> remove = (offset, length) -> {
+            input.remove(offset, length);
+            text.delete(offset, offset + length);
+        };
+
+        assert input.dataset() == null;
+        insert.accept(0, "10, 20, 3");
+        insert.accept(9, "0, 40,");
+        assert input.dataset() != null;
+        assert input.dataset().statistics().getSum() == 100.0;
+        insert.accept(text.length(), " 5");
+        assert input.dataset().statistics().getSum() == 105.0;
+        insert.accept(text.length(), ".5");
+        assert input.dataset() == null;
+        remove.accept(text.length() - 2, 2);
+        remove.accept(0, 4);
+        assert text.toString().equals("20, 30, 40, 5");
+        assert input.dataset().median() == 25.0;
+        insert.accept(2, "00");
+        remove.accept(8, 5);
+        assert text.toString().equals("2000, 30 5");
+        assert input.dataset() == null;
+        insert.accept(8, ",");
+        assert input.dataset().statistics().getSum() == 2035.0;
+        insert.accept(5, ",");
+        assert input.dataset() == null;
+        remove.accept(0, text.length());
+        assert input.dataset() == null;
+        insert.accept(0, "7,8,9,,");
+        assert input.dataset().size() == 3;
+
+        ControllerFactory controllerFactory = new ControllerFactory();
+        assert controllerFactory.createMeanController().calculateMeanAsync(text.toString(), input, (stage, fraction) -> { }).get()
+                .getMean() == 8.0;
+        insert.accept(0, "1.5, ");
+        assert controllerFactory.createSummaryController().calculateSummaryAsync(text.toString(), input, (stage, fraction) -> { }).get()
+                .getMean() == 6.38;
+        insert.accept(0, "x");
+        try {
+            controllerFactory.createMedianController().calculateMedianAsync(text.toString(), input, (stage, fraction) -> { }).get();
+            assert false;
+        } catch (java.util.concurrent.ExecutionException e) {
+            assert ((DatasetFormatException) e.getCause()).getOffset() == 0;
+        }
+    }
+
+    /**
+     * Test calculating rolling statistics over a window of the last values.
+     */
+    @Test
+    public void testCalculateWindow() {
+        WindowInteractor windowInteractor = new WindowInteractor(new WindowPresenter());
+        WindowViewModel result = windowInteractor.calculateWindow("10, 20, 60, 40, 50", 3);
+
+        assert java.util.Arrays.equals(result.getMeans(), new double[]{10.0, 15.0, 30.0, 40.0, 50.0});
+        assert java.util.Arrays.equals(result.getSDs(), new double[]{0.0, 7.07, 26.46, 20.0, 10.0});
+        assert java.util.Arrays.equals(result.getMedians(), new double[]{10.0, 15.0, 20.0, 40.0, 50.0});
+    }
+
+    /**
+     * Test that a time window evicts values older than its duration.
+     */
+    @Test
+    public void testTimeWindow() {
+        SlidingWindowStatistics window = SlidingWindowStatistics.ofDuration(1000);
+        for (int i = 0; i < 40; i++) {
+            window.add(i * 100L, i);
+        }
+        assert window.size() == 10;
+        assert window.mean() == 34.5;
+        assert window.median() == 34.5;
+
+        window.evictBefore(4200);
+        assert window.size() == 7;
+        assert window.median() == 36.0;
+
+        // the use case evicts by time through the controller
+        WindowController controller = new ControllerFactory().createWindowController();
+        WindowViewModel result = controller.calculateWindow("10, 20, 60, 40", new long[]{0, 500, 1200, 1300}, 1000);
+        assert java.util.Arrays.equals(result.getMeans(), new double[]{10.0, 15.0, 40.0, 40.0});
+        assert java.util.Arrays.equals(result.getMedians(), new double[]{10.0, 15.0, 40.0, 40.0});
+        try {
+            controller.calculateWindow("10, 20", new long[]{5, 4}, 1000);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Timestamps must not decrease: 4 follows 5");
+        }
+    }
+
+    /**
+     * Test calculating in the background and cancelling a running calculation.
+     */
+    @Test
+    public void testCalculateAsync() throws Exception {
+        CalculationExecutor executor = new CalculationExecutor();
+        MeanController meanController = new MeanController(new MeanInteractor(new MeanPresenter()), executor);
+        java.util.List<String> stages = new java.util.concurrent.CopyOnWriteArrayList<>();
+        MeanViewModel result = meanController.calculateMeanAsync("10, 20, 30, 40, 50",
+                (stage, fraction) -> stages.add(stage)).get();
+        assert result.getMean() == 30.0;
+        assert stages.contains("Calculating");
+
+        java.util.concurrent.atomic.AtomicInteger steps = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.CompletableFuture<Integer> future = executor.submit(() -> {
+            for (int i = 0; i < 1000; i++) {
+                CalculationProgress.checkpoint("Counting", i, 1000);
+                steps.incrementAndGet();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return steps.get();
+        });
+        future.cancel(true);
+        Thread.sleep(100);
+        assert future.isCancelled();
+        assert steps.get() < 1000;
+        executor.shutdown();
+    }
+
+    /**
+     * Test calculating every statistic from one parse of the input.
+     */
+    @Test
+    public void testCalculateSummary() {
+        SummaryController summaryController = new SummaryController(new SummaryInteractor(new SummaryPresenter()));
+        SummaryViewModel result = summaryController.calculateSummary("10, 20, 30, 40, 50");
+        assert result.getCount() == 5;
+        assert result.getMean() == 30.0;
+        assert result.getSD() == 15.81;
+        assert result.getMedian() == 30.0;
+        assert result.getMin() == 10.0;
+        assert result.getMax() == 50.0;
+        assert result.getProbabilities()[0] == 0.25;
+        assert result.getQuantiles()[0] == 20.0;
+        assert result.getQuantiles()[1] == 40.0;
+    }
+
+    /**
+     * Test summarizing files, globs and standard input from the command line.
+     */
+    @Test
+    public void testCommandLine() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("datasets");
+        java.nio.file.Files.writeString(directory.resolve("a.csv"), "10, 20, 30, 40, 50");
+        java.nio.file.Files.writeString(directory.resolve("b.csv"), "1\n2\n3\n");
+        java.nio.file.Files.writeString(directory.resolve("bad.txt"), "1, x");
+        CommandLineRunner runner = new CommandLineRunner(new ControllerFactory().createSummaryController());
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        java.io.ByteArrayOutputStream err = new java.io.ByteArrayOutputStream();
+
+        int status = runner.run(new String[] {"--threads", "2", directory + "/*.csv", "-"},
+                new java.io.ByteArrayInputStream("7,8,9".getBytes()),
+                new java.io.PrintStream(out, true), new java.io.PrintStream(err, true));
+        String[] lines = out.toString().split("\n");
+        assert status == 0;
+        assert lines.length == 4;
+        assert lines[0].equals("source,count,mean,sd,median,min,max,p25,p75,p90,p99");
+        assert lines[1].equals(directory.resolve("a.csv") + ",5,30.0,15.81,30.0,10.0,50.0,20.0,40.0,46.0,49.6");
+        assert lines[2].startsWith(directory.resolve("b.csv") + ",3,2.0,1.0,2.0,");
+        assert lines[3].startsWith("-,3,8.0,1.0,8.0,");
+
+        out.reset();
+        status = runner.run(new String[] {"--format=json", directory.resolve("bad.txt").toString(),
+                        directory.resolve("a.csv").toString()}, System.in,
+                new java.io.PrintStream(out, true), new java.io.PrintStream(err, true));
+        assert status == 1;
+        assert out.toString().startsWith("{\"source\":\"" + directory.resolve("a.csv") + "\",\"count\":5,\"mean\":30.0,");
+        assert err.toString().contains("Invalid integer at offset 3");
+    }
+
+    /**
+     * Test calculating a batch of datasets through the HTTP server.
+     */
+    @Test
+    public void testHttpServer() throws Exception {
+        StatisticsHttpServer server = new StatisticsHttpServer(new ControllerFactory());
+        int port = server.start(0);
+        try {
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            java.net.http.HttpResponse<String> response = client.send(java.net.http.HttpRequest
+                            .newBuilder(java.net.URI.create("http://localhost:" + port + "/statistics"))
+                            .POST(java.net.http.HttpRequest.BodyPublishers.ofString("10, 20, 30, 40, 50\n1, x\n\n1,2,3\n"))
+                            .build(),
+                    java.net.http.HttpResponse.BodyHandlers.ofString());
+            String[] lines = response.body().split("\n");
+            assert response.statusCode() == 200;
+            assert lines.length == 3;
+            assert lines[0].equals("{\"sampleSize\":5,\"mean\":30.0,\"sd\":15.81,\"median\":30.0}");
+            assert lines[1].startsWith("{\"error\":\"Invalid integer");
+            assert lines[2].equals("{\"sampleSize\":3,\"mean\":2.0,\"sd\":1.0,\"median\":2.0}");
+
+            response = client.send(java.net.http.HttpRequest
+                            .newBuilder(java.net.URI.create("http://localhost:" + port + "/median")).GET().build(),
+                    java.net.http.HttpResponse.BodyHandlers.ofString());
+            assert response.statusCode() == 405;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test caching results with least recently used eviction and a time to live.
+     */
+    @Test
+    public void testResultCache() throws Exception {
+        ResultCache cache = new ResultCache(2, 0);
+        java.util.concurrent.atomic.AtomicInteger calculations = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.function.Supplier<Integer> calculation = calculations::incrementAndGet;
+        cache.get("mean", "1, 2", calculation);
+        cache.get("mean", "3, 4", calculation);
+        cache.get("mean", "1, 2", calculation);
+        cache.get("sd", "1, 2", calculation);
+        assert calculations.get() == 3;
+        assert cache.getHitCount() == 1 && cache.getMissCount() == 3 && cache.getEvictionCount() == 1;
+        cache.get("mean", "1, 2", calculation);
+        cache.get("mean", new String("3, 4"), calculation);
+        assert calculations.get() == 4;
+
+        // an input longer than the cache may hold is calculated every time and never kept
+        ResultCache bounded = new ResultCache(8, 1000, 0);
+        String large = String.join(", ", java.util.Collections.nCopies(1000, "12345"));
+        bounded.get("mean", large, calculation);
+        bounded.get("mean", large, calculation);
+        assert calculations.get() == 6;
+        assert bounded.size() == 0;
+        bounded.get("mean", "1, 2", calculation);
+        bounded.get("mean", "1, 2", calculation);
+        assert bounded.size() == 1 && bounded.getHitCount() == 1;
+
+        // the total length of the kept inputs is bounded too, evicting the least recently used
+        ResultCache weighted = new ResultCache(1024, 16 * 400, 0);
+        for (int i = 0; i < 1000; i++) {
+            weighted.get("mean", i + String.join("", java.util.Collections.nCopies(50, ", 1")), calculation);
+        }
+        assert weighted.size() > 0 && weighted.size() <= 16 * 2;
+        assert weighted.getEvictionCount() == 1000 - weighted.size();
+
+        ResultCache expiring = new ResultCache(8, 1);
+        expiring.get("mean", "1, 2", calculation);
+        Thread.sleep(5);
+        expiring.get("mean", "1, 2", calculation);
+        assert expiring.getMissCount() == 2;
+
+        // a result which takes longer than its time to live is still kept for that long after it is done
+        ResultCache slow = new ResultCache(8, 200);
+        slow.get("mean", "1, 2", () -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return calculation.get();
+        });
+        slow.get("mean", "1, 2", calculation);
+        assert slow.getHitCount() == 1;
+
+        ControllerFactory controllerFactory = new ControllerFactory();
+        MeanController meanController = controllerFactory.createMeanController();
+        MeanViewModel first = meanController.calculateMean("10, 20, 30, 40, 50");
+        assert meanController.calculateMean("10, 20, 30, 40, 50") == first;
+        assert controllerFactory.createMedianController().calculateMedian("10, 20, 30, 40, 50").getMedian() == 30.0;
+        assert controllerFactory.getResultCache().getHitCount() == 1;
+        assert controllerFactory.getResultCache().getMissCount() == 2;
+    }
+
+    /**
+     * Test the latency histogram and timing a boundary.
+     */
+    @Test
+    public void testMetrics() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        assert histogram.getCount() == 100000;
+        assert histogram.getMax() == 100000;
+        assert Math.abs(histogram.getValueAtPercentile(0.5) - 50000) <= 50000 / 32;
+        assert Math.abs(histogram.getValueAtPercentile(0.99) - 99000) <= 99000 / 32;
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = LogLinearHistogram.index(value);
+            assert LogLinearHistogram.highestValue(index) >= value;
+            assert index == 0 || LogLinearHistogram.highestValue(index - 1) < value;
+        }
+
+        OperationMetrics metrics = new OperationMetrics("mean");
+        MeanInputBoundary meanInteractor = new TimedMeanInputBoundary(new MeanInteractor(new MeanPresenter()), metrics);
+        assert meanInteractor.calculateMean("10, 20, 30, 40, 50").getMean() == 30.0;
+        assert meanInteractor.calculateMean(new ParsedDataset(new int[] {1, 2, 3})).getMean() == 2.0;
+        try {
+            meanInteractor.calculateMean("1, x");
+            assert false;
+        } catch (NumberFormatException e) {
+            assert metrics.getLatency().getCount() == 3;
+            assert metrics.getAttribute("Errors").equals(1L);
+            assert metrics.getSizes().getMax() == 3;
+        }
+        assert Metrics.dump().contains("parse");
+    }
+
+    /**
+     * Test parsing 64-bit integers and decimal numbers into the narrowest dataset and calculating on them.
+     */
+    @Test
+    public void testNumberTypes() {
+        assert NumberParser.parseNumbers("10, 20, 30") instanceof ParsedDataset;
+        assert NumberParser.parseNumbers("10, 3000000000") instanceof LongDataset;
+        assert NumberParser.parseNumbers("10, 2.5") instanceof DoubleDataset;
+        assert NumberParser.parseNumbers("10, 99999999999999999999") instanceof DoubleDataset;
+        assert java.util.Arrays.equals(NumberParser.parseDoubles(" .5, -1e3,2.25E-2 "), new double[] {0.5, -1000, 0.0225});
+
+        // sums of these overflow long, and as doubles the values differ only in digits which are lost
+        long big = Long.MAX_VALUE - 10;
+        LongDataset longs = new LongDataset(new long[] {big, big - 1, big - 2, big - 3});
+        assert longs.statistics().getMean() == (double) big;
+        assert longs.statistics().getVariance() == 5.0 / 3;
+        assert longs.median() == (double) (big - 1) - 0.5;
+        assert longs.statistics().getMax() == (double) big;
+
+        ControllerFactory controllerFactory = new ControllerFactory();
+        assert controllerFactory.createMeanController().calculateMean("0.1, 0.2, 0.3, 0.4").getMean() == 0.25;
+        assert controllerFactory.createSDController().calculateSD("1.5, 2.5, 3.5").getSD() == 1.0;
+        assert controllerFactory.createMedianController().calculateMedian("-1.5, 2, 0.25").getMedian() == 0.25;
+        assert controllerFactory.createMedianController().calculateMedian("5000000000, 1, 7000000000").getMedian()
+                == 5000000000.0;
+        try {
+            controllerFactory.createMeanController().calculateMean("1.5, x");
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getOffset() == 5;
+        }
+    }
+
+    /**
+     * Test that statistics beyond the range of long, and sums which overflow double, are reported as they are.
+     */
+    @Test
+    public void testCalculateHugeValues() {
+        ControllerFactory controllerFactory = new ControllerFactory();
+        MeanController meanController = controllerFactory.createMeanController();
+        SDController sdController = controllerFactory.createSDController();
+        assert meanController.calculateMean("3000000000000000000, 3000000000000000000").getMean() == 3e18;
+        assert meanController.calculateMean("1e20, 1e20").getMean() == 1e20;
+        assert meanController.calculateMean("-9223372036854775808, 3").getMean() == -4.611686018427388E18;
+        assert sdController.calculateSD("1e20, -1e20").getSD() == Math.sqrt(2) * 1e20;
+        assert meanController.calculateMean("1e308, 1e308").getMean() == Double.POSITIVE_INFINITY;
+        assert meanController.calculateMean("-1e308, -1e308, 5").getMean() == Double.NEGATIVE_INFINITY;
+        assert meanController.calculateMean("1e300, -1e300").getMean() == 0.0;
+        assert sdController.calculateSD("1e300, -1e300").getSD() == Double.POSITIVE_INFINITY;
+        assert controllerFactory.createSummaryController().calculateSummary("1e20, 3e20").getMean() == 2e20;
+        assert meanController.calculateMean("1.005, 2.115").getMean() == 1.56;
+        assert sdController.calculateSD("7").getSD() == 0.0;
+        assert sdController.calculateSD("7.5").getSD() == 0.0;
+    }
+
+    /**
+     * Test calculating statistics over a dataset in direct memory and freeing it.
+     */
+    @Test
+    public void testOffHeapDataset() throws java.io.IOException {
+        java.nio.channels.ReadableByteChannel channel = java.nio.channels.Channels.newChannel(
+                new java.io.ByteArrayInputStream("40, -10\n30, 20, 50, 2147483647".getBytes()));
+        // the JDKs this is built for have sun.misc.Unsafe in the jdk.unsupported module
+        assert OffHeapDataset.isReleaseDeterministic();
+        try (OffHeapDataset dataset = OffHeapDataset.of(channel)) {
+            assert dataset.size() == 6;
+            assert dataset.median() == 35.0;
+            assert dataset.statistics().getSum() == 2147483647.0 + 130;
+            assert new SDInteractor(new SDPresenter()).calculateSD(dataset).getSD() == 876706517.07;
+            assert new SampleSizeInteractor(new SampleSizePresenter()).calculateSampleSize(dataset).getSampleSize() == 6;
+        }
+
+        // more values than one segment holds
+        java.util.Random random = new java.util.Random(42);
+        int[] values = new int[(1 << 20) + 1001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt() >> random.nextInt(32);
+        }
+        ParsedDataset parsed = new ParsedDataset(values.clone());
+        OffHeapDataset dataset = OffHeapDataset.of(values);
+        assert new MeanInteractor(new MeanPresenter()).calculateMean(dataset).getMean()
+                == new MeanInteractor(new MeanPresenter()).calculateMean(parsed).getMean();
+        assert new MedianInteractor(new MedianPresenter()).calculateMedian(dataset).getMedian()
+                == new MedianInteractor(new MedianPresenter()).calculateMedian(parsed).getMedian();
+        for (double p : new double[] {0, 0.25, 0.9, 0.999, 1}) {
+            assert dataset.quantile(p) == parsed.quantile(p);
+        }
+        dataset.close();
+        dataset.close();
+        try {
+            dataset.median();
+            assert false;
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("Dataset is closed");
+        }
+    }
+
+    /**
+     * Test that parsing in chunks gives the same values and the same first error as parsing on one thread.
+     */
+    @Test
+    public void testParallelParser() {
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            String[] inputs = {"1, -2, +3,  4 , 2147483647,-2147483648,,,", "10", ",,", " 5 ,6,7 ,8 , 9,10",
+                    "1, 2, 3, x, 5, 6, 1.5, 8", "1, 2, 3, 4, 5, 2147483648, 7, x", "1,2,,4", "1, 2, 3, "};
+            for (String input : inputs) {
+                for (int chunkSize = 1; chunkSize <= 8; chunkSize++) {
+                    try {
+                        int[] values = NumberParser.parseInts(input);
+                        assert java.util.Arrays.equals(ParallelNumberParser.parseInts(input, pool, chunkSize), values);
+                    } catch (DatasetFormatException e) {
+                        try {
+                            ParallelNumberParser.parseInts(input, pool, chunkSize);
+                            assert false;
+                        } catch (DatasetFormatException parallel) {
+                            assert parallel.getOffset() == e.getOffset();
+                            assert parallel.getMessage().equals(e.getMessage());
+                        }
+                    }
+                }
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 300000; i++) {
+                builder.append(i == 0 ? "" : ", ").append(i);
+            }
+            int[] values = ParallelNumberParser.parseInts(builder, pool);
+            assert values.length == 300000 && values[299999] == 299999;
+            builder.setCharAt(builder.length() - 1, 'x');
+            try {
+                ParallelNumberParser.parseInts(builder, pool);
+                assert false;
+            } catch (DatasetFormatException e) {
+                assert e.getOffset() == builder.length() - 1;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test calculating the modes, the number of distinct values and the histogram,
+     * and counting in parallel with dense and hashed tables.
+     */
+    @Test
+    public void testCalculateFrequency() {
+        FrequencyController frequencyController = new ControllerFactory().createFrequencyController();
+        FrequencyViewModel result = frequencyController.calculateFrequency("3, 1, 3, 7, 1, 9, 3, 1, 10");
+        assert result.getCount() == 9;
+        assert result.getDistinctCount() == 5;
+        assert java.util.Arrays.equals(result.getModes(), new int[] {1, 3});
+        assert result.getModeCount() == 3;
+        // Sturges' rule gives 5 bins of width 2 from 1 to 10
+        assert java.util.Arrays.equals(result.getBinStarts(), new long[] {1, 3, 5, 7, 9});
+        assert java.util.Arrays.equals(result.getBinEnds(), new long[] {2, 4, 6, 8, 10});
+        assert java.util.Arrays.equals(result.getBinCounts(), new long[] {3, 3, 0, 1, 2});
+
+        result = frequencyController.calculateFrequency("-2147483648, 2147483647, 2147483647");
+        assert java.util.Arrays.equals(result.getModes(), new int[] {2147483647});
+        assert result.getBinCounts()[0] == 1 && result.getBinCounts()[result.getBinCounts().length - 1] == 2;
+        try {
+            frequencyController.calculateFrequency("1.5, 2");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // the input is valid, so there is no offset to report
+            assert !(e instanceof DatasetFormatException);
+            assert e.getMessage().equals("Frequencies need integers");
+        }
+
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            java.util.Random random = new java.util.Random(42);
+            for (int range : new int[] {100, 1 << 30}) {
+                int[] values = new int[300000];
+                java.util.Map<Integer, Integer> expected = new java.util.HashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = random.nextInt(range) - range / 2;
+                    expected.merge(values[i], 1, Integer::sum);
+                }
+                int min = java.util.Arrays.stream(values).min().getAsInt();
+                int max = java.util.Arrays.stream(values).max().getAsInt();
+                FrequencyTable table = FrequencyTable.of(values, min, max, pool);
+                assert table.sortedValues().length == expected.size();
+                for (int i = 0; i < table.sortedValues().length; i++) {
+                    assert i == 0 || table.sortedValues()[i - 1] < table.sortedValues()[i];
+                    assert table.sortedCounts()[i] == expected.get(table.sortedValues()[i]);
+                }
+                assert table.count(values[0]) == expected.get(values[0]);
+                assert table.count(max + 1) == 0;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test calculating statistics of index ranges and checking the range index against sorting each range.
+     */
+    @Test
+    public void testCalculateRange() {
+        RangeController rangeController = new ControllerFactory().createRangeController();
+        RangeViewModel result = rangeController.calculateRange("50, 10, 40, 20, 30, 60", 1, 5);
+        assert result.getCount() == 4;
+        assert result.getMean() == 25.0;
+        assert result.getSD() == 12.91;
+        assert result.getMedian() == 25.0;
+        assert result.getMin() == 10.0;
+        assert result.getMax() == 40.0;
+        try {
+            rangeController.calculateRange("1, 2, 3", 2, 4);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().contains("out of bounds");
+        }
+
+        java.util.Random random = new java.util.Random(42);
+        for (int bound : new int[] {10, Integer.MAX_VALUE}) {
+            int[] values = new int[5000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bound == 10 ? random.nextInt(bound) : random.nextInt();
+            }
+            RangeIndex index = RangeIndex.of(values);
+            for (int query = 0; query < 300; query++) {
+                int from = random.nextInt(values.length);
+                int to = from + 1 + random.nextInt(values.length - from);
+                int[] range = java.util.Arrays.copyOfRange(values, from, to);
+                StatisticsAccumulator expected = StatisticsAccumulator.of(range);
+                StatisticsAccumulator actual = index.statistics(from, to);
+                assert actual.getSum() == expected.getSum();
+                assert actual.getMin() == expected.getMin() && actual.getMax() == expected.getMax();
+                assert Math.abs(actual.getVariance() - expected.getVariance()) <= 1e-9 * expected.getVariance();
+                java.util.Arrays.sort(range);
+                int k = random.nextInt(range.length);
+                assert index.select(from, to, k) == range[k];
+                assert index.median(from, to) == new ParsedDataset(range).median();
+                int below = 0;
+                while (below < range.length && range[below] < range[k]) {
+                    below++;
+                }
+                assert index.countBelow(from, to, range[k]) == below;
+            }
+        }
+    }
+
+    /**
+     * Test calculating bootstrap confidence intervals, which are the same however many workers draw the resamples.
+     */
+    @Test
+    public void testCalculateBootstrap() {
+        BootstrapController bootstrapController = new ControllerFactory().createBootstrapController();
+        String input = "12, 15, 9, 20, 11, 14, 18, 10, 13, 16, 17, 8";
+        BootstrapViewModel result = bootstrapController.calculateBootstrap(input, 2000, 0.95);
+        assert result.getResamples() == 2000 && result.getConfidence() == 0.95;
+        assert result.getMean() == 13.58;
+        assert result.getMeanInterval()[0] < 13.58 && 13.58 < result.getMeanInterval()[1];
+        assert result.getSDInterval()[0] < result.getSD() && result.getSD() < result.getSDInterval()[1];
+        assert result.getMedianInterval()[0] <= result.getMedian() && result.getMedian() <= result.getMedianInterval()[1];
+        BootstrapViewModel again = new BootstrapInteractor(new BootstrapPresenter()).calculateBootstrap(input, 2000, 0.95);
+        assert java.util.Arrays.equals(again.getMeanInterval(), result.getMeanInterval());
+        try {
+            bootstrapController.calculateBootstrap(input, 0, 0.95);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().startsWith("Resamples must be positive");
+        }
+
+        int[] values = new int[1001];
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1000);
+        }
+        Bootstrap sequential = Bootstrap.of(values, 100, 7, null);
+        java.util.concurrent.ForkJoinPool[] pools = {
+                new java.util.concurrent.ForkJoinPool(4), new java.util.concurrent.ForkJoinPool(3)};
+        try {
+            for (java.util.concurrent.ForkJoinPool workers : pools) {
+                Bootstrap parallel = Bootstrap.of(values, 100, 7, workers);
+                assert java.util.Arrays.equals(parallel.getMeans(), sequential.getMeans());
+                assert java.util.Arrays.equals(parallel.getSDs(), sequential.getSDs());
+                assert java.util.Arrays.equals(parallel.getMedians(), sequential.getMedians());
+            }
+        } finally {
+            for (java.util.concurrent.ForkJoinPool workers : pools) {
+                workers.shutdown();
+            }
+        }
+        StatisticsAccumulator first = StatisticsAccumulator.of(resample(values, 7));
+        assert Math.abs(sequential.getMeans()[0] - first.getMean()) < 1e-9;
+        assert Math.abs(sequential.getSDs()[0] - first.getStandardDeviation()) < 1e-9;
+        assert sequential.getMedians()[0] == new ParsedDataset(resample(values, 7)).median();
+    }
+
+    /**
+     * A private helper function to draw the first resample of Bootstrap.of with the given seed.
+     */
+    private static int[] resample(int[] values, long seed) {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(new java.util.SplittableRandom(seed).nextLong());
+        int[] sorted = values.clone();
+        java.util.Arrays.sort(sorted);
+        int[] resample = new int[values.length];
+        for (int i = 0; i < resample.length; i++) {
+            resample[i] = sorted[Bootstrap.nextIndex(random, values.length)];
+        }
+        return resample;
+    }
+
+    /**
+     * Test calculating statistics of every key, and checking parallel grouping against each key's values alone.
+     */
+    @Test
+    public void testCalculateGroups() {
+        GroupController groupController = new ControllerFactory().createGroupController();
+        GroupViewModel result = groupController.calculateGroups("a, 10; b, 1; a, 30; b, 4; a, 20");
+        assert java.util.Arrays.equals(result.getKeys(), new String[] {"a", "b"});
+        assert java.util.Arrays.equals(result.getColumnNames(), new String[] {"value"});
+        assert java.util.Arrays.equals(result.getCounts(), new int[] {3, 2});
+        assert java.util.Arrays.equals(result.getMeans()[0], new double[] {20.0, 2.5});
+        assert java.util.Arrays.equals(result.getSDs()[0], new double[] {10.0, 2.12});
+        assert java.util.Arrays.equals(result.getMedians()[0], new double[] {20.0, 2.5});
+
+        result = groupController.calculateGroups("city, low, high\nOslo, -3, 4\nRome, 9, 18\nOslo, -1, 8\n");
+        assert java.util.Arrays.equals(result.getColumnNames(), new String[] {"low", "high"});
+        assert java.util.Arrays.equals(result.getMedians()[0], new double[] {-2.0, 9.0});
+        assert java.util.Arrays.equals(result.getMedians()[1], new double[] {6.0, 18.0});
+        try {
+            groupController.calculateGroups("a, 1; b, 1, 2");
+            assert false;
+        } catch (DatasetFormatException e) {
+            assert e.getOffset() == 6;
+        }
+
+        java.util.Random random = new java.util.Random(42);
+        StringBuilder input = new StringBuilder();
+        java.util.Map<String, java.util.List<Integer>> expected = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < 300000; i++) {
+            String key = "k" + random.nextInt(i < 1000 ? 7 : 700);
+            int value = random.nextInt();
+            input.append(key).append(',').append(value).append('\n');
+            expected.computeIfAbsent(key, k -> new java.util.ArrayList<>()).add(value);
+        }
+        KeyedColumns columns = KeyedColumns.parse(input);
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        GroupBy groups;
+        try {
+            groups = GroupBy.of(columns, pool);
+        } finally {
+            pool.shutdown();
+        }
+        int key = 0;
+        for (java.util.Map.Entry<String, java.util.List<Integer>> entry : expected.entrySet()) {
+            int[] values = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            StatisticsAccumulator statistics = StatisticsAccumulator.of(values);
+            assert groups.getKeys()[key].equals(entry.getKey());
+            assert groups.getCounts()[key] == values.length;
+            assert Math.abs(groups.getMeans()[0][key] - statistics.getMean()) <= 1e-9 * Math.abs(statistics.getMean());
+            assert Math.abs(groups.getSDs()[0][key] - statistics.getStandardDeviation())
+                    <= 1e-9 * statistics.getStandardDeviation();
+            assert groups.getMedians()[0][key] == new ParsedDataset(values).median();
+            key++;
+        }
+        assert key == groups.getKeys().length;
+    }
+
+    /**
+     * Test that moments stay exact after a million values of any size have arrived and left again.
+     */
+    @Test
+    public void testMomentsAfterManyUpdates() {
+        java.util.Random random = new java.util.Random(3);
+        IncrementalDataset dataset = new IncrementalDataset();
+        dataset.addAll(new int[]{1, 2, 3});
+        for (int i = 0; i < 1000000; i++) {
+            int value = random.nextInt();
+            dataset.add(value);
+            dataset.remove(value);
+        }
+        assert dataset.statistics().getMean() == 2.0;
+        assert dataset.statistics().getStandardDeviation() == 1.0;
+
+        SlidingWindowStatistics window = SlidingWindowStatistics.ofCount(3);
+        for (int i = 0; i < 1000000; i++) {
+            window.add(i, random.nextInt());
+        }
+        for (int value = 1; value <= 3; value++) {
+            window.add(1000000 + value, value);
+        }
+        assert window.mean() == 2.0;
+        assert window.standardDeviation() == 1.0;
+    }
+}